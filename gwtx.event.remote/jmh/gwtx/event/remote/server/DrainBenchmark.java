@@ -0,0 +1,93 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import gwtx.event.remote.shared.ExampleRemoteEvent;
+import gwtx.event.remote.shared.RemoteEventBusException;
+import gwtx.event.remote.shared.RemoteGwtEvent;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+
+/**
+ * Cost of a poll which drains a full batch of events that are already
+ * waiting in the ring. The batch is published before each invocation, 
+ * which is why only batches of a decent size give meaningful numbers.
+ * 
+ * @author Dann Martens
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DrainBenchmark {
+
+	@Param({"1", "10", "100", "1000", "10000"})
+	public int batchSize;
+
+	private StubbedRemoteEventService service;
+
+	private ExampleRemoteEvent event;
+
+	@Setup
+	public void setUp() throws ServletException {
+		Map<String, String> initParameters = new HashMap<String, String>();
+		initParameters.put("name", "DrainBenchmark");
+		//? Published by the calling thread, so the batch is complete right away.
+		initParameters.put("publishMode", "multiThreaded");
+		initParameters.put("bufferSize", "16384");
+		initParameters.put("maximumBatchSize", String.valueOf(batchSize));
+		initParameters.put("minimumWaitingTime", "1000");
+		service = StubbedRemoteEventService.newInstance(initParameters);
+		service.newSubscribedSession(ExampleRemoteEvent.TYPE);
+		event = new ExampleRemoteEvent("benchmark");
+	}
+
+	@Setup(Level.Invocation)
+	public void publishBatch() {
+		for(int i = 0; i < batchSize; i++) {
+			service.fireEvent(event);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		service.destroy();
+	}
+
+	@Benchmark
+	public List<RemoteGwtEvent<?>> getAvailableEvents() throws RemoteEventBusException {
+		return service.getAvailableEvents();
+	}
+
+}
@@ -0,0 +1,93 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import gwtx.event.remote.shared.ExampleRemoteEvent;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+
+/**
+ * Throughput of firing events, for each publish mode and for a growing 
+ * number of producers. A single session is subscribed, but never polls, so
+ * the rings keep wrapping.
+ * 
+ * @author Dann Martens
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FireEventBenchmark {
+
+	@Param({"executor", "multiThreaded", "lowContention"})
+	public String publishMode;
+
+	private StubbedRemoteEventService service;
+
+	private ExampleRemoteEvent event;
+
+	@Setup
+	public void setUp() throws ServletException {
+		Map<String, String> initParameters = new HashMap<String, String>();
+		initParameters.put("name", "FireEventBenchmark");
+		initParameters.put("publishMode", publishMode);
+		initParameters.put("bufferSize", "65536");
+		service = StubbedRemoteEventService.newInstance(initParameters);
+		service.newSubscribedSession(ExampleRemoteEvent.TYPE);
+		event = new ExampleRemoteEvent("benchmark");
+	}
+
+	@TearDown
+	public void tearDown() {
+		service.destroy();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public void fireEvent1() {
+		service.fireEvent(event);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void fireEvent4() {
+		service.fireEvent(event);
+	}
+
+	@Benchmark
+	@Threads(16)
+	public void fireEvent16() {
+		service.fireEvent(event);
+	}
+
+}
@@ -0,0 +1,249 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import gwtx.event.remote.shared.BufferOverflowException;
+import gwtx.event.remote.shared.InvalidSessionException;
+import gwtx.event.remote.shared.RemoteEventBusException;
+import gwtx.event.remote.shared.RemoteGwtEvent;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * Headless load test, which drives a remote event service in-process with
+ * a number of simulated clients and producers. Every client starts a 
+ * session, subscribes and keeps polling with a random think time in 
+ * between, just like the remote event bus in a browser would. Clients 
+ * whose session overflowed or got invalidated start over with a new one.
+ * <p>
+ * Arguments are <code>key=value</code> pairs. The following keys configure
+ * the test, all others are passed on as init parameters of the service:
+ * <ul>
+ * <li><code>sessions</code>, number of simulated clients (1000)</li>
+ * <li><code>producers</code>, number of publishing threads (4)</li>
+ * <li><code>rate</code>, events per second of each producer (100)</li>
+ * <li><code>thinkTime</code>, mean think time in milliseconds between the
+ *     polls of a client (50)</li>
+ * <li><code>duration</code>, length of the test in seconds (30)</li>
+ * </ul>
+ * The report covers end-to-end latency percentiles, overflow and 
+ * invalidation counts and the CPU time of the whole process per delivered
+ * event, which includes the simulated clients.
+ * 
+ * @author Dann Martens
+ */
+public class LoadTest {
+
+	private static final long STACK_SIZE = 256 * 1024L;
+
+	private final int sessionCount;
+
+	private final int producerCount;
+
+	private final int rate;
+
+	private final long thinkTimeInMillis;
+
+	private final long durationInMillis;
+
+	private final StubbedRemoteEventService service;
+
+	private final Histogram latency = new Histogram();
+
+	private final StripedCounter publishedCount = new StripedCounter();
+
+	private final StripedCounter deliveredCount = new StripedCounter();
+
+	private final StripedCounter overflowCount = new StripedCounter();
+
+	private final StripedCounter invalidSessionCount = new StripedCounter();
+
+	private final StripedCounter newSessionCount = new StripedCounter();
+
+	private volatile boolean running = true;
+
+	public LoadTest(Map<String, String> parameters) throws Exception {
+		Map<String, String> initParameters = new HashMap<String, String>(parameters);
+		sessionCount = Integer.parseInt(remove(initParameters, "sessions", "1000"));
+		producerCount = Integer.parseInt(remove(initParameters, "producers", "4"));
+		rate = Integer.parseInt(remove(initParameters, "rate", "100"));
+		thinkTimeInMillis = Long.parseLong(remove(initParameters, "thinkTime", "50"));
+		durationInMillis = Long.parseLong(remove(initParameters, "duration", "30")) * 1000L;
+		if(!initParameters.containsKey("name")) {
+			initParameters.put("name", "LoadTest");
+		}
+		service = StubbedRemoteEventService.newInstance(initParameters);
+	}
+
+	private static String remove(Map<String, String> parameters, String key, String defaultValue) {
+		String value = parameters.remove(key);
+		return (value == null)? defaultValue : value;
+	}
+
+	public void run() throws InterruptedException {
+		final CountDownLatch started = new CountDownLatch(sessionCount);
+		List<Thread> threadList = new ArrayList<Thread>();
+		for(int i = 0; i < sessionCount; i++) {
+			final long seed = i;
+			threadList.add(start("Client-" + i, new Runnable() {
+				@Override
+				public void run() {
+					poll(new Random(seed), started);
+				}
+			}));
+		}
+		//? Only measure once every client is in session.
+		started.await();
+		OperatingSystemMXBean operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+		long startCpuTime = getProcessCpuTime(operatingSystem);
+		long startTime = System.nanoTime();
+		for(int i = 0; i < producerCount; i++) {
+			threadList.add(start("Producer-" + i, new Runnable() {
+				@Override
+				public void run() {
+					produce();
+				}
+			}));
+		}
+		Thread.sleep(durationInMillis);
+		running = false;
+		long elapsedTime = System.nanoTime() - startTime;
+		long cpuTime = getProcessCpuTime(operatingSystem) - startCpuTime;
+		report(elapsedTime, cpuTime);
+		service.destroy();
+		for(Thread thread: threadList) {
+			thread.join(1000L);
+		}
+	}
+
+	private Thread start(String name, Runnable runnable) {
+		Thread thread = new Thread(null, runnable, name, STACK_SIZE);
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	private void poll(Random random, CountDownLatch started) {
+		service.newSubscribedSession(LoadTestEvent.TYPE);
+		started.countDown();
+		while(running) {
+			try {
+				List<RemoteGwtEvent<?>> eventList = service.getAvailableEvents();
+				long now = System.nanoTime();
+				for(RemoteGwtEvent<?> event: eventList) {
+					if(event instanceof LoadTestEvent) {
+						latency.record(now - ((LoadTestEvent) event).getPublishTime());
+						deliveredCount.increment();
+					}
+				}
+			} catch (BufferOverflowException boe) {
+				overflowCount.increment();
+				renewSession();
+				continue;
+			} catch (InvalidSessionException ise) {
+				invalidSessionCount.increment();
+				renewSession();
+				continue;
+			} catch (RemoteEventBusException rebe) {
+				rebe.printStackTrace();
+				return;
+			}
+			if(thinkTimeInMillis > 0) {
+				//? Exponentially distributed, as independent clients would be.
+				long thinkTimeInNanos = (long) (-Math.log(1.0 - random.nextDouble()) * thinkTimeInMillis * 1000000L);
+				LockSupport.parkNanos(thinkTimeInNanos);
+			}
+		}
+	}
+
+	private void renewSession() {
+		if(running) {
+			service.newSubscribedSession(LoadTestEvent.TYPE);
+			newSessionCount.increment();
+		}
+	}
+
+	private void produce() {
+		long intervalInNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, rate);
+		long next = System.nanoTime();
+		while(running) {
+			service.fireEvent(new LoadTestEvent(System.nanoTime()));
+			publishedCount.increment();
+			//? Keep to the schedule, rather than drifting with the cost of firing.
+			next += intervalInNanos;
+			long delay = next - System.nanoTime();
+			if(delay > 0) {
+				LockSupport.parkNanos(delay);
+			}
+		}
+	}
+
+	private static long getProcessCpuTime(OperatingSystemMXBean operatingSystem) {
+		if(operatingSystem instanceof com.sun.management.OperatingSystemMXBean) {
+			return ((com.sun.management.OperatingSystemMXBean) operatingSystem).getProcessCpuTime();
+		}
+		//? Falls back to the threads which are alive right now.
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		long cpuTime = 0;
+		for(long id: threads.getAllThreadIds()) {
+			cpuTime += Math.max(0L, threads.getThreadCpuTime(id));
+		}
+		return cpuTime;
+	}
+
+	private void report(long elapsedTimeInNanos, long cpuTimeInNanos) {
+		double seconds = elapsedTimeInNanos / 1000000000.0;
+		long delivered = deliveredCount.get();
+		System.out.println("Sessions:            " + sessionCount + " (" + newSessionCount.get() + " renewed)");
+		System.out.println("Producers:           " + producerCount + " at " + rate + " events/s");
+		System.out.printf("Published:           %d (%.1f events/s)%n", publishedCount.get(), publishedCount.get() / seconds);
+		System.out.printf("Delivered:           %d (%.1f events/s)%n", delivered, delivered / seconds);
+		System.out.printf("Latency (ms):        p50=%.3f p90=%.3f p99=%.3f p99.9=%.3f max=%.3f%n",
+				latency.getPercentile(50.0) / 1000000.0, 
+				latency.getPercentile(90.0) / 1000000.0, 
+				latency.getPercentile(99.0) / 1000000.0, 
+				latency.getPercentile(99.9) / 1000000.0, 
+				latency.getMaximum() / 1000000.0);
+		System.out.println("Overflows:           " + overflowCount.get());
+		System.out.println("Invalid sessions:    " + invalidSessionCount.get());
+		System.out.printf("CPU per event (us):  %.3f%n", (delivered == 0)? 0.0 : cpuTimeInNanos / 1000.0 / delivered);
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> parameters = new HashMap<String, String>();
+		for(String arg: args) {
+			int index = arg.indexOf('=');
+			if(index < 0)
+				throw new IllegalArgumentException("Expected key=value, got '" + arg + "'!");
+			parameters.put(arg.substring(0, index), arg.substring(index + 1));
+		}
+		new LoadTest(parameters).run();
+	}
+
+}
@@ -0,0 +1,85 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import gwtx.event.remote.shared.ExampleRemoteEvent;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.google.gwt.user.client.rpc.SerializationException;
+import com.google.gwt.user.server.rpc.SerializationPolicy;
+
+
+/**
+ * GWT RPC serialization cost of a single event, for messages of growing
+ * length.
+ * 
+ * @author Dann Martens
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SerializationBenchmark {
+
+	@Param({"16", "256", "4096"})
+	public int messageLength;
+
+	/**
+	 * Serializes everything, like the policy of a client which knows all
+	 * event types would.
+	 */
+	private static final SerializationPolicy PERMISSIVE_POLICY = new SerializationPolicy() {
+		@Override
+		public boolean shouldSerializeFields(Class<?> clazz) {
+			return clazz != null;
+		}
+		@Override
+		public boolean shouldDeserializeFields(Class<?> clazz) {
+			return clazz != null;
+		}
+		@Override
+		public void validateSerialize(Class<?> clazz) {}
+		@Override
+		public void validateDeserialize(Class<?> clazz) {}
+	};
+
+	private ExampleRemoteEvent event;
+
+	@Setup
+	public void setUp() {
+		char[] message = new char[messageLength];
+		Arrays.fill(message, 'x');
+		event = new ExampleRemoteEvent(new String(message));
+	}
+
+	@Benchmark
+	public String serialize() throws SerializationException {
+		return Referer.serialize(event, PERMISSIVE_POLICY, 0);
+	}
+
+}
@@ -0,0 +1,111 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+
+/**
+ * Stand-ins for the servlet container, just enough to drive the remote 
+ * event service in-process. Every method which is not stubbed answers a
+ * default value.
+ * 
+ * @author Dann Martens
+ */
+final class ServletStubs {
+
+	static final String SOURCE_HEADER = "X-GWT-RemoteEventSource";
+
+	private ServletStubs() {}
+
+	public static ServletConfig newServletConfig(final Map<String, String> initParameters) {
+		final ServletContext servletContext = newStub(ServletContext.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] arguments) {
+				if("getInitParameter".equals(method.getName()))
+					return null;
+				if("getInitParameterNames".equals(method.getName()))
+					return Collections.enumeration(Collections.<String>emptySet());
+				return defaultValueOf(method);
+			}
+		});
+		return newStub(ServletConfig.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] arguments) {
+				if("getInitParameter".equals(method.getName()))
+					return initParameters.get(arguments[0]);
+				if("getInitParameterNames".equals(method.getName()))
+					return Collections.enumeration(initParameters.keySet());
+				if("getServletContext".equals(method.getName()))
+					return servletContext;
+				if("getServletName".equals(method.getName()))
+					return "remote-event";
+				return defaultValueOf(method);
+			}
+		});
+	}
+
+	/**
+	 * @param source the value of the source header, as in 
+	 *        <code>SourceId.asString()</code>, or <code>null</code> 
+	 */
+	public static HttpServletRequest newRequest(final String source) {
+		return newStub(HttpServletRequest.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] arguments) {
+				if("getHeader".equals(method.getName()))
+					return SOURCE_HEADER.equals(arguments[0])? source : null;
+				return defaultValueOf(method);
+			}
+		});
+	}
+
+	public static HttpServletResponse newResponse() {
+		return newStub(HttpServletResponse.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] arguments) {
+				return defaultValueOf(method);
+			}
+		});
+	}
+
+	private static <T> T newStub(Class<T> type, InvocationHandler handler) {
+		return type.cast(Proxy.newProxyInstance(ServletStubs.class.getClassLoader(), new Class<?>[] {type}, handler));
+	}
+
+	private static Object defaultValueOf(Method method) {
+		Class<?> returnType = method.getReturnType();
+		if(returnType == boolean.class)
+			return Boolean.FALSE;
+		if(returnType == int.class)
+			return Integer.valueOf(0);
+		if(returnType == long.class)
+			return Long.valueOf(0L);
+		return null;
+	}
+
+}
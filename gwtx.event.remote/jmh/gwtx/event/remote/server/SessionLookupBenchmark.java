@@ -0,0 +1,79 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import gwtx.event.remote.shared.ServerId;
+import gwtx.event.remote.shared.SourceId;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+
+/**
+ * Cost of looking up a session, as every poll does, for a growing number
+ * of live sessions. Sessions are looked up in random order.
+ * 
+ * @author Dann Martens
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SessionLookupBenchmark {
+
+	private static final int LOOKUP_COUNT = 1 << 16;
+
+	@Param({"10000", "100000", "1000000"})
+	public int sessionCount;
+
+	private SessionManager sessionManager;
+
+	private SourceId[] lookups;
+
+	private int next = 0;
+
+	@Setup
+	public void setUp() {
+		sessionManager = SessionManagerFactory.newDefaultInstance();
+		ServerId serverId = new ServerId(1);
+		SourceId[] sourceIds = new SourceId[sessionCount];
+		for(int i = 0; i < sessionCount; i++) {
+			sourceIds[i] = sessionManager.newSession(serverId);
+		}
+		Random random = new Random(0);
+		lookups = new SourceId[LOOKUP_COUNT];
+		for(int i = 0; i < LOOKUP_COUNT; i++) {
+			lookups[i] = sourceIds[random.nextInt(sessionCount)];
+		}
+	}
+
+	@Benchmark
+	public Session getSession() {
+		next = (next + 1) & (LOOKUP_COUNT - 1);
+		return sessionManager.getSession(lookups[next]);
+	}
+
+}
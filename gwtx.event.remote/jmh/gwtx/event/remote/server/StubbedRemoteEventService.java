@@ -0,0 +1,76 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import gwtx.event.remote.shared.RemoteGwtEvent.Type;
+import gwtx.event.remote.shared.SourceId;
+
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+
+/**
+ * Remote event service which runs without a servlet container. The calling
+ * thread binds itself to a session, after which it can invoke the service 
+ * methods directly, just like the container would on behalf of a client.
+ * 
+ * @author Dann Martens
+ */
+class StubbedRemoteEventService extends RemoteEventServiceImpl {
+
+	private static final long serialVersionUID = 1L;
+
+	public static StubbedRemoteEventService newInstance(Map<String, String> initParameters) throws ServletException {
+		StubbedRemoteEventService service = new StubbedRemoteEventService();
+		service.init(ServletStubs.newServletConfig(initParameters));
+		return service;
+	}
+
+	/**
+	 * Binds the calling thread to the given session, or to no session at 
+	 * all.
+	 */
+	public void bind(SourceId sourceId) {
+		synchronized (this) {
+			if(perThreadRequest == null) {
+				perThreadRequest = new ThreadLocal<HttpServletRequest>();
+				perThreadResponse = new ThreadLocal<HttpServletResponse>();
+			}
+		}
+		perThreadRequest.set(ServletStubs.newRequest((sourceId == null)? null : sourceId.asString()));
+		perThreadResponse.set(ServletStubs.newResponse());
+	}
+
+	/**
+	 * Starts a new session subscribed to the given types, and binds the 
+	 * calling thread to it.
+	 */
+	public SourceId newSubscribedSession(Type<?>... types) {
+		bind(null);
+		SourceId sourceId = newSession().getSourceId();
+		bind(sourceId);
+		for(Type<?> type: types) {
+			addSubscription(type);
+		}
+		return sourceId;
+	}
+
+}
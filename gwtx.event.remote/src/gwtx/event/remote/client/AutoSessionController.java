@@ -63,7 +63,7 @@ public class AutoSessionController implements ConnectionTimeoutEvent.Handler, Bu
 								//? The server might have changed under us.
 								Window.Location.reload();
 							} else {
-								Console.log("[AutoSessionManager] Resume failed " + caught);	
+								Console.log("[AutoSessionManager] Resume failed {}", caught);	
 								scheduleResumeSession(); //? Try again.
 							}
 						}
@@ -93,7 +93,7 @@ public class AutoSessionController implements ConnectionTimeoutEvent.Handler, Bu
 	
 	private void newSession() {
 		Console.log("[AutoSessionManager] .newSession()");
-		remoteEventBus.newSession(new AsyncCallback<Void>() {
+		AsyncCallback<Void> callback = new AsyncCallback<Void>() {
 			@Override
 			public void onFailure(Throwable caught) {
 				Console.log("[AutoSessionManager] Couldn't start remote event bus session!");
@@ -105,7 +105,14 @@ public class AutoSessionController implements ConnectionTimeoutEvent.Handler, Bu
 				inSession = true;
 				eventBus.fireEvent(new AutoSessionEvent(inSession));
 			}
-		});
+		};
+		if(remoteEventBus.getLastSequence() >= 0) {
+			//? Pick up where the previous session left off.
+			remoteEventBus.replaySession(callback);
+		} else {
+			//? Carries the subscriptions over from a session which became invalid.
+			remoteEventBus.renewSession(callback);
+		}
 	}
 	
 	@Override
@@ -134,7 +141,7 @@ public class AutoSessionController implements ConnectionTimeoutEvent.Handler, Bu
 	
 	@Override
 	public void onFailure(Throwable caught) {
-		Console.log("[AutoSessionManager] Remote event bus failed! (" + caught.getClass().getName() + ')');
+		Console.log("[AutoSessionManager] Remote event bus failed! ({})", caught.getClass().getName());
 		eventBus.fireEvent(new AutoSessionEvent(false));
 		scheduleResumeSession();
 	}
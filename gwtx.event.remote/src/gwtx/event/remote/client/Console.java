@@ -1,31 +1,69 @@
-/**
- * Licensed to TOMOTON nv under one
- * or more contributor license agreements.  See the NOTICE file
- * distributed with this work for additional information
- * regarding copyright ownership.  TOMOTON nv licenses this file
- * to you under the Apache License, Version 2.0 (the
- * "License"); you may not use this file except in compliance
- * with the License.  You may obtain a copy of the License at
- *
- *     http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package gwtx.event.remote.client;
-
-/**
- * Simple wrapper for the browser console.
- * 
- * @author Dann Martens
- */
-public class Console {
-
-	public static final native void log(String message) /*-{
-		console.log(message);
-	}-*/;
-	
-}
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.client;
+
+import com.google.gwt.core.client.GWT;
+
+/**
+ * Simple wrapper for the browser console. Logging is disabled unless the
+ * <code>remoteEventBus.logging</code> property is set to <code>enabled</code>.
+ * While it is disabled, which is the default, the compiler leaves out every
+ * statement, including the building of its message. Messages take 
+ * <code>{}</code> placeholders, which are only filled in when logging is 
+ * enabled.
+ * 
+ * @author Dann Martens
+ */
+public class Console {
+
+	private static final ConsoleImpl impl = GWT.create(ConsoleImpl.class);
+
+	public static boolean isEnabled() {
+		return impl.isEnabled();
+	}
+
+	public static void log(String message) {
+		impl.log(message);
+	}
+
+	public static void log(String message, Object argument) {
+		if(impl.isEnabled()) {
+			impl.log(format(message, argument));
+		}
+	}
+
+	public static void log(String message, Object argument1, Object argument2) {
+		if(impl.isEnabled()) {
+			impl.log(format(message, argument1, argument2));
+		}
+	}
+
+	private static String format(String message, Object... arguments) {
+		StringBuilder builder = new StringBuilder();
+		int from = 0;
+		for(Object argument: arguments) {
+			int index = message.indexOf("{}", from);
+			if(index < 0)
+				break;
+			builder.append(message.substring(from, index)).append(argument);
+			from = index + 2;
+		}
+		return builder.append(message.substring(from)).toString();
+	}
+	
+}
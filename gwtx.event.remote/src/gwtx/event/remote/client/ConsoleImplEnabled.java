@@ -0,0 +1,40 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.client;
+
+/**
+ * Console which is bound when the <code>remoteEventBus.logging</code> 
+ * property is set to <code>enabled</code>.
+ * 
+ * @author Dann Martens
+ */
+class ConsoleImplEnabled extends ConsoleImpl {
+
+	@Override
+	public boolean isEnabled() {
+		return true;
+	}
+
+	@Override
+	public native void log(String message) /*-{
+		if($wnd.console) {
+			$wnd.console.log(message);
+		}
+	}-*/;
+
+}
@@ -0,0 +1,65 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.client;
+
+import com.google.gwt.core.client.JavaScriptObject;
+
+/**
+ * Push connection over the browser's <code>EventSource</code>, for when web
+ * sockets are blocked. The hello is part of the URL. The browser reconnects
+ * by itself whenever the server ends the stream, only giving up is reported
+ * as a close.
+ * 
+ * @author Dann Martens
+ */
+class EventSourceConnection extends PushConnection {
+
+	private static final int CLOSED = 2;
+
+	private final JavaScriptObject source;
+
+	public EventSourceConnection(String url, Listener listener) {
+		source = open(url, listener);
+	}
+
+	public static native boolean isSupported() /*-{
+		return !!$wnd.EventSource;
+	}-*/;
+
+	private native JavaScriptObject open(String url, Listener listener) /*-{
+		var connection = this;
+		var source = new $wnd.EventSource(url);
+		source.onmessage = $entry(function(event) {
+			listener.@gwtx.event.remote.client.PushConnection.Listener::onMessage(Lgwtx/event/remote/client/PushConnection;Ljava/lang/String;)(connection, event.data);
+		});
+		source.onerror = $entry(function() {
+			if(source.readyState == @gwtx.event.remote.client.EventSourceConnection::CLOSED) {
+				listener.@gwtx.event.remote.client.PushConnection.Listener::onClose(Lgwtx/event/remote/client/PushConnection;)(connection);
+			}
+		});
+		return source;
+	}-*/;
+
+	@Override
+	public native void close() /*-{
+		var source = this.@gwtx.event.remote.client.EventSourceConnection::source;
+		source.onerror = null;
+		source.close();
+	}-*/;
+
+}
@@ -0,0 +1,39 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.client;
+
+/**
+ * A connection over which the server pushes frames of the 
+ * {@link gwtx.event.remote.shared.SocketProtocol}. A failed connection is 
+ * reported as a close, closing it on purpose is not reported at all.
+ * 
+ * @author Dann Martens
+ */
+abstract class PushConnection {
+
+	interface Listener {
+
+		void onMessage(PushConnection connection, String message);
+
+		void onClose(PushConnection connection);
+
+	}
+
+	public abstract void close();
+
+}
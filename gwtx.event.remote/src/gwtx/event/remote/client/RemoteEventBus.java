@@ -19,16 +19,22 @@ package gwtx.event.remote.client;
 
 import gwtx.event.remote.shared.AbstractRemoteGwtEvent;
 import gwtx.event.remote.shared.BufferOverflowException;
+import gwtx.event.remote.shared.GapRemoteEvent;
 import gwtx.event.remote.shared.InvalidSessionException;
 import gwtx.event.remote.shared.RemoteEventBusException;
 import gwtx.event.remote.shared.RemoteGwtEvent;
 import gwtx.event.remote.shared.RemoteSessionId;
+import gwtx.event.remote.shared.SocketProtocol;
 import gwtx.event.remote.shared.SourceId;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.RepeatingCommand;
 import com.google.gwt.core.client.Scheduler.ScheduledCommand;
 import com.google.gwt.event.shared.EventHandler;
 import com.google.gwt.event.shared.HandlerManager;
@@ -43,8 +49,11 @@ import com.google.gwt.http.client.URL;
 import com.google.gwt.user.client.Window;
 import com.google.gwt.user.client.rpc.AsyncCallback;
 import com.google.gwt.user.client.rpc.RpcRequestBuilder;
+import com.google.gwt.user.client.rpc.SerializationException;
+import com.google.gwt.user.client.rpc.SerializationStreamFactory;
 import com.google.gwt.user.client.rpc.ServiceDefTarget;
 import com.google.gwt.user.client.rpc.StatusCodeException;
+import com.google.gwt.user.client.rpc.impl.AbstractSerializationStream;
 import com.google.web.bindery.event.shared.Event;
 
 
@@ -55,6 +64,9 @@ import com.google.web.bindery.event.shared.Event;
  * maintaining handler lists. There will typically be one RemoteEventBus per
  * application, broadcasting events that may be of general interest. Events
  * can be fired both at the client-side, as well as at the server-side.
+ * Events are pushed over a web socket or a Server-Sent Events stream when 
+ * the browser and the server support it, and polled for otherwise. Events
+ * fired within one tick are sent to the server in a single request.
  * 
  * @see com.google.gwt.event.shared.EventBus
  * 
@@ -63,13 +75,19 @@ import com.google.web.bindery.event.shared.Event;
 public class RemoteEventBus implements ConnectionTimeoutEvent.HasHandlers, BufferOverflowEvent.HasHandlers {
 
 	public static final int DEFAULT_TIMEOUT_IN_MILLIS = 30000;
+
+	/**
+	 * Time allowed on top of the waiting times advised by the server, for 
+	 * the round trip itself.
+	 */
+	public static final int TIMEOUT_MARGIN_IN_MILLIS = 10000;
 	
 	private static final Variant VARIANT = GWT.create(Variant.class);
 	
     private static class SilentAsyncCallback implements AsyncCallback<Void> {
     	
         public void onFailure(Throwable caught) {
-        	Console.log("SilentAsyncCallback.onFailure (" + caught + ')');
+        	Console.log("SilentAsyncCallback.onFailure ({})", caught);
         }
 
         public void onSuccess(Void result) {
@@ -97,7 +115,7 @@ public class RemoteEventBus implements ConnectionTimeoutEvent.HasHandlers, Buffe
 		public void removeHandler(final AsyncCallback<Void> callback) {
 			registration.removeHandler();
 			if(autoUnsubscribe && !handlerManager.isEventHandled(type)) {
-				remoteEventService.removeSubscription(type, new AsyncCallback<Boolean>() {
+				changeSubscription(type, false, new AsyncCallback<Boolean>() {
 					@Override
 					public void onFailure(Throwable caught) {
 						callback.onFailure(caught);
@@ -118,6 +136,10 @@ public class RemoteEventBus implements ConnectionTimeoutEvent.HasHandlers, Buffe
 	}
 
 	private RemoteEventServiceAsync remoteEventService;
+
+	private SerializationStreamFactory serializationStreamFactory;
+
+	private ServiceDefTarget serviceDefTarget;
 	
 	private SourceId sourceId;
 	
@@ -130,7 +152,7 @@ public class RemoteEventBus implements ConnectionTimeoutEvent.HasHandlers, Buffe
 				StatusCodeException sce = (StatusCodeException) caught;
 				if(sce.getStatusCode() == 0) {
 					Console.log("Silently closing with HTTP Status 0!");
-					Console.log(String.valueOf(sce.getCause()));
+					Console.log("{}", sce.getCause());
 				}
 			} else {
 				Window.alert("Getting events failed! " + caught);
@@ -143,14 +165,53 @@ public class RemoteEventBus implements ConnectionTimeoutEvent.HasHandlers, Buffe
 	private boolean scheduling = false;
 	
 	private int timeoutInMillis = DEFAULT_TIMEOUT_IN_MILLIS;
+
+	private boolean advisedTimeoutEnabled = true;
+
+	private boolean webSocketEnabled = true;
+
+	private boolean streamingEnabled = true;
+
+	private PushConnection pushConnection;
+
+	private boolean pushAccepted = false;
+
+	private boolean fireBatchingEnabled = true;
+
+	private int fireLingerInMillis = 0;
+
+	private List<RemoteGwtEvent<?>> pendingEventList = new ArrayList<RemoteGwtEvent<?>>();
+
+	private List<AsyncCallback<Void>> pendingCallbackList = new ArrayList<AsyncCallback<Void>>();
+
+	private boolean flushScheduled = false;
+
+	private boolean piggybackEnabled = false;
+
+	private Request pollRequest;
+
+	private boolean pollCarryingEvents = false;
+
+	private int pollNumber = 0;
+
+	private boolean pollAborted = false;
 	
 	private HandlerManager handlerManager = new HandlerManager(this);
+
+	private Set<RemoteGwtEvent.Type<?>> subscribedSet = new HashSet<RemoteGwtEvent.Type<?>>();
+
+	private long lastSequence = -1L;
+
+	private List<SubscriptionBatch.Change> pendingChangeList = new ArrayList<SubscriptionBatch.Change>();
 	
 	//private Set<RemoteGwtEvent.Type<?>> autoSubscribedSet = new HashSet<RemoteGwtEvent.Type<?>>();
 
 	public RemoteEventBus() {
 		RemoteEventServiceAsync rawService = GWT.create(RemoteEventService.class);
 		remoteEventService = wrapRPCService(rawService);
+		//? Reads back the events which the server serialized ahead of time.
+		serializationStreamFactory = (SerializationStreamFactory) rawService;
+		serviceDefTarget = (ServiceDefTarget) rawService;
 	}
 	
 	public RemoteEventBus(AsyncCallback<Void> defaultCallback) {
@@ -195,7 +256,108 @@ public class RemoteEventBus implements ConnectionTimeoutEvent.HasHandlers, Buffe
 	public void setTimeout(int timeoutInMillis) {
 		this.timeoutInMillis = timeoutInMillis;
 	}
+
+	public boolean isAdvisedTimeoutEnabled() {
+		return advisedTimeoutEnabled;
+	}
+
+	/**
+	 * Enables or disables deriving the request timeout from the waiting times
+	 * which the server advises at the start of every session, rather than 
+	 * keeping the timeout which has been set.
+	 */
+	public void setAdvisedTimeoutEnabled(boolean advisedTimeoutEnabled) {
+		this.advisedTimeoutEnabled = advisedTimeoutEnabled;
+	}
+
+	/**
+	 * Follows the waiting times of the server: a poll is answered after the
+	 * longest of both at the latest.
+	 */
+	private void applyAdvice(RemoteSessionId sessionId) {
+		int waitingTime = Math.max(sessionId.getMinimumWaitingTime(), sessionId.getMaximumWaitingTime());
+		if(advisedTimeoutEnabled && waitingTime > 0) {
+			timeoutInMillis = waitingTime + TIMEOUT_MARGIN_IN_MILLIS;
+			Console.log("Timeout advised by the server {} ms", timeoutInMillis);
+		}
+	}
 	
+	public boolean isWebSocketEnabled() {
+		return webSocketEnabled;
+	}
+
+	/**
+	 * Enables or disables pushing events over a web socket, which is served
+	 * at the service entry point when the server has its 
+	 * <code>webSocketPath</code> set to the same path. Disabling it only
+	 * affects sessions which start afterwards.
+	 */
+	public void setWebSocketEnabled(boolean webSocketEnabled) {
+		this.webSocketEnabled = webSocketEnabled;
+	}
+
+	public boolean isStreamingEnabled() {
+		return streamingEnabled;
+	}
+
+	/**
+	 * Enables or disables pushing events over a Server-Sent Events stream, 
+	 * which the server serves at the service entry point when it has 
+	 * <code>streaming</code> enabled. Streaming is only used when there is 
+	 * no web socket. Disabling it only affects sessions which start 
+	 * afterwards.
+	 */
+	public void setStreamingEnabled(boolean streamingEnabled) {
+		this.streamingEnabled = streamingEnabled;
+	}
+
+	public boolean isFireBatchingEnabled() {
+		return fireBatchingEnabled;
+	}
+
+	/**
+	 * Enables or disables gathering the events fired within one tick, or 
+	 * within the linger time, into a single request. Events which have been
+	 * gathered already are still sent together.
+	 */
+	public void setFireBatchingEnabled(boolean fireBatchingEnabled) {
+		this.fireBatchingEnabled = fireBatchingEnabled;
+	}
+
+	public int getFireLingerTime() {
+		return fireLingerInMillis;
+	}
+
+	/**
+	 * Sets how long the first event fired waits for others to join it, zero
+	 * to only gather the events fired before control returns to the browser.
+	 */
+	public void setFireLingerTime(int fireLingerInMillis) {
+		this.fireLingerInMillis = fireLingerInMillis;
+	}
+
+	public boolean isPiggybackEnabled() {
+		return piggybackEnabled;
+	}
+
+	/**
+	 * Enables or disables sending fired events along with the next poll, 
+	 * which is sent right away after cutting the pending poll short. This
+	 * keeps a single connection busy rather than two. The callbacks of those
+	 * events are called once that poll is answered. A poll which carries 
+	 * events itself is never cut short; events fired meanwhile wait for its
+	 * successor. Only applies while polling, with batching enabled.
+	 * <p>
+	 * Cutting a poll short only ends it on the client. When the server polls
+	 * synchronously, the abandoned poll keeps a container thread until it is
+	 * answered, at the latest after the maximum waiting time. Piggybacking is
+	 * therefore disabled by default; enable it only when the server has 
+	 * <code>asyncPolling</code> turned on.
+	 */
+	public void setPiggybackEnabled(boolean piggybackEnabled) {
+		this.piggybackEnabled = piggybackEnabled;
+	}
+
 	public boolean isAutoUnsubscribe() {
 		return autoUnsubscribe;
 	}
@@ -208,7 +370,8 @@ public class RemoteEventBus implements ConnectionTimeoutEvent.HasHandlers, Buffe
 		if(scheduling) {
 			throw new IllegalStateException("An existing session is still underway, invalidate existing session first!");
 		}
-		remoteEventService.newSession(new AsyncCallback<RemoteSessionId>() {
+		List<RemoteGwtEvent.Type<?>> types = new ArrayList<RemoteGwtEvent.Type<?>>(subscribedSet);
+		remoteEventService.newSession(types, new AsyncCallback<RemoteSessionId>() {
 			@Override
 			public void onFailure(Throwable caught) {
 				callback.onFailure(caught);
@@ -217,27 +380,96 @@ public class RemoteEventBus implements ConnectionTimeoutEvent.HasHandlers, Buffe
 			@Override
 			public void onSuccess(RemoteSessionId result) {
 				sourceId = result.getSourceId();
+				applyAdvice(result);
 				startScheduling();
 				callback.onSuccess(null);
 			}
 		});
 	}
 
+	/**
+	 * Replaces the current session, which the server may have invalidated 
+	 * already, by a new one with the current subscriptions, in a single 
+	 * request. Events published in between are not received.
+	 */
+	public void renewSession(final AsyncCallback<Void> callback) {
+		List<RemoteGwtEvent.Type<?>> types = new ArrayList<RemoteGwtEvent.Type<?>>(subscribedSet);
+		remoteEventService.newSession(types, new AsyncCallback<RemoteSessionId>() {
+			@Override
+			public void onFailure(Throwable caught) {
+				callback.onFailure(caught);
+			}
+
+			@Override
+			public void onSuccess(RemoteSessionId result) {
+				onSessionReplaced(result);
+				callback.onSuccess(null);
+			}
+		});
+	}
+
+	/**
+	 * Starts a new session with the current subscriptions, which first 
+	 * receives whatever the server journaled after the last event received
+	 * by this bus. 
+	 */
+	public void replaySession(final AsyncCallback<Void> callback) {
+		List<RemoteGwtEvent.Type<?>> types = new ArrayList<RemoteGwtEvent.Type<?>>(subscribedSet);
+		remoteEventService.replaySession(lastSequence, types, new AsyncCallback<RemoteSessionId>() {
+			@Override
+			public void onFailure(Throwable caught) {
+				callback.onFailure(caught);
+			}
+
+			@Override
+			public void onSuccess(RemoteSessionId result) {
+				onSessionReplaced(result);
+				callback.onSuccess(null);
+			}
+		});
+	}
+
+	/**
+	 * Continues delivery for the session which replaced the current one.
+	 */
+	private void onSessionReplaced(RemoteSessionId result) {
+		sourceId = result.getSourceId();
+		applyAdvice(result);
+		if(scheduling) {
+			if(pushConnection != null) {
+				closePushConnection();
+				openPushConnection();
+			} else {
+				scheduleGetAvailableEvents();
+			}
+		} else {
+			startScheduling();
+		}
+	}
+
+	/**
+	 * The journal sequence of the last event received, or <code>-1</code> 
+	 * when none of the received events has been journaled.
+	 */
+	public long getLastSequence() {
+		return lastSequence;
+	}
+
 	public void resumeSession(final AsyncCallback<Void> callback) {
 		String location = GWT.getModuleBaseURL() + VARIANT.getPath() + VARIANT.getValue();
-		Console.log("HTTP-HEAD " + location);
+		Console.log("HTTP-HEAD {}", location);
 		RequestBuilder builder = new RequestBuilder(RequestBuilder.HEAD, URL.encode(location));
 		try {
 			builder.sendRequest(null, new RequestCallback() {
 				public void onError(Request request, Throwable exception) {
-					Console.log("HEAD request encountered an error: " + exception);
+					Console.log("HEAD request encountered an error: {}", exception);
 					callback.onFailure(exception);
 				}
 				public void onResponseReceived(Request request, Response response) {
-					Console.log("HEAD response received " + response.getStatusCode());
+					Console.log("HEAD response received {}", response.getStatusCode());
 					if (200 == response.getStatusCode()) {
 						Console.log("Verified variant.");
-						if (scheduling)
+						if (scheduling && pushConnection == null)
 							scheduleGetAvailableEvents();
 						callback.onSuccess(null);
 					} else 
@@ -266,14 +498,14 @@ public class RemoteEventBus implements ConnectionTimeoutEvent.HasHandlers, Buffe
 			}
 			@Override
 			public void onSuccess(Void result) {
-				Console.log("Invalidated session with source id " + sourceId.asString() + ".");
+				Console.log("Invalidated session with source id {}.", sourceId.asString());
 				callback.onSuccess(null);
 			}
 		});
 	}
 	
 	public <H extends EventHandler> void subscribe(final RemoteGwtEvent.Type<H> type, final AsyncCallback<Void> callback) {
-		remoteEventService.addSubscription(type, new AsyncCallback<Boolean>() {
+		changeSubscription(type, true, new AsyncCallback<Boolean>() {
 			@Override
 			public void onFailure(Throwable caught) {
 				callback.onFailure(caught);
@@ -287,7 +519,38 @@ public class RemoteEventBus implements ConnectionTimeoutEvent.HasHandlers, Buffe
 	}
 	
 	public <H extends EventHandler> void unsubscribe(final RemoteGwtEvent.Type<H> type, final AsyncCallback<Boolean> callback) {
-		remoteEventService.removeSubscription(type, callback);
+		changeSubscription(type, false, callback);
+	}
+
+	/**
+	 * Queues a subscription change. All changes made within one tick are sent
+	 * together, at most one request to subscribe and one to unsubscribe, in
+	 * which the last change of every type wins.
+	 */
+	private void changeSubscription(RemoteGwtEvent.Type<?> type, boolean subscribe, AsyncCallback<Boolean> callback) {
+		pendingChangeList.add(new SubscriptionBatch.Change(type, subscribe, callback));
+		if(pendingChangeList.size() == 1) {
+			Scheduler.get().scheduleFinally(new ScheduledCommand() {
+				@Override
+				public void execute() {
+					flushSubscriptionChanges();
+				}
+			});
+		}
+	}
+
+	private void flushSubscriptionChanges() {
+		SubscriptionBatch batch = new SubscriptionBatch(pendingChangeList, subscribedSet);
+		pendingChangeList = new ArrayList<SubscriptionBatch.Change>();
+		List<RemoteGwtEvent.Type<?>> addList = batch.getAddList();
+		if(!addList.isEmpty()) {
+			remoteEventService.addSubscriptions(addList, batch.getAddCallback());
+		}
+		List<RemoteGwtEvent.Type<?>> removeList = batch.getRemoveList();
+		if(!removeList.isEmpty()) {
+			remoteEventService.removeSubscriptions(removeList, batch.getRemoveCallback());
+		}
+		batch.failSuperseded();
 	}
 	
 	public <H extends EventHandler> HandlerRegistration addHandler(final RemoteGwtEvent.Type<H> type, final H handler) {
@@ -298,7 +561,7 @@ public class RemoteEventBus implements ConnectionTimeoutEvent.HasHandlers, Buffe
 		if(!scheduling)
 			startScheduling();
 		if( handlerManager.getHandlerCount(type) == 0) {
-			remoteEventService.addSubscription(type, new AsyncCallback<Boolean>() {
+			changeSubscription(type, true, new AsyncCallback<Boolean>() {
 				@Override
 				public void onFailure(Throwable caught) {
 					callback.onFailure(caught);
@@ -318,11 +581,83 @@ public class RemoteEventBus implements ConnectionTimeoutEvent.HasHandlers, Buffe
 	}
 	
 	public void fireEvent(AbstractRemoteGwtEvent<?> event) {
-		remoteEventService.fireEvent(event, defaultCallback);
+		fireEvent(event, defaultCallback);
 	}
 	
 	public void fireEvent(AbstractRemoteGwtEvent<?> event, AsyncCallback<Void> callback) {
-		remoteEventService.fireEvent(event, callback);
+		if(!fireBatchingEnabled) {
+			remoteEventService.fireEvent(event, callback);
+			return;
+		}
+		pendingEventList.add(event);
+		pendingCallbackList.add(callback);
+		if(!flushScheduled) {
+			flushScheduled = true;
+			scheduleFlush();
+		}
+	}
+
+	private void scheduleFlush() {
+		if(fireLingerInMillis <= 0) {
+			Scheduler.get().scheduleFinally(new ScheduledCommand() {
+				@Override
+				public void execute() {
+					flushPendingEvents();
+				}
+			});
+		} else {
+			Scheduler.get().scheduleFixedDelay(new RepeatingCommand() {
+				@Override
+				public boolean execute() {
+					flushPendingEvents();
+					return false;
+				}
+			}, fireLingerInMillis);
+		}
+	}
+
+	/**
+	 * Sends the gathered events in a single request, and reports its outcome
+	 * to the callback of every event.
+	 */
+	private void flushPendingEvents() {
+		flushScheduled = false;
+		if(pendingEventList.isEmpty())
+			return;
+		if(pollRequest != null && pollCarryingEvents) {
+			//? Never cut short a poll which carries events, they would get lost; its successor picks these up.
+			return;
+		}
+		List<RemoteGwtEvent<?>> events = pendingEventList;
+		final List<AsyncCallback<Void>> callbacks = pendingCallbackList;
+		pendingEventList = new ArrayList<RemoteGwtEvent<?>>();
+		pendingCallbackList = new ArrayList<AsyncCallback<Void>>();
+		if(pollRequest != null) {
+			//? Cut the pending poll short, its successor carries the events.
+			pollRequest.cancel();
+			pollRequest = null;
+			pollAborted = true;
+			getAvailableEvents(events, callbacks);
+			return;
+		}
+		if(events.size() == 1) {
+			remoteEventService.fireEvent(events.get(0), callbacks.get(0));
+			return;
+		}
+		remoteEventService.fireEvents(events, new AsyncCallback<Void>() {
+			@Override
+			public void onFailure(Throwable caught) {
+				for(AsyncCallback<Void> callback: callbacks) {
+					callback.onFailure(caught);
+				}
+			}
+			@Override
+			public void onSuccess(Void result) {
+				for(AsyncCallback<Void> callback: callbacks) {
+					callback.onSuccess(null);
+				}
+			}
+		});
 	}
 
 	private void startScheduling() {
@@ -330,7 +665,11 @@ public class RemoteEventBus implements ConnectionTimeoutEvent.HasHandlers, Buffe
 			throw new IllegalStateException("Scheduling has already started!");
 		}
 		scheduling = true;
-		scheduleGetAvailableEvents();
+		if(sourceId != null) {
+			openPushConnection();
+		} else {
+			scheduleGetAvailableEvents();
+		}
 		Console.log("Started scheduling.");
 	}
 	
@@ -339,6 +678,7 @@ public class RemoteEventBus implements ConnectionTimeoutEvent.HasHandlers, Buffe
 			throw new IllegalStateException("Scheduling has already stopped!");
 		}
 		scheduling = false;
+		closePushConnection();
 		Console.log("Stopped scheduling.");
 	}
 	
@@ -354,40 +694,227 @@ public class RemoteEventBus implements ConnectionTimeoutEvent.HasHandlers, Buffe
 	}	
 
 	private void getAvailableEvents() {
-		Console.log("Getting available events...");
-		remoteEventService.getAvailableEvents(new AsyncCallback<List<RemoteGwtEvent<?>>>() {
-			@Override
-			public void onSuccess(List<RemoteGwtEvent<?>> result) {
-				Console.log("Received events " + result.size());
-				for(RemoteGwtEvent<?> event: result) {
-					Console.log("Forwarding remote event locally ...");
-					if(event instanceof AbstractRemoteGwtEvent) {
-						handlerManager.fireEvent((AbstractRemoteGwtEvent<?>) event);
-					} else {
-						Console.log("Unknown event type! " + event.getClass());
+		if(!piggybackEnabled) {
+			Console.log("Getting available events...");
+			remoteEventService.getAvailableSerializedEvents(new AsyncCallback<List<String>>() {
+				@Override
+				public void onSuccess(List<String> result) {
+					dispatchSerializedEvents(result);
+					if(scheduling) {
+						scheduleGetAvailableEvents();
 					}
 				}
+				@Override
+				public void onFailure(Throwable caught) {
+					onDeliveryFailure(caught);
+				}
+			});
+			return;
+		}
+		List<RemoteGwtEvent<?>> events = pendingEventList;
+		List<AsyncCallback<Void>> callbacks = pendingCallbackList;
+		pendingEventList = new ArrayList<RemoteGwtEvent<?>>();
+		pendingCallbackList = new ArrayList<AsyncCallback<Void>>();
+		getAvailableEvents(events, callbacks);
+	}
+
+	/**
+	 * Sends a numbered poll, which carries the given outgoing events, and
+	 * keeps hold of it so it can be cut short.
+	 */
+	private void getAvailableEvents(List<RemoteGwtEvent<?>> events, final List<AsyncCallback<Void>> callbacks) {
+		Console.log("Getting available events, carrying {}...", events.size());
+		boolean previousAborted = pollAborted;
+		pollAborted = false;
+		pollCarryingEvents = !events.isEmpty();
+		pollRequest = remoteEventService.getAvailableSerializedEvents(events, ++pollNumber, previousAborted, new AsyncCallback<List<String>>() {
+			@Override
+			public void onSuccess(List<String> result) {
+				pollRequest = null;
+				pollCarryingEvents = false;
+				for(AsyncCallback<Void> callback: callbacks) {
+					callback.onSuccess(null);
+				}
+				dispatchSerializedEvents(result);
 				if(scheduling) {
 					scheduleGetAvailableEvents();
+				} else {
+					flushPendingEvents();
 				}
 			}
 			@Override
 			public void onFailure(Throwable caught) {
-				if(caught instanceof RequestTimeoutException) {
-					handlerManager.fireEvent(new ConnectionTimeoutEvent(RemoteEventBus.this));
-				} else
-				if(caught instanceof BufferOverflowException) {
-					handlerManager.fireEvent(new BufferOverflowEvent(RemoteEventBus.this));
-				} else
-				if(caught instanceof InvalidSessionException) {
-					handlerManager.fireEvent(new InvalidSessionEvent(RemoteEventBus.this));
-				} else {
-					failureHandler.onFailure(caught);
-				}					
+				pollRequest = null;
+				pollCarryingEvents = false;
+				for(AsyncCallback<Void> callback: callbacks) {
+					callback.onFailure(caught);
+				}
+				onDeliveryFailure(caught);
+				//? Events held back for this poll go out on their own.
+				flushPendingEvents();
 			}
-		});				
+		});
 	}
-	
+
+	private void dispatchSerializedEvents(List<String> serializedEvents) {
+		Console.log("Received events {}", serializedEvents.size());
+		for(String serializedEvent: serializedEvents) {
+			RemoteGwtEvent<?> event;
+			try {
+				event = (RemoteGwtEvent<?>) serializationStreamFactory.createStreamReader(serializedEvent).readObject();
+			} catch (SerializationException se) {
+				failureHandler.onFailure(se);
+				continue;
+			}
+			Console.log("Forwarding remote event locally ...");
+			if(event instanceof AbstractRemoteGwtEvent) {
+				AbstractRemoteGwtEvent<?> remoteEvent = (AbstractRemoteGwtEvent<?>) event;
+				if(remoteEvent.getSequence() > lastSequence) {
+					lastSequence = remoteEvent.getSequence();
+				}
+				handlerManager.fireEvent(remoteEvent);
+			} else {
+				Console.log("Unknown event type! {}", event.getClass());
+			}
+		}
+	}
+
+	private void onDeliveryFailure(Throwable caught) {
+		if(caught instanceof RequestTimeoutException) {
+			handlerManager.fireEvent(new ConnectionTimeoutEvent(this));
+		} else
+		if(caught instanceof BufferOverflowException) {
+			handlerManager.fireEvent(new BufferOverflowEvent(this));
+		} else
+		if(caught instanceof InvalidSessionException) {
+			handlerManager.fireEvent(new InvalidSessionEvent(this));
+		} else {
+			failureHandler.onFailure(caught);
+		}
+	}
+
+	/**
+	 * Opens a connection at the service entry point, over which the server 
+	 * pushes the events of the current session: a web socket, or an event 
+	 * stream where web sockets are not available. A connection which is not
+	 * accepted is not tried again, and polling takes over whenever there is
+	 * no connection to be had, or an accepted one goes away.
+	 */
+	private void openPushConnection() {
+		String entryPoint = serviceDefTarget.getServiceEntryPoint();
+		int flags = ((AbstractSerializationStream) serializationStreamFactory.createStreamWriter()).getFlags();
+		String hello = SocketProtocol.encodeHello(sourceId, flags, serviceDefTarget.getSerializationPolicyName(), GWT.getModuleBaseURL());
+		PushConnection.Listener listener = new PushConnection.Listener() {
+			@Override
+			public void onMessage(PushConnection connection, String message) {
+				if(connection == pushConnection) {
+					onPushMessage(message);
+				}
+			}
+			@Override
+			public void onClose(PushConnection connection) {
+				if(connection == pushConnection) {
+					onPushClose();
+				}
+			}
+		};
+		pushAccepted = false;
+		if(webSocketEnabled && WebSocketConnection.isSupported()) {
+			try {
+				pushConnection = new WebSocketConnection(entryPoint.replaceFirst("^http", "ws"), hello, listener);
+				return;
+			} catch (RuntimeException re) {
+				Console.log("Unable to open a web socket: {}", re);
+				webSocketEnabled = false;
+			}
+		}
+		if(streamingEnabled && EventSourceConnection.isSupported()) {
+			String separator = (entryPoint.indexOf('?') < 0)? "?" : "&";
+			try {
+				pushConnection = new EventSourceConnection(entryPoint + separator + SocketProtocol.HELLO_PARAMETER + '=' + URL.encodeQueryString(hello), listener);
+				return;
+			} catch (RuntimeException re) {
+				Console.log("Unable to open an event stream: {}", re);
+				streamingEnabled = false;
+			}
+		}
+		pushConnection = null;
+		scheduleGetAvailableEvents();
+	}
+
+	private void closePushConnection() {
+		if(pushConnection != null) {
+			pushConnection.close();
+			pushConnection = null;
+		}
+	}
+
+	/**
+	 * Gives up on the kind of the current connection, and moves on to the 
+	 * next kind, or to polling.
+	 */
+	private void onPushUnavailable() {
+		if(pushConnection instanceof WebSocketConnection) {
+			Console.log("Web socket unavailable.");
+			webSocketEnabled = false;
+		} else {
+			Console.log("Event stream unavailable.");
+			streamingEnabled = false;
+		}
+		closePushConnection();
+		if(scheduling) {
+			openPushConnection();
+		}
+	}
+
+	private void onPushMessage(String message) {
+		switch(message.charAt(0)) {
+		case SocketProtocol.ACCEPTED:
+			Console.log("Push connection accepted.");
+			pushAccepted = true;
+			break;
+		case SocketProtocol.EVENTS:
+			List<String> serializedEvents;
+			try {
+				serializedEvents = SocketProtocol.decodeEvents(message);
+			} catch (RuntimeException re) {
+				failureHandler.onFailure(re);
+				return;
+			}
+			dispatchSerializedEvents(serializedEvents);
+			break;
+		case SocketProtocol.HEARTBEAT:
+			break;
+		case SocketProtocol.FAILURE:
+			String reason = SocketProtocol.decodeFailure(message);
+			if(SocketProtocol.BUFFER_OVERFLOW.equals(reason)) {
+				closePushConnection();
+				onDeliveryFailure(new BufferOverflowException());
+			} else
+			if(SocketProtocol.INVALID_SESSION.equals(reason)) {
+				closePushConnection();
+				onDeliveryFailure(new InvalidSessionException());
+			} else {
+				Console.log("Push connection rejected ({}).", reason);
+				onPushUnavailable();
+			}
+			break;
+		default:
+			Console.log("Unknown push frame {}", message);
+		}
+	}
+
+	private void onPushClose() {
+		if(!pushAccepted) {
+			onPushUnavailable();
+			return;
+		}
+		pushConnection = null;
+		if(scheduling) {
+			scheduleGetAvailableEvents();
+		}
+	}
+
 	@Override
 	public HandlerRegistration addConnectionTimeoutHandler(ConnectionTimeoutEvent.Handler handler) {
 		return handlerManager.addHandler(ConnectionTimeoutEvent.TYPE, handler);
@@ -401,6 +928,14 @@ public class RemoteEventBus implements ConnectionTimeoutEvent.HasHandlers, Buffe
 	public HandlerRegistration addInvalidSessionHandler(InvalidSessionEvent.Handler handler) {
 		return handlerManager.addHandler(InvalidSessionEvent.TYPE, handler);
 	}
+
+	/**
+	 * Gap markers are delivered without subscribing to them, whenever the
+	 * server had to drop events because this session fell behind.
+	 */
+	public HandlerRegistration addGapHandler(GapRemoteEvent.Handler handler) {
+		return handlerManager.addHandler(GapRemoteEvent.TYPE, handler);
+	}
 	
 	public void setFailureHandler(FailureHandler failureHandler) {
 		this.failureHandler = failureHandler;
@@ -40,15 +40,72 @@ import com.google.gwt.user.client.rpc.RemoteServiceRelativePath;
 public abstract interface RemoteEventService extends RemoteService, HasRemoteHandlers {
 
 	RemoteSessionId newSession();
+
+	/**
+	 * Starts a new session, which is subscribed to the given types right 
+	 * away.
+	 */
+	RemoteSessionId newSession(List<Type<?>> types);
+
+	/**
+	 * Starts a new session, subscribed to the given types, which first 
+	 * receives the journaled events after <code>lastSequence</code>. Without
+	 * a journal on the server, this is a plain new session.
+	 */
+	RemoteSessionId replaySession(long lastSequence, List<Type<?>> types);
 	
 	void invalidateSession();
 	
 	<H> boolean addSubscription(Type<H> type);
 
 	<H> boolean removeSubscription(Type<H> type);
+
+	/**
+	 * Subscribes to all the given types at once.
+	 * 
+	 * @return whether any of them was not subscribed to yet
+	 */
+	boolean addSubscriptions(List<Type<?>> types);
+
+	/**
+	 * Unsubscribes from all the given types at once.
+	 * 
+	 * @return whether any of them was subscribed to
+	 */
+	boolean removeSubscriptions(List<Type<?>> types);
 	
 	List<RemoteGwtEvent<?>> getAvailableEvents() throws RemoteEventBusException;
 
+	/**
+	 * Same as {@link #getAvailableEvents()}, but every event is returned in
+	 * its serialized form, which the server computes only once for all
+	 * receiving sessions. Each form is read back using the 
+	 * <code>SerializationStreamFactory</code> of the service proxy.
+	 */
+	List<String> getAvailableSerializedEvents() throws RemoteEventBusException;
+
+	/**
+	 * Same as {@link #getAvailableEvents()}, but first fires the outgoing 
+	 * events of the client, which cuts its pending poll short to send them 
+	 * right away. Polls are numbered by the client. When it has abandoned 
+	 * the previous poll, whatever the server answered that one with is 
+	 * delivered once more. A poll which carries events is answered after the
+	 * minimum waiting time.
+	 */
+	List<RemoteGwtEvent<?>> getAvailableEvents(List<RemoteGwtEvent<?>> events, int pollNumber, boolean previousAborted) throws RemoteEventBusException;
+
+	/**
+	 * Same as {@link #getAvailableEvents(List, int, boolean)}, but every event
+	 * is returned in its serialized form.
+	 */
+	List<String> getAvailableSerializedEvents(List<RemoteGwtEvent<?>> events, int pollNumber, boolean previousAborted) throws RemoteEventBusException;
+
 	void fireEvent(RemoteGwtEvent<?> event);
+
+	/**
+	 * Fires the given events at once, they end up contiguously in the event
+	 * stream in the given order.
+	 */
+	void fireEvents(List<RemoteGwtEvent<?>> events);
 	
 }
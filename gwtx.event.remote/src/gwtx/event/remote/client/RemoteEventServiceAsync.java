@@ -24,6 +24,7 @@ import gwtx.event.remote.shared.SourceId;
 
 import java.util.List;
 
+import com.google.gwt.http.client.Request;
 import com.google.gwt.user.client.rpc.AsyncCallback;
 
 /**
@@ -35,14 +36,30 @@ public interface RemoteEventServiceAsync {
 
 	void getAvailableEvents(AsyncCallback<List<RemoteGwtEvent<?>>> callback);
 
+	void getAvailableSerializedEvents(AsyncCallback<List<String>> callback);
+
+	Request getAvailableEvents(List<RemoteGwtEvent<?>> events, int pollNumber, boolean previousAborted, AsyncCallback<List<RemoteGwtEvent<?>>> callback);
+
+	Request getAvailableSerializedEvents(List<RemoteGwtEvent<?>> events, int pollNumber, boolean previousAborted, AsyncCallback<List<String>> callback);
+
 	void fireEvent(RemoteGwtEvent<?> event, AsyncCallback<Void> callback);
 
+	void fireEvents(List<RemoteGwtEvent<?>> events, AsyncCallback<Void> callback);
+
 	void addSubscription(Type<?> type, AsyncCallback<Boolean> callback);
 	
 	void removeSubscription(Type<?> type, AsyncCallback<Boolean> callback);
 
+	void addSubscriptions(List<Type<?>> types, AsyncCallback<Boolean> callback);
+
+	void removeSubscriptions(List<Type<?>> types, AsyncCallback<Boolean> callback);
+
 	void newSession(AsyncCallback<RemoteSessionId> callback);
 
+	void newSession(List<Type<?>> types, AsyncCallback<RemoteSessionId> callback);
+
+	void replaySession(long lastSequence, List<Type<?>> types, AsyncCallback<RemoteSessionId> callback);
+
 	void invalidateSession(AsyncCallback<Void> callback);
 
 }
@@ -0,0 +1,174 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.client;
+
+import gwtx.event.remote.shared.RemoteEventBusException;
+import gwtx.event.remote.shared.RemoteGwtEvent;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.gwt.user.client.rpc.AsyncCallback;
+
+
+/**
+ * The subscription changes made within one tick, coalesced into at most one
+ * request to subscribe and one to unsubscribe. The last change of every 
+ * type wins; earlier changes of the same type which agree with it share its
+ * outcome, the others are never sent and fail right away. Each request 
+ * completes its own changes: subscribing adds the types to the subscribed 
+ * set once it has succeeded, unsubscribing reports whether the type was 
+ * subscribed to.
+ * 
+ * @author Dann Martens
+ */
+class SubscriptionBatch {
+
+	static class Change {
+
+		private final RemoteGwtEvent.Type<?> type;
+
+		private final boolean subscribe;
+
+		private final AsyncCallback<Boolean> callback;
+
+		public Change(RemoteGwtEvent.Type<?> type, boolean subscribe, AsyncCallback<Boolean> callback) {
+			this.type = type;
+			this.subscribe = subscribe;
+			this.callback = callback;
+		}
+
+	}
+
+	private class Half implements AsyncCallback<Boolean> {
+
+		private final boolean subscribe;
+
+		private final Map<String, List<Change>> changeMap = new LinkedHashMap<String, List<Change>>();
+
+		private Half(boolean subscribe) {
+			this.subscribe = subscribe;
+		}
+
+		private void add(Change change) {
+			List<Change> changeList = changeMap.get(change.type.getTypeId());
+			if(changeList == null) {
+				changeList = new ArrayList<Change>();
+				changeMap.put(change.type.getTypeId(), changeList);
+			}
+			changeList.add(change);
+		}
+
+		private List<RemoteGwtEvent.Type<?>> getTypeList() {
+			List<RemoteGwtEvent.Type<?>> result = new ArrayList<RemoteGwtEvent.Type<?>>(changeMap.size());
+			for(List<Change> changeList: changeMap.values()) {
+				result.add(changeList.get(changeList.size() - 1).type);
+			}
+			return result;
+		}
+
+		@Override
+		public void onFailure(Throwable caught) {
+			for(List<Change> changeList: changeMap.values()) {
+				for(Change change: changeList) {
+					change.callback.onFailure(caught);
+				}
+			}
+		}
+
+		@Override
+		public void onSuccess(Boolean result) {
+			for(List<Change> changeList: changeMap.values()) {
+				RemoteGwtEvent.Type<?> type = changeList.get(changeList.size() - 1).type;
+				boolean outcome;
+				if(subscribe) {
+					subscribedSet.add(type);
+					outcome = true;
+				} else {
+					outcome = subscribedSet.remove(type);
+				}
+				for(Change change: changeList) {
+					change.callback.onSuccess(outcome);
+				}
+			}
+		}
+
+	}
+
+	private final Set<RemoteGwtEvent.Type<?>> subscribedSet;
+
+	private final Half addHalf = new Half(true);
+
+	private final Half removeHalf = new Half(false);
+
+	private final List<Change> supersededList = new ArrayList<Change>();
+
+	public SubscriptionBatch(List<Change> changeList, Set<RemoteGwtEvent.Type<?>> subscribedSet) {
+		this.subscribedSet = subscribedSet;
+		Map<String, Boolean> lastSubscribeMap = new LinkedHashMap<String, Boolean>();
+		for(Change change: changeList) {
+			lastSubscribeMap.put(change.type.getTypeId(), change.subscribe);
+		}
+		for(Change change: changeList) {
+			if(lastSubscribeMap.get(change.type.getTypeId()) != change.subscribe) {
+				supersededList.add(change);
+			} else
+			if(change.subscribe) {
+				addHalf.add(change);
+			} else {
+				removeHalf.add(change);
+			}
+		}
+	}
+
+	public List<RemoteGwtEvent.Type<?>> getAddList() {
+		return addHalf.getTypeList();
+	}
+
+	public List<RemoteGwtEvent.Type<?>> getRemoveList() {
+		return removeHalf.getTypeList();
+	}
+
+	/**
+	 * Completes the changes which are sent to subscribe.
+	 */
+	public AsyncCallback<Boolean> getAddCallback() {
+		return addHalf;
+	}
+
+	/**
+	 * Completes the changes which are sent to unsubscribe.
+	 */
+	public AsyncCallback<Boolean> getRemoveCallback() {
+		return removeHalf;
+	}
+
+	/**
+	 * Fails the changes which have been undone by a later change of the same
+	 * type, since nothing has been sent on their behalf.
+	 */
+	public void failSuperseded() {
+		for(Change change: supersededList) {
+			change.callback.onFailure(new RemoteEventBusException("Superseded by a later change of the subscription to " + change.type.getTypeId() + '.'));
+		}
+	}
+
+}
@@ -0,0 +1,62 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.client;
+
+import com.google.gwt.core.client.JavaScriptObject;
+
+/**
+ * Push connection over the browser's <code>WebSocket</code>, which says 
+ * hello as soon as it is open.
+ * 
+ * @author Dann Martens
+ */
+class WebSocketConnection extends PushConnection {
+
+	private final JavaScriptObject socket;
+
+	public WebSocketConnection(String url, String hello, Listener listener) {
+		socket = open(url, hello, listener);
+	}
+
+	public static native boolean isSupported() /*-{
+		return !!$wnd.WebSocket;
+	}-*/;
+
+	private native JavaScriptObject open(String url, String hello, Listener listener) /*-{
+		var connection = this;
+		var socket = new $wnd.WebSocket(url);
+		socket.onopen = $entry(function() {
+			socket.send(hello);
+		});
+		socket.onmessage = $entry(function(event) {
+			listener.@gwtx.event.remote.client.PushConnection.Listener::onMessage(Lgwtx/event/remote/client/PushConnection;Ljava/lang/String;)(connection, event.data);
+		});
+		socket.onclose = $entry(function() {
+			listener.@gwtx.event.remote.client.PushConnection.Listener::onClose(Lgwtx/event/remote/client/PushConnection;)(connection);
+		});
+		return socket;
+	}-*/;
+
+	@Override
+	public native void close() /*-{
+		var socket = this.@gwtx.event.remote.client.WebSocketConnection::socket;
+		socket.onclose = null;
+		socket.close();
+	}-*/;
+
+}
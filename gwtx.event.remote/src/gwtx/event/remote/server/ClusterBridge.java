@@ -0,0 +1,335 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import gwtx.event.remote.shared.RemoteGwtEvent;
+import gwtx.event.remote.shared.ServerId;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Bridge between the remote event service of this node and its peers in a
+ * cluster. Fired events are forwarded to the peers in batched frames, each
+ * event serialized only once. Events received from peers are handed to a 
+ * listener, which publishes them locally without forwarding them again.
+ * Every event carries the identifier of its originating server and a 
+ * sequence, by which duplicates are dropped.
+ * <p>
+ * A frame holds the origin, the number of events and then, per event, its
+ * sequence, type identifier and serialized form. Only remote events, the 
+ * shared types of this module and the plain JDK types they are built of 
+ * are read back; any other class in a serialized form fails the event.
+ * 
+ * @author Dann Martens
+ */
+class ClusterBridge implements ClusterTransport.Receiver {
+
+	private static final Log log = Log.getLog(ClusterBridge.class);
+
+	public static interface Listener {
+
+		void onEvent(RemoteGwtEvent<?> event, String typeId);
+
+	}
+
+	private static final class OutgoingEvent {
+
+		private final long sequence;
+
+		private final String typeId;
+
+		private final byte[] serializedForm;
+
+		private OutgoingEvent(long sequence, String typeId, byte[] serializedForm) {
+			this.sequence = sequence;
+			this.typeId = typeId;
+			this.serializedForm = serializedForm;
+		}
+
+	}
+
+	/**
+	 * Object input stream which resolves nothing but the classes events are
+	 * made of, so a frame cannot make this node instantiate arbitrary 
+	 * serializable classes.
+	 */
+	private static final class EventInputStream extends ObjectInputStream {
+
+		private EventInputStream(ByteArrayInputStream in) throws IOException {
+			super(in);
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass descriptor) throws IOException, ClassNotFoundException {
+			String name = descriptor.getName();
+			if(!isResolvable(name)) 
+				throw new InvalidClassException(name, "Not a remote event type");
+			//? Resolving does not initialize the class, so checking after the fact is safe.
+			Class<?> result = super.resolveClass(descriptor);
+			if(isJdkType(name) || isAllowed(result))
+				return result;
+			throw new InvalidClassException(name, "Not a remote event type");
+		}
+
+		@Override
+		protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException {
+			throw new InvalidClassException("Proxy classes are not remote event types");
+		}
+
+		private static boolean isResolvable(String name) {
+			//? Array class names start with '[', their elements are checked on their own.
+			return name.startsWith("[") || isJdkType(name) || !name.startsWith("java") && !name.startsWith("sun.") && !name.startsWith("com.sun.");
+		}
+
+		private static boolean isJdkType(String name) {
+			return isTopLevelOf(name, "java.lang.") || isTopLevelOf(name, "java.util.") || isTopLevelOf(name, "java.math.");
+		}
+
+		private static boolean isTopLevelOf(String name, String packagePrefix) {
+			return name.startsWith(packagePrefix) && name.indexOf('.', packagePrefix.length()) < 0;
+		}
+
+		private static boolean isAllowed(Class<?> class_) {
+			while(class_.isArray()) {
+				class_ = class_.getComponentType();
+			}
+			return class_.isPrimitive() || isJdkType(class_.getName()) 
+					|| RemoteGwtEvent.class.isAssignableFrom(class_)
+					|| class_.getName().startsWith(RemoteGwtEvent.class.getPackage().getName() + '.');
+		}
+
+	}
+
+	private final int origin;
+
+	private final ClusterTransport transport;
+
+	private final int maximumBatchSize;
+
+	private final Listener listener;
+
+	private final AtomicLong sequence = new AtomicLong();
+
+	private final ConcurrentMap<Integer, AtomicLong> lastSequenceByOrigin = new ConcurrentHashMap<Integer, AtomicLong>();
+
+	private final Queue<OutgoingEvent> outgoingQueue = new ConcurrentLinkedQueue<OutgoingEvent>();
+
+	private final AtomicBoolean sending = new AtomicBoolean(false);
+
+	private final ExecutorService sender;
+
+	private final Runnable sendCommand = new Runnable() {
+		@Override
+		public void run() {
+			sendOutgoing();
+		}
+	};
+
+	private final AtomicLong forwardedCount = new AtomicLong();
+
+	private final AtomicLong receivedCount = new AtomicLong();
+
+	private final AtomicLong duplicateCount = new AtomicLong();
+
+	public ClusterBridge(ServerId serverId, ClusterTransport transport, int maximumBatchSize, Listener listener) {
+		this.origin = serverId.getId();
+		this.transport = transport;
+		this.maximumBatchSize = maximumBatchSize;
+		this.listener = listener;
+		this.sender = Executors.newSingleThreadExecutor(new DaemonThreadFactory(ClusterBridge.class.getSimpleName()));
+	}
+
+	public void start() throws IOException {
+		transport.start(this);
+	}
+
+	public void stop() {
+		transport.stop();
+		sender.shutdown();
+	}
+
+	/**
+	 * Queues an event for the peers. Events which are forwarded while a 
+	 * frame is pending join that frame.
+	 */
+	public void forward(RemoteGwtEvent<?> event, String typeId) {
+		byte[] serializedForm;
+		try {
+			serializedForm = serialize(event);
+		} catch (IOException ioe) {
+			log.warn("Unable to forward a remote event to the peers.", ioe);
+			return;
+		}
+		//? Sequence and queue order must agree, the receiving side relies on it.
+		synchronized (outgoingQueue) {
+			outgoingQueue.offer(new OutgoingEvent(sequence.incrementAndGet(), typeId, serializedForm));
+		}
+		if(sending.compareAndSet(false, true)) {
+			try {
+				sender.execute(sendCommand);
+			} catch (RejectedExecutionException ignore) {
+				//? Stopped.
+			}
+		}
+	}
+
+	private void sendOutgoing() {
+		sending.set(false);
+		while(!outgoingQueue.isEmpty()) {
+			try {
+				ByteArrayOutputStream frame = new ByteArrayOutputStream();
+				DataOutputStream out = new DataOutputStream(frame);
+				int count = 0;
+				ByteArrayOutputStream body = new ByteArrayOutputStream();
+				DataOutputStream bodyOut = new DataOutputStream(body);
+				OutgoingEvent outgoingEvent;
+				while(count < maximumBatchSize && (outgoingEvent = outgoingQueue.poll()) != null) {
+					bodyOut.writeLong(outgoingEvent.sequence);
+					bodyOut.writeUTF(outgoingEvent.typeId);
+					bodyOut.writeInt(outgoingEvent.serializedForm.length);
+					bodyOut.write(outgoingEvent.serializedForm);
+					count++;
+				}
+				if(count == 0)
+					break;
+				out.writeInt(origin);
+				out.writeInt(count);
+				body.writeTo(out);
+				out.flush();
+				transport.send(frame.toByteArray());
+				forwardedCount.addAndGet(count);
+			} catch (IOException ioe) {
+				//? Writing to memory, not expected.
+				log.warn("Unable to frame remote events.", ioe);
+			}
+		}
+	}
+
+	@Override
+	public void onFrame(byte[] frame) {
+		try {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame));
+			int frameOrigin = in.readInt();
+			if(frameOrigin == origin)
+				return; //? Our own, looped back.
+			AtomicLong lastSequence = lastSequenceOf(frameOrigin);
+			int count = in.readInt();
+			for(int i = 0; i < count; i++) {
+				long eventSequence = in.readLong();
+				String typeId = in.readUTF();
+				byte[] serializedForm = new byte[in.readInt()];
+				in.readFully(serializedForm);
+				if(!advance(lastSequence, eventSequence)) {
+					duplicateCount.incrementAndGet();
+					continue;
+				}
+				try {
+					listener.onEvent(deserialize(serializedForm), typeId);
+					receivedCount.incrementAndGet();
+				} catch (ClassNotFoundException cnfe) {
+					log.warn("Unable to deserialize a remote event from a peer.", cnfe);
+				} catch (InvalidClassException ice) {
+					log.warn("Refused a remote event from a peer.", ice);
+				}
+			}
+		} catch (IOException ioe) {
+			log.warn("Dropped a malformed frame.", ioe);
+		}
+	}
+
+	private AtomicLong lastSequenceOf(int frameOrigin) {
+		AtomicLong result = lastSequenceByOrigin.get(frameOrigin);
+		if(result == null) {
+			result = new AtomicLong();
+			AtomicLong existing = lastSequenceByOrigin.putIfAbsent(frameOrigin, result);
+			if(existing != null) {
+				result = existing;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return whether the sequence is new for its origin
+	 */
+	private static boolean advance(AtomicLong lastSequence, long eventSequence) {
+		long current;
+		do {
+			current = lastSequence.get();
+			if(eventSequence <= current)
+				return false;
+		} while(!lastSequence.compareAndSet(current, eventSequence));
+		return true;
+	}
+
+	private static byte[] serialize(RemoteGwtEvent<?> event) throws IOException {
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		ObjectOutputStream objectOutputStream = new ObjectOutputStream(result);
+		objectOutputStream.writeObject(event);
+		objectOutputStream.close();
+		return result.toByteArray();
+	}
+
+	private static RemoteGwtEvent<?> deserialize(byte[] serializedForm) throws IOException, ClassNotFoundException {
+		ObjectInputStream objectInputStream = new EventInputStream(new ByteArrayInputStream(serializedForm));
+		try {
+			Object result = objectInputStream.readObject();
+			if(!(result instanceof RemoteGwtEvent))
+				throw new InvalidClassException((result == null)? null : result.getClass().getName(), "Not a remote event");
+			return (RemoteGwtEvent<?>) result;
+		} finally {
+			objectInputStream.close();
+		}
+	}
+
+	public long getForwardedCount() {
+		return forwardedCount.get();
+	}
+
+	public long getReceivedCount() {
+		return receivedCount.get();
+	}
+
+	public long getDuplicateCount() {
+		return duplicateCount.get();
+	}
+
+	@Override
+	public String toString() {
+		return "ClusterBridge:{origin=" + origin + ", transport=" + transport + '}';
+	}
+
+}
@@ -0,0 +1,51 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import java.io.IOException;
+
+
+/**
+ * Interface which is implemented by the transports of a cluster of remote
+ * event services. A transport carries opaque frames, each one a batch of
+ * pre-serialized events, from one node to all of its peers. Frames of the
+ * same node must arrive in the order in which they were sent; lost frames
+ * are lost, but duplicates are dropped by the receiving node.
+ * 
+ * @see ClusterTransportFactory
+ * 
+ * @author Dann Martens
+ */
+public interface ClusterTransport {
+
+	public static interface Receiver {
+
+		void onFrame(byte[] frame);
+
+	}
+
+	void start(Receiver receiver) throws IOException;
+
+	/**
+	 * Sends a frame to all peers, without waiting for it to arrive.
+	 */
+	void send(byte[] frame);
+
+	void stop();
+
+}
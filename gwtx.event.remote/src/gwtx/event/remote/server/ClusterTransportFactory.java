@@ -0,0 +1,380 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * A factory for cluster transports. This factory is able to create two 
+ * types: an in-process loopback transport, which connects the services of
+ * one JVM that share a group name, and a socket transport, which connects
+ * to a fixed list of peers over TCP. Frames carry serialized Java objects,
+ * so sockets must only be reachable by trusted peers: a socket transport 
+ * listens on the loopback interface unless told otherwise, and accepts 
+ * connections from the addresses of its peers only.
+ * 
+ * @author Dann Martens
+ */
+public class ClusterTransportFactory {
+
+	private static final Log log = Log.getLog(ClusterTransportFactory.class);
+
+	private static final int DEFAULT_SEND_QUEUE_SIZE = 1024;
+
+	private static final int MAXIMUM_FRAME_SIZE = 64 * 1024 * 1024;
+
+	private static final long RECONNECT_DELAY_IN_MILLIS = 1000L;
+
+	private static final int CONNECT_TIMEOUT_IN_MILLIS = 5000;
+
+	private static final int ACCEPT_BACKLOG = 50;
+
+	private static class Loopback implements ClusterTransport {
+
+		private static final ConcurrentMap<String, List<Loopback>> groupMap = new ConcurrentHashMap<String, List<Loopback>>();
+
+		private final String group;
+
+		private Receiver receiver;
+
+		private ExecutorService deliverer;
+
+		private Loopback(String group) {
+			this.group = group;
+		}
+
+		@Override
+		public void start(Receiver receiver) {
+			this.receiver = receiver;
+			//? One thread per member, so frames arrive in order, but not on the sending thread.
+			deliverer = Executors.newSingleThreadExecutor(new DaemonThreadFactory("Loopback-" + group));
+			List<Loopback> memberList = groupMap.get(group);
+			if(memberList == null) {
+				memberList = new CopyOnWriteArrayList<Loopback>();
+				List<Loopback> existing = groupMap.putIfAbsent(group, memberList);
+				if(existing != null) {
+					memberList = existing;
+				}
+			}
+			memberList.add(this);
+		}
+
+		@Override
+		public void send(byte[] frame) {
+			List<Loopback> memberList = groupMap.get(group);
+			if(memberList == null)
+				return;
+			for(Loopback member: memberList) {
+				if(member != this) {
+					member.deliver(frame);
+				}
+			}
+		}
+
+		private void deliver(final byte[] frame) {
+			try {
+				deliverer.execute(new Runnable() {
+					@Override
+					public void run() {
+						receiver.onFrame(frame);
+					}
+				});
+			} catch (RejectedExecutionException ignore) {
+				//? Stopped.
+			}
+		}
+
+		@Override
+		public void stop() {
+			List<Loopback> memberList = groupMap.get(group);
+			if(memberList != null) {
+				memberList.remove(this);
+			}
+			if(deliverer != null) {
+				deliverer.shutdown();
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "Loopback*ClusterTransport:{group=" + group + '}';
+		}
+
+	}
+
+	private static class Sockets implements ClusterTransport {
+
+		private final InetAddress bindAddress;
+
+		private final int port;
+
+		private final List<Peer> peerList = new ArrayList<Peer>();
+
+		private final List<Socket> inboundList = new CopyOnWriteArrayList<Socket>();
+
+		private final DaemonThreadFactory threadFactory = new DaemonThreadFactory("ClusterTransport");
+
+		private ServerSocket serverSocket;
+
+		private volatile boolean running = false;
+
+		private final Set<InetAddress> trustedSet = new HashSet<InetAddress>();
+
+		private Sockets(InetAddress bindAddress, int port, List<InetSocketAddress> peerAddressList) {
+			this.bindAddress = bindAddress;
+			this.port = port;
+			for(InetSocketAddress address: peerAddressList) {
+				peerList.add(new Peer(address));
+			}
+		}
+
+		@Override
+		public void start(final Receiver receiver) throws IOException {
+			running = true;
+			for(Peer peer: peerList) {
+				//? Resolved once, a peer which moves needs a restart.
+				InetAddress address = peer.address.getAddress();
+				if(address == null) {
+					log.warn("Unable to resolve peer {}, it cannot connect.", peer.address);
+					continue;
+				}
+				trustedSet.add(address);
+			}
+			serverSocket = new ServerSocket(port, ACCEPT_BACKLOG, bindAddress);
+			threadFactory.newThread(new Runnable() {
+				@Override
+				public void run() {
+					accept(receiver);
+				}
+			}).start();
+			for(final Peer peer: peerList) {
+				threadFactory.newThread(peer).start();
+			}
+		}
+
+		private void accept(final Receiver receiver) {
+			while(running) {
+				try {
+					final Socket socket = serverSocket.accept();
+					if(!trustedSet.contains(socket.getInetAddress())) {
+						log.warn("Refused a connection from {}, it is not a peer.", socket.getInetAddress());
+						close(socket);
+						continue;
+					}
+					inboundList.add(socket);
+					threadFactory.newThread(new Runnable() {
+						@Override
+						public void run() {
+							read(socket, receiver);
+						}
+					}).start();
+				} catch (IOException ioe) {
+					if(running) {
+						log.warn("Unable to accept a peer connection.", ioe);
+					}
+				}
+			}
+		}
+
+		private void read(Socket socket, Receiver receiver) {
+			try {
+				DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+				while(running) {
+					int length = in.readInt();
+					if(length < 0 || length > MAXIMUM_FRAME_SIZE)
+						throw new IOException("Invalid frame length " + length);
+					byte[] frame = new byte[length];
+					in.readFully(frame);
+					receiver.onFrame(frame);
+				}
+			} catch (EOFException ignore) {
+				//? The peer went away, it reconnects by itself.
+			} catch (IOException ioe) {
+				if(running) {
+					log.warn("Lost a peer connection.", ioe);
+				}
+			} finally {
+				inboundList.remove(socket);
+				close(socket);
+			}
+		}
+
+		@Override
+		public void send(byte[] frame) {
+			for(Peer peer: peerList) {
+				peer.offer(frame);
+			}
+		}
+
+		@Override
+		public void stop() {
+			running = false;
+			try {
+				if(serverSocket != null) {
+					serverSocket.close();
+				}
+			} catch (IOException ignore) {}
+			for(Socket socket: inboundList) {
+				close(socket);
+			}
+			for(Peer peer: peerList) {
+				peer.stop();
+			}
+		}
+
+		private static void close(Socket socket) {
+			try {
+				socket.close();
+			} catch (IOException ignore) {}
+		}
+
+		/**
+		 * Outbound connection to a peer, with its own queue of frames and a 
+		 * writer which reconnects when the connection is lost. Frames which 
+		 * do not fit in the queue are dropped.
+		 */
+		private class Peer implements Runnable {
+
+			private final InetSocketAddress address;
+
+			private final BlockingQueue<byte[]> sendQueue = new LinkedBlockingQueue<byte[]>(DEFAULT_SEND_QUEUE_SIZE);
+
+			private volatile Thread writer;
+
+			private Socket socket;
+
+			private Peer(InetSocketAddress address) {
+				this.address = address;
+			}
+
+			void offer(byte[] frame) {
+				if(!sendQueue.offer(frame)) {
+					log.warn("Dropped a frame for peer {}, its queue is full.", address);
+				}
+			}
+
+			@Override
+			public void run() {
+				writer = Thread.currentThread();
+				byte[] frame = null;
+				while(running) {
+					try {
+						if(frame == null) {
+							frame = sendQueue.take();
+						}
+						if(socket == null) {
+							socket = new Socket();
+							socket.setTcpNoDelay(true);
+							socket.connect(address, CONNECT_TIMEOUT_IN_MILLIS);
+						}
+						DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+						//? Write whatever is queued up, then flush once.
+						do {
+							out.writeInt(frame.length);
+							out.write(frame);
+						} while((frame = sendQueue.poll()) != null);
+						out.flush();
+					} catch (InterruptedException ie) {
+						break;
+					} catch (IOException ioe) {
+						if(!running)
+							break;
+						log.debug("Unable to reach peer {}: {}", address, ioe);
+						if(socket != null) {
+							close(socket);
+							socket = null;
+						}
+						try {
+							TimeUnit.MILLISECONDS.sleep(RECONNECT_DELAY_IN_MILLIS);
+						} catch (InterruptedException ie) {
+							break;
+						}
+					}
+				}
+				if(socket != null) {
+					close(socket);
+				}
+			}
+
+			void stop() {
+				Thread candidate = writer;
+				if(candidate != null) {
+					candidate.interrupt();
+				}
+			}
+
+		}
+
+		@Override
+		public String toString() {
+			return "Sockets*ClusterTransport:{bindAddress=" + bindAddress + ", port=" + port + ", peers=" + peerList.size() + '}';
+		}
+
+	}
+
+	public static ClusterTransport newLoopback(String group) {
+		return new Loopback(group);
+	}
+
+	/**
+	 * Creates a socket transport which listens on the loopback interface.
+	 */
+	public static ClusterTransport newSockets(int port, List<InetSocketAddress> peerAddressList) {
+		return newSockets(null, port, peerAddressList);
+	}
+
+	/**
+	 * Creates a socket transport which listens on the given address, or on
+	 * the loopback interface if <code>null</code>.
+	 */
+	public static ClusterTransport newSockets(InetAddress bindAddress, int port, List<InetSocketAddress> peerAddressList) {
+		if(bindAddress == null) {
+			try {
+				bindAddress = InetAddress.getByName(null);
+			} catch (IOException ioe) {
+				//? Never for the loopback address.
+				throw new IllegalStateException(ioe);
+			}
+		}
+		return new Sockets(bindAddress, port, peerAddressList);
+	}
+
+}
@@ -0,0 +1,93 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import gwtx.event.remote.shared.RemoteGwtEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * The conflatable event types of a remote event service, together with 
+ * their key extractors.
+ * 
+ * @author Dann Martens
+ */
+class Conflation {
+
+	/**
+	 * Key of a conflatable event, qualified by the type identifier.
+	 */
+	static final class Key {
+
+		private final String typeId;
+
+		private final Object key;
+
+		public Key(String typeId, Object key) {
+			this.typeId = typeId;
+			this.key = key;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * typeId.hashCode() + key.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj)
+				return true;
+			if(!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return typeId.equals(other.typeId) && key.equals(other.key);
+		}
+
+		@Override
+		public String toString() {
+			return typeId + '#' + key;
+		}
+
+	}
+
+	private final Map<String, ConflationKeyExtractor<RemoteGwtEvent<?>>> extractorMap = new ConcurrentHashMap<String, ConflationKeyExtractor<RemoteGwtEvent<?>>>();
+
+	@SuppressWarnings("unchecked")
+	public void register(String typeId, ConflationKeyExtractor<?> extractor) {
+		extractorMap.put(typeId, (ConflationKeyExtractor<RemoteGwtEvent<?>>) extractor);
+	}
+
+	public void unregister(String typeId) {
+		extractorMap.remove(typeId);
+	}
+
+	/**
+	 * Returns the key of the given event, or <code>null</code> when it is
+	 * not to be conflated.
+	 */
+	public Key keyOf(String typeId, RemoteGwtEvent<?> event) {
+		ConflationKeyExtractor<RemoteGwtEvent<?>> extractor = extractorMap.get(typeId);
+		if(extractor == null)
+			return null;
+		Object key = extractor.getKey(event);
+		return (key == null)? null : new Key(typeId, key);
+	}
+
+}
@@ -0,0 +1,38 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import gwtx.event.remote.shared.RemoteGwtEvent;
+
+
+/**
+ * Interface which is implemented to declare an event type as conflatable.
+ * Of all pending events of that type with equal keys, sessions only receive
+ * the latest one.
+ * 
+ * @author Dann Martens
+ */
+public interface ConflationKeyExtractor<E extends RemoteGwtEvent<?>> {
+
+	/**
+	 * Returns the key of an event, e.g. the identifier of the entity whose
+	 * state it carries, or <code>null</code> to never conflate it.
+	 */
+	Object getKey(E event);
+
+}
@@ -0,0 +1,55 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Creates named daemon threads of normal priority for the background work
+ * of the remote event service.
+ *
+ * @author Dann Martens
+ */
+class DaemonThreadFactory implements ThreadFactory {
+
+	private final ThreadGroup group;
+
+	private final String name;
+
+	private final AtomicInteger threadCounter = new AtomicInteger();
+
+	public DaemonThreadFactory(String name) {
+		final SecurityManager securityManager = System.getSecurityManager();
+		this.group = (securityManager != null)? securityManager.getThreadGroup() :  Thread.currentThread().getThreadGroup();
+		this.name = name;
+	}
+
+	@Override
+	public Thread newThread(Runnable runnable) {
+		int count = threadCounter.getAndIncrement();
+		Thread result = new Thread(group, runnable, (count == 0)? name : name + '-' + count, 0);
+		if (!result.isDaemon())
+			result.setDaemon(true);
+		if (result.getPriority() != Thread.NORM_PRIORITY)
+			result.setPriority(Thread.NORM_PRIORITY);
+		return result;
+	}
+
+}
@@ -0,0 +1,199 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import gwtx.event.remote.shared.RemoteGwtEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gwt.user.client.rpc.SerializationException;
+import com.google.gwt.user.server.rpc.SerializationPolicy;
+
+
+/**
+ * The events collected by a single poll, capped by a maximum number of
+ * events and a maximum number of response bytes. A batch always accepts its
+ * first event, even when that one exceeds the byte cap on its own. A
+ * serialized batch collects the cached serialized forms of the events
+ * instead of the events themselves. Of several conflatable events with the
+ * same key, only the latest one is kept, in its own place.
+ * 
+ * @author Dann Martens
+ */
+class EventBatch {
+
+	private static final Log log = Log.getLog(EventBatch.class);
+
+	private final int maximumSize;
+
+	private final long maximumBytes;
+
+	private final SerializationPolicy serializationPolicy;
+
+	private final int flags;
+
+	private final boolean serialized;
+
+	private final List<RemoteGwtEvent<?>> eventList = new ArrayList<RemoteGwtEvent<?>>();
+
+	private final List<String> serializedList = new ArrayList<String>();
+
+	private long bytes = 0;
+
+	private Map<Conflation.Key, Integer> indexByKey;
+
+	private int holeCount = 0;
+
+	/**
+	 * @param serializationPolicy the policy of the polling client, the byte
+	 *        cap is only applied when one is known
+	 * @param serialized whether to collect serialized forms, which requires
+	 *        a serialization policy
+	 */
+	public EventBatch(int maximumSize, long maximumBytes, SerializationPolicy serializationPolicy, int flags, boolean serialized) {
+		if(serialized && serializationPolicy == null)
+			throw new NullPointerException("A serialization policy is required!");
+		this.maximumSize = maximumSize;
+		this.maximumBytes = maximumBytes;
+		this.serializationPolicy = serializationPolicy;
+		this.flags = flags;
+		this.serialized = serialized;
+	}
+
+	public void add(Referer<RemoteGwtEvent<?>> referer) {
+		if(serialized) {
+			try {
+				String serializedForm = referer.getSerializedForm(serializationPolicy, flags);
+				conflate(referer.getConflationKey());
+				bytes += serializedForm.length();
+				serializedList.add(serializedForm);
+			} catch (SerializationException se) {
+				//? Skip it, rather than failing every poll which comes across it.
+				log.warn("Unable to serialize a remote event, skipped it.", se);
+			}
+			return;
+		}
+		if(maximumBytes < Long.MAX_VALUE && serializationPolicy != null) {
+			try {
+				bytes += referer.getSerializedForm(serializationPolicy, flags).length();
+			} catch (SerializationException ignore) {
+				//? Reported when the response itself gets encoded.
+			}
+		}
+		conflate(referer.getConflationKey());
+		eventList.add(referer.getReferenced());
+	}
+
+	/**
+	 * Drops the event with the same key which is in this batch already, if
+	 * any. The next event to be added takes over the key. Bytes of dropped 
+	 * events which were not collected in serialized form keep counting.
+	 */
+	private void conflate(Conflation.Key conflationKey) {
+		if(conflationKey == null)
+			return;
+		if(indexByKey == null) {
+			indexByKey = new HashMap<Conflation.Key, Integer>();
+		}
+		Integer index = indexByKey.put(conflationKey, serialized? serializedList.size() : eventList.size());
+		if(index == null)
+			return;
+		if(serialized) {
+			bytes -= serializedList.set(index, null).length();
+		} else {
+			eventList.set(index, null);
+		}
+		holeCount++;
+	}
+
+	/**
+	 * Adds an event which is not held by a ring, such as a gap marker or a
+	 * replayed event. Its serialized form is not cached.
+	 */
+	public void add(RemoteGwtEvent<?> event) {
+		add(event, null);
+	}
+
+	/**
+	 * @param conflationKey the key of a conflatable event, <code>null</code>
+	 *        otherwise
+	 */
+	public void add(RemoteGwtEvent<?> event, Conflation.Key conflationKey) {
+		if(serialized) {
+			try {
+				String serializedForm = Referer.serialize(event, serializationPolicy, flags);
+				conflate(conflationKey);
+				bytes += serializedForm.length();
+				serializedList.add(serializedForm);
+			} catch (SerializationException se) {
+				log.warn("Unable to serialize a remote event, skipped it.", se);
+			}
+			return;
+		}
+		conflate(conflationKey);
+		eventList.add(event);
+	}
+
+	public boolean isFull() {
+		return size() >= maximumSize || bytes >= maximumBytes;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public int size() {
+		return (serialized? serializedList.size() : eventList.size()) - holeCount;
+	}
+
+	private void compact() {
+		if(holeCount > 0) {
+			//? Once compacted, indices are no longer valid.
+			indexByKey = null;
+			holeCount = 0;
+			serializedList.removeAll(Collections.singleton(null));
+			eventList.removeAll(Collections.singleton(null));
+		}
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+
+	public List<RemoteGwtEvent<?>> getEventList() {
+		compact();
+		return eventList;
+	}
+
+	public List<String> getSerializedList() {
+		compact();
+		return serializedList;
+	}
+
+	/**
+	 * Returns the serialized forms or the events, whichever were collected.
+	 */
+	public Object getResult() {
+		return serialized? getSerializedList() : getEventList();
+	}
+
+}
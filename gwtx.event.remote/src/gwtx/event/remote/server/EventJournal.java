@@ -0,0 +1,478 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import gwtx.event.remote.shared.AbstractRemoteGwtEvent;
+import gwtx.event.remote.shared.GapRemoteEvent;
+import gwtx.event.remote.shared.RemoteGwtEvent;
+import gwtx.event.remote.shared.SourceId;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Append-only journal of published events, kept in memory-mapped segment
+ * files. Every journaled event gets a journal sequence, which keeps counting
+ * across restarts, so a client can have its events replayed from the last
+ * sequence it received. Segments are retired by age, checked periodically, 
+ * and by the total size of the journal, checked whenever a segment fills 
+ * up; the segment which is being written is never retired.
+ * <p>
+ * A record consists of its length, its sequence, the type identifier of the
+ * event and the event in Java serialized form. A zero length marks the end
+ * of the records in a segment. Replays read the records from the mapped 
+ * segments, but the serialized form is not the one clients receive: every
+ * replayed event is deserialized, and then serialized once more using the
+ * serialization policy of the client.
+ * 
+ * @author Dann Martens
+ */
+class EventJournal implements SessionListener {
+
+	private static final Log log = Log.getLog(EventJournal.class);
+
+	private static final String SEGMENT_SUFFIX = ".journal";
+
+	private static final int LENGTH_SIZE = 4;
+
+	private static final int HEADER_SIZE = LENGTH_SIZE + 8 + 2;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final long MAXIMUM_RETIRE_INTERVAL_IN_MILLIS = 60000L;
+
+	private static final class Segment {
+
+		private final long firstSequence;
+
+		private final File file;
+
+		private final MappedByteBuffer buffer;
+
+		private volatile long closedTimeInMillis = Long.MAX_VALUE;
+
+		public Segment(long firstSequence, File file, MappedByteBuffer buffer) {
+			this.firstSequence = firstSequence;
+			this.file = file;
+			this.buffer = buffer;
+		}
+
+	}
+
+	private static final class Replay {
+
+		private final long endSequence;
+
+		private long nextSequence;
+
+		private Segment segment;
+
+		private int position;
+
+		public Replay(long nextSequence, long endSequence) {
+			this.nextSequence = nextSequence;
+			this.endSequence = endSequence;
+		}
+
+	}
+
+	/**
+	 * Gives access to the internal buffer, so it can be copied into a 
+	 * segment without an intermediate array.
+	 */
+	private static final class RecordOutputStream extends ByteArrayOutputStream {
+
+		public void writeTo(ByteBuffer target) {
+			target.put(buf, 0, count);
+		}
+
+		public InputStream toInputStream() {
+			return new ByteArrayInputStream(buf, 0, count);
+		}
+
+	}
+
+	private static final class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer source;
+
+		public ByteBufferInputStream(ByteBuffer source) {
+			this.source = source;
+		}
+
+		@Override
+		public int read() {
+			return source.hasRemaining()? (source.get() & 0xFF) : -1;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			if(!source.hasRemaining())
+				return -1;
+			length = Math.min(length, source.remaining());
+			source.get(bytes, offset, length);
+			return length;
+		}
+
+		@Override
+		public int available() {
+			return source.remaining();
+		}
+
+	}
+
+	private final File directory;
+
+	private final int segmentSize;
+
+	private final long retentionTimeInMillis;
+
+	private final long retentionBytes;
+
+	private final ConcurrentSkipListMap<Long, Segment> segmentMap = new ConcurrentSkipListMap<Long, Segment>();
+
+	private final ConcurrentMap<SourceId, Replay> replayMap = new ConcurrentHashMap<SourceId, Replay>();
+
+	private final RecordOutputStream recordOutputStream = new RecordOutputStream();
+
+	private Segment tail;
+
+	private int tailPosition;
+
+	private volatile long lastSequence = -1L;
+
+	private ScheduledExecutorService retirer;
+
+	/**
+	 * @param retentionTimeInMillis how long a segment is kept after it has
+	 *        been filled up, zero or less to keep segments regardless of age
+	 * @param retentionBytes the size beyond which the oldest segments are 
+	 *        retired, zero or less for no limit
+	 */
+	public EventJournal(File directory, int segmentSize, long retentionTimeInMillis, long retentionBytes) {
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.retentionTimeInMillis = retentionTimeInMillis;
+		this.retentionBytes = retentionBytes;
+	}
+
+	/**
+	 * Maps the existing segments and recovers the position of the last one, 
+	 * or creates the first segment of an empty journal.
+	 */
+	public synchronized void open() throws IOException {
+		if(!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Unable to create journal directory '" + directory + "'!");
+		String[] names = directory.list(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith(SEGMENT_SUFFIX);
+			}
+		});
+		Arrays.sort(names); //? Zero-padded, so in sequence order.
+		for(int i = 0; i < names.length; i++) {
+			File file = new File(directory, names[i]);
+			long firstSequence = Long.parseLong(names[i].substring(0, names[i].length() - SEGMENT_SUFFIX.length()));
+			Segment segment = new Segment(firstSequence, file, map(file, Math.max(segmentSize, (int) file.length())));
+			if(i < names.length - 1) {
+				segment.closedTimeInMillis = file.lastModified();
+			}
+			segmentMap.put(firstSequence, segment);
+		}
+		startRetirer();
+		if(segmentMap.isEmpty()) {
+			roll(0L);
+			return;
+		}
+		tail = segmentMap.lastEntry().getValue();
+		tailPosition = 0;
+		lastSequence = tail.firstSequence - 1;
+		ByteBuffer buffer = tail.buffer;
+		while(tailPosition + HEADER_SIZE <= buffer.capacity()) {
+			int length = buffer.getInt(tailPosition);
+			if(length <= 0)
+				break;
+			lastSequence = buffer.getLong(tailPosition + LENGTH_SIZE);
+			tailPosition += LENGTH_SIZE + length;
+		}
+	}
+
+	public synchronized void close() {
+		if(retirer != null) {
+			retirer.shutdown();
+			retirer = null;
+		}
+		if(tail != null) {
+			tail.buffer.force();
+		}
+		segmentMap.clear();
+		replayMap.clear();
+		tail = null;
+	}
+
+	public long getLastSequence() {
+		return lastSequence;
+	}
+
+	public long getFirstSequence() {
+		Map.Entry<Long, Segment> entry = segmentMap.firstEntry();
+		return (entry == null)? 0L : entry.getKey();
+	}
+
+	/**
+	 * Appends an event. Events are appended in publication order, so the 
+	 * caller must hold the monitor of the journal while publishing as well.
+	 * The fired event may be shared, so it is left alone; a copy of it is
+	 * stamped with its journal sequence instead, and should be published.
+	 * 
+	 * @return the event to publish, stamped with its journal sequence if it
+	 *         keeps one
+	 */
+	public synchronized RemoteGwtEvent<?> append(RemoteGwtEvent<?> event, String typeId) throws IOException {
+		long sequence = lastSequence + 1;
+		recordOutputStream.reset();
+		ObjectOutputStream objectOutputStream = new ObjectOutputStream(recordOutputStream);
+		objectOutputStream.writeObject(event);
+		objectOutputStream.close();
+		byte[] typeIdBytes = typeId.getBytes(UTF_8);
+		int size = HEADER_SIZE + typeIdBytes.length + recordOutputStream.size();
+		//? Leave room for the terminating zero length.
+		if(size + LENGTH_SIZE > segmentSize)
+			throw new IOException("Event of " + size + " bytes does not fit in a journal segment!");
+		if(tailPosition + size + LENGTH_SIZE > tail.buffer.capacity()) {
+			roll(sequence);
+		}
+		ByteBuffer buffer = tail.buffer.duplicate();
+		buffer.position(tailPosition + LENGTH_SIZE);
+		buffer.putLong(sequence);
+		buffer.putShort((short) typeIdBytes.length);
+		buffer.put(typeIdBytes);
+		recordOutputStream.writeTo(buffer);
+		//? The length goes last, readers never see half a record.
+		tail.buffer.putInt(tailPosition, size - LENGTH_SIZE);
+		tailPosition += size;
+		lastSequence = sequence;
+		if(!(event instanceof AbstractRemoteGwtEvent))
+			return event;
+		try {
+			return read(recordOutputStream.toInputStream(), sequence);
+		} catch (ClassNotFoundException cnfe) {
+			//? Its own class, not expected.
+			throw new IOException(cnfe);
+		}
+	}
+
+	private void roll(long firstSequence) throws IOException {
+		if(tail != null) {
+			tail.buffer.force();
+			tail.closedTimeInMillis = System.currentTimeMillis();
+		}
+		File file = new File(directory, String.format("%020d", firstSequence) + SEGMENT_SUFFIX);
+		tail = new Segment(firstSequence, file, map(file, segmentSize));
+		tailPosition = 0;
+		segmentMap.put(firstSequence, tail);
+		retire();
+	}
+
+	private static MappedByteBuffer map(File file, int size) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			//? The mapping remains valid after the channel has been closed.
+			return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * Retires segments by age, even while nothing is being published.
+	 */
+	private void startRetirer() {
+		if(retentionTimeInMillis <= 0)
+			return;
+		long interval = Math.min(retentionTimeInMillis, MAXIMUM_RETIRE_INTERVAL_IN_MILLIS);
+		retirer = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(EventJournal.class.getSimpleName()));
+		retirer.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (EventJournal.this) {
+					retire();
+				}
+			}
+		}, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	private void retire() {
+		long now = System.currentTimeMillis();
+		long totalBytes = 0;
+		for(Segment segment: segmentMap.values()) {
+			totalBytes += segment.buffer.capacity();
+		}
+		while(segmentMap.size() > 1) {
+			Segment oldest = segmentMap.firstEntry().getValue();
+			boolean tooLarge = retentionBytes > 0 && totalBytes > retentionBytes;
+			boolean tooOld = retentionTimeInMillis > 0 && now - oldest.closedTimeInMillis > retentionTimeInMillis;
+			if(!tooLarge && !tooOld)
+				break;
+			//? Replays which are still reading it keep their mapping.
+			segmentMap.remove(oldest.firstSequence);
+			totalBytes -= oldest.buffer.capacity();
+			if(!oldest.file.delete()) {
+				log.warn("Unable to delete journal segment {}", oldest.file);
+			}
+		}
+	}
+
+	/**
+	 * Schedules the replay of everything after <code>lastSequence</code> up
+	 * to the current end of the journal. The caller must hold the monitor of
+	 * the journal, so the replay ends exactly where the rings take over.
+	 */
+	public void startReplay(SourceId sourceId, long lastSequence) {
+		if(lastSequence < this.lastSequence) {
+			replayMap.put(sourceId, new Replay(lastSequence + 1, this.lastSequence));
+		}
+	}
+
+	public boolean isReplaying(SourceId sourceId) {
+		return replayMap.containsKey(sourceId);
+	}
+
+	/**
+	 * Adds the next subscribed events of a replay to the batch, until the
+	 * batch is full or the replay has ended. Events which have been retired
+	 * already are reported by a gap marker. Conflatable events are conflated
+	 * within the batch. Polls of the same session take turns, holding the 
+	 * monitor of the session.
+	 * 
+	 * @return whether the replay is still going on
+	 */
+	public boolean replay(SourceId sourceId, Session session, Conflation conflation, EventBatch batch) {
+		synchronized (session) {
+			Replay replay = replayMap.get(sourceId);
+			if(replay == null)
+				return false;
+			return replay(sourceId, replay, session, conflation, batch);
+		}
+	}
+
+	private boolean replay(SourceId sourceId, Replay replay, Session session, Conflation conflation, EventBatch batch) {
+		if(replay.segment == null) {
+			long firstSequence = getFirstSequence();
+			if(replay.nextSequence < firstSequence) {
+				batch.add(new GapRemoteEvent(firstSequence - replay.nextSequence));
+				replay.nextSequence = firstSequence;
+			}
+			Map.Entry<Long, Segment> entry = segmentMap.floorEntry(replay.nextSequence);
+			replay.segment = (entry == null)? null : entry.getValue();
+			replay.position = 0;
+		}
+		while(replay.segment != null && replay.nextSequence <= replay.endSequence && !batch.isFull()) {
+			ByteBuffer buffer = replay.segment.buffer;
+			int length = (replay.position + HEADER_SIZE <= buffer.capacity())? buffer.getInt(replay.position) : 0;
+			if(length <= 0) {
+				Map.Entry<Long, Segment> entry = segmentMap.higherEntry(replay.segment.firstSequence);
+				replay.segment = (entry == null)? null : entry.getValue();
+				replay.position = 0;
+				continue;
+			}
+			long sequence = buffer.getLong(replay.position + LENGTH_SIZE);
+			if(sequence >= replay.nextSequence) {
+				ByteBuffer record = buffer.duplicate();
+				record.limit(replay.position + LENGTH_SIZE + length);
+				record.position(replay.position + LENGTH_SIZE + 8);
+				byte[] typeIdBytes = new byte[record.getShort()];
+				record.get(typeIdBytes);
+				String typeId = new String(typeIdBytes, UTF_8);
+				if(session.isSubscribed(typeId)) {
+					try {
+						RemoteGwtEvent<?> event = read(new ByteBufferInputStream(record), sequence);
+						batch.add(event, conflation.keyOf(typeId, event));
+					} catch (Exception e) {
+						//? Skip it, rather than failing every replay which comes across it.
+						log.warn("Unable to replay a journaled event, skipped it.", e);
+					}
+				}
+				replay.nextSequence = sequence + 1;
+			}
+			replay.position += LENGTH_SIZE + length;
+		}
+		if(replay.segment == null || replay.nextSequence > replay.endSequence) {
+			//? Not a replay which has been started since.
+			replayMap.remove(sourceId, replay);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Reads a fresh instance of a journaled event, and stamps it with its
+	 * journal sequence.
+	 */
+	private static RemoteGwtEvent<?> read(InputStream in, long sequence) throws IOException, ClassNotFoundException {
+		ObjectInputStream objectInputStream = new ObjectInputStream(in);
+		try {
+			RemoteGwtEvent<?> result = (RemoteGwtEvent<?>) objectInputStream.readObject();
+			if(result instanceof AbstractRemoteGwtEvent) {
+				((AbstractRemoteGwtEvent<?>) result).setSequence(sequence);
+			}
+			return result;
+		} finally {
+			objectInputStream.close();
+		}
+	}
+
+	@Override
+	public void onSessionNew(SessionEvent event) {}
+
+	@Override
+	public void onSessionInvalidate(SessionEvent event) {
+		replayMap.remove(event.getSourceId());
+	}
+
+	@Override
+	public void onSessionExpire(SessionEvent event) {
+		replayMap.remove(event.getSourceId());
+	}
+
+	@Override
+	public String toString() {
+		return "EventJournal:{directory=" + directory + ", segments=" + segmentMap.size() + ", lastSequence=" + lastSequence + ", replays=" + replayMap.size() + '}';
+	}
+
+}
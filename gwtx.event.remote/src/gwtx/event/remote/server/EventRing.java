@@ -0,0 +1,532 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import gwtx.event.remote.server.SlowConsumerPolicy.Decision;
+import gwtx.event.remote.shared.BufferOverflowException;
+import gwtx.event.remote.shared.InvalidSessionException;
+import gwtx.event.remote.shared.RemoteGwtEvent;
+import gwtx.event.remote.shared.SourceId;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.lmax.disruptor.AlertException;
+import com.lmax.disruptor.BatchDescriptor;
+import com.lmax.disruptor.ClaimStrategy;
+import com.lmax.disruptor.EventFactory;
+import com.lmax.disruptor.EventProcessor;
+import com.lmax.disruptor.InsufficientCapacityException;
+import com.lmax.disruptor.NoOpEventProcessor;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.SequenceBarrier;
+import com.lmax.disruptor.SequenceGroup;
+import com.lmax.disruptor.WaitStrategy;
+
+
+/**
+ * A ring buffer of remote events, together with its barrier and its own
+ * overflow accounting. The remote event service uses a default ring for all
+ * event types, and optionally dedicated rings for (groups of) busy types.
+ * Sessions falling behind are dealt with by the slow consumer policy of the
+ * ring. When that policy is gating, the positions of the slowest sessions,
+ * up to the gating limit, hold back the producers, and the slowest session
+ * is evicted whenever a producer has been held back for longer than the 
+ * publish timeout. Server-side subscribers run on the ring as batch event
+ * processors, and gating ones hold back the producers regardless of the 
+ * policy.
+ * 
+ * @author Dann Martens
+ */
+class EventRing implements SessionListener {
+
+	private static final Log log = Log.getLog(EventRing.class);
+
+	private static final long PARK_TIME_IN_NANOS = 1000L;
+
+	private final static EventFactory<Referer<RemoteGwtEvent<?>>> EVENT_FACTORY = new EventFactory<Referer<RemoteGwtEvent<?>>>() {
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		public Referer<RemoteGwtEvent<?>> newInstance() {
+			return (Referer<RemoteGwtEvent<?>>) new Referer();
+		}
+	};
+
+	private final int index;
+
+	private final String name;
+
+	private final Set<String> typeIdSet;
+
+	private final RingBuffer<Referer<RemoteGwtEvent<?>>> ringBuffer;
+
+	private final SequenceBarrier barrier;
+
+	private final SlowConsumerPolicy slowConsumerPolicy;
+
+	/**
+	 * Positions of the gating sessions, changed in membership while holding
+	 * the map.
+	 */
+	private final ConcurrentHashMap<SourceId, Sequence> gatingSequenceMap = new ConcurrentHashMap<SourceId, Sequence>();
+
+	private final SequenceGroup gatingSequenceGroup = new SequenceGroup();
+
+	private final SequenceGroup subscriberSequenceGroup = new SequenceGroup();
+
+	private final List<EventSubscription<?>> subscriptionList = new CopyOnWriteArrayList<EventSubscription<?>>();
+
+	private final ThreadFactory subscriberThreadFactory;
+
+	private final Set<SourceId> evictedSet = Collections.newSetFromMap(new ConcurrentHashMap<SourceId, Boolean>());
+
+	private final AtomicLong overflowCount = new AtomicLong();
+
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	private final ConcurrentHashMap<Conflation.Key, Long> latestSequenceMap = new ConcurrentHashMap<Conflation.Key, Long>();
+
+	private final AtomicLong conflatedCount = new AtomicLong();
+
+	private final AtomicLong prunedSequence = new AtomicLong();
+
+	/**
+	 * @param index the index of the ring, under which sessions keep their
+	 *        last sequence
+	 * @param typeIdSet the type identifiers assigned to this ring, empty for
+	 *        the default ring
+	 */
+	public EventRing(int index, String name, Set<String> typeIdSet, ClaimStrategy claimStrategy, WaitStrategy waitStrategy, SlowConsumerPolicy slowConsumerPolicy) {
+		this.index = index;
+		this.name = name;
+		this.typeIdSet = Collections.unmodifiableSet(typeIdSet);
+		this.slowConsumerPolicy = slowConsumerPolicy;
+		ringBuffer = new RingBuffer<Referer<RemoteGwtEvent<?>>>(EVENT_FACTORY, claimStrategy, waitStrategy);
+		barrier = ringBuffer.newBarrier();
+		EventProcessor eventProcessor = new NoOpEventProcessor(ringBuffer);
+		if(slowConsumerPolicy.isGating()) {
+			//? An empty group never holds back anything.
+			ringBuffer.setGatingSequences(eventProcessor.getSequence(), gatingSequenceGroup, subscriberSequenceGroup);
+		} else {
+			ringBuffer.setGatingSequences(eventProcessor.getSequence(), subscriberSequenceGroup);
+		}
+		subscriberThreadFactory = new DaemonThreadFactory(name + "-Subscriber");
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Set<String> getTypeIdSet() {
+		return typeIdSet;
+	}
+
+	public long getCursor() {
+		return ringBuffer.getCursor();
+	}
+
+	public int getBufferSize() {
+		return ringBuffer.getBufferSize();
+	}
+
+	public long getRemainingCapacity() {
+		return ringBuffer.remainingCapacity();
+	}
+
+	public SlowConsumerPolicy getSlowConsumerPolicy() {
+		return slowConsumerPolicy;
+	}
+
+	public long getOverflowCount() {
+		return overflowCount.get();
+	}
+
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	/**
+	 * Returns the number of times a superseded event was skipped.
+	 */
+	public long getConflatedCount() {
+		return conflatedCount.get();
+	}
+
+	/**
+	 * Returns the number of events published since the last poll of the
+	 * given session, or zero when the session does not poll this ring.
+	 */
+	public long getLag(Session session) {
+		long lastSequence = session.getLastSequence(index);
+		return (lastSequence == Session.UNKNOWN_SEQUENCE)? 0L : Math.max(0L, ringBuffer.getCursor() - lastSequence);
+	}
+
+	/**
+	 * @param conflationKey the key of a conflatable event, <code>null</code>
+	 *        otherwise
+	 */
+	public long publish(RemoteGwtEvent<?> event, String typeId, Conflation.Key conflationKey) {
+		long sequence = slowConsumerPolicy.isGating()? nextGated() : ringBuffer.next();
+		Referer<RemoteGwtEvent<?>> referer = ringBuffer.get(sequence);
+		referer.setReferenced(event);
+		referer.setTypeId(typeId);
+		referer.setConflationKey(conflationKey);
+		//? Make the event available to EventProcessors
+		ringBuffer.publish(sequence); 
+		if(conflationKey != null) {
+			setLatestSequence(conflationKey, sequence);
+			pruneLatestSequences(sequence);
+		}
+		return sequence;
+	}
+
+	/**
+	 * Publishes the given events as one contiguous batch, claimed at once, or
+	 * in as few batches as the buffer size allows.
+	 */
+	public void publish(List<PendingEvent> pendingList) {
+		int offset = 0;
+		while(offset < pendingList.size()) {
+			int size = Math.min(pendingList.size() - offset, ringBuffer.getBufferSize());
+			if(slowConsumerPolicy.isGating()) {
+				awaitCapacity(size);
+			}
+			BatchDescriptor batchDescriptor = ringBuffer.next(ringBuffer.newBatchDescriptor(size));
+			long sequence = batchDescriptor.getStart();
+			for(int i = offset; i < offset + size; i++) {
+				PendingEvent pendingEvent = pendingList.get(i);
+				Referer<RemoteGwtEvent<?>> referer = ringBuffer.get(sequence++);
+				referer.setReferenced(pendingEvent.getEvent());
+				referer.setTypeId(pendingEvent.getTypeId());
+				referer.setConflationKey(pendingEvent.getConflationKey());
+			}
+			ringBuffer.publish(batchDescriptor);
+			sequence = batchDescriptor.getStart();
+			for(int i = offset; i < offset + size; i++, sequence++) {
+				Conflation.Key conflationKey = pendingList.get(i).getConflationKey();
+				if(conflationKey != null) {
+					setLatestSequence(conflationKey, sequence);
+				}
+			}
+			pruneLatestSequences(batchDescriptor.getEnd());
+			offset += size;
+		}
+	}
+
+	public long waitFor(long sequence, long timeout, TimeUnit unit) throws AlertException, InterruptedException {
+		return barrier.waitFor(sequence, timeout, unit);
+	}
+
+	/**
+	 * Claims the next sequence, while the gating sessions hold back the
+	 * producer for no longer than the publish timeout each time.
+	 */
+	private long nextGated() {
+		long timeoutInNanos = TimeUnit.MILLISECONDS.toNanos(slowConsumerPolicy.getPublishTimeout());
+		long startTime = System.nanoTime();
+		while(true) {
+			try {
+				return ringBuffer.tryNext(1);
+			} catch (InsufficientCapacityException ice) {
+				if(System.nanoTime() - startTime > timeoutInNanos) {
+					evictSlowest();
+					startTime = System.nanoTime();
+				} else {
+					LockSupport.parkNanos(PARK_TIME_IN_NANOS);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Waits until a batch of the given size can be claimed, under the same
+	 * publish timeout as {@link #nextGated()}. Concurrent producers may still
+	 * take the capacity in between, after which the claim itself blocks.
+	 */
+	private void awaitCapacity(int size) {
+		long timeoutInNanos = TimeUnit.MILLISECONDS.toNanos(slowConsumerPolicy.getPublishTimeout());
+		long startTime = System.nanoTime();
+		while(!ringBuffer.hasAvailableCapacity(size)) {
+			if(System.nanoTime() - startTime > timeoutInNanos) {
+				evictSlowest();
+				startTime = System.nanoTime();
+			} else {
+				LockSupport.parkNanos(PARK_TIME_IN_NANOS);
+			}
+		}
+	}
+
+	private void evictSlowest() {
+		SourceId slowest = null;
+		long minimum = Long.MAX_VALUE;
+		for(Map.Entry<SourceId, Sequence> entry: gatingSequenceMap.entrySet()) {
+			long sequence = entry.getValue().get();
+			if(sequence < minimum) {
+				minimum = sequence;
+				slowest = entry.getKey();
+			}
+		}
+		if(minimum >= subscriberSequenceGroup.get()) {
+			return; //? Held back by a subscriber, evicting sessions would not help.
+		}
+		if(slowest != null) {
+			//? The session finds out on its next poll.
+			evictedSet.add(slowest);
+			release(slowest);
+		}
+	}
+
+	/**
+	 * Stores the position of a session in this ring, which holds back the 
+	 * producers when the policy is gating and the session is among the 
+	 * slowest ones.
+	 */
+	public void updateSequence(SourceId sourceId, Session session, long sequence) {
+		session.updateSequence(index, sequence);
+		if(!slowConsumerPolicy.isGating() || sequence == Session.UNKNOWN_SEQUENCE || evictedSet.contains(sourceId))
+			return;
+		Sequence gatingSequence = gatingSequenceMap.get(sourceId);
+		if(gatingSequence != null) {
+			gatingSequence.set(sequence);
+			return;
+		}
+		//? Only a session behind every gating one can make a full group hold back more.
+		if(gatingSequenceMap.size() >= slowConsumerPolicy.getGatingLimit() && sequence >= gatingSequenceGroup.get())
+			return;
+		join(sourceId, sequence);
+	}
+
+	/**
+	 * Lets a session hold back the producers. A full group gives up its 
+	 * fastest session, which is left to the lag threshold from then on.
+	 */
+	private void join(SourceId sourceId, long sequence) {
+		synchronized (gatingSequenceMap) {
+			Sequence gatingSequence = gatingSequenceMap.get(sourceId);
+			if(gatingSequence != null) {
+				gatingSequence.set(sequence);
+				return;
+			}
+			if(gatingSequenceMap.size() >= slowConsumerPolicy.getGatingLimit()) {
+				SourceId fastest = null;
+				long maximum = sequence;
+				for(Map.Entry<SourceId, Sequence> entry: gatingSequenceMap.entrySet()) {
+					long candidate = entry.getValue().get();
+					if(candidate > maximum) {
+						maximum = candidate;
+						fastest = entry.getKey();
+					}
+				}
+				if(fastest == null)
+					return; //? Not behind any gating session after all.
+				release(fastest);
+			}
+			gatingSequence = new Sequence(sequence);
+			gatingSequenceMap.put(sourceId, gatingSequence);
+			gatingSequenceGroup.add(gatingSequence);
+		}
+	}
+
+	/**
+	 * Stops a session from holding back the producers of this ring.
+	 */
+	public void release(SourceId sourceId) {
+		synchronized (gatingSequenceMap) {
+			Sequence gatingSequence = gatingSequenceMap.remove(sourceId);
+			if(gatingSequence != null) {
+				gatingSequenceGroup.remove(gatingSequence);
+			}
+		}
+	}
+
+	/**
+	 * Starts a server-side subscriber, from the next event to be published 
+	 * onwards.
+	 * 
+	 * @param gating whether the subscriber holds back the producers, rather
+	 *        than being lapped by them
+	 */
+	public <H> RemoteEventSubscription addSubscription(String typeId, RemoteEventSubscriber<H> subscriber, boolean gating) {
+		EventSubscription<H> subscription = new EventSubscription<H>(this, ringBuffer, typeId, subscriber, gating);
+		if(gating) {
+			subscriberSequenceGroup.add(subscription.getEventProcessor().getSequence());
+		}
+		subscriptionList.add(subscription);
+		subscriberThreadFactory.newThread(subscription.getEventProcessor()).start();
+		return subscription;
+	}
+
+	public void removeSubscription(EventSubscription<?> subscription) {
+		if(subscriptionList.remove(subscription)) {
+			subscription.getEventProcessor().halt();
+			subscriberSequenceGroup.remove(subscription.getEventProcessor().getSequence());
+		}
+	}
+
+	public void removeSubscriptions() {
+		for(EventSubscription<?> subscription: subscriptionList) {
+			removeSubscription(subscription);
+		}
+	}
+
+	public long waitSequenceOf(Session session) {
+		long lastSequence = session.getLastSequence(index);
+		long cursor = ringBuffer.getCursor();
+		if(lastSequence == Session.UNKNOWN_SEQUENCE) {
+			lastSequence = cursor;
+		}
+		if(log.isTraceEnabled()) {
+			log.trace("Cursor is at: {}, lastSequence is at: {}, bufferSize is: {}", cursor, lastSequence, ringBuffer.getBufferSize());
+		}
+		return lastSequence + 1;
+	}
+
+	/**
+	 * Applies the slow consumer policy to a session which is about to read 
+	 * from <code>waitSequence</code> onwards.
+	 * 
+	 * @return the sequence to read from, which is further ahead when the
+	 *         oldest events have been dropped
+	 */
+	public long admit(SourceId sourceId, long waitSequence) throws BufferOverflowException, InvalidSessionException {
+		if(evictedSet.remove(sourceId)) {
+			evictionCount.incrementAndGet();
+			throw new InvalidSessionException();
+		}
+		int bufferSize = ringBuffer.getBufferSize();
+		long cursor = ringBuffer.getCursor();
+		long lag = cursor - (waitSequence - 1);
+		Decision decision = slowConsumerPolicy.decide(sourceId, lag, bufferSize);
+		switch(decision) {
+		case DELIVER:
+			return waitSequence;
+		case OVERFLOW:
+			overflowCount.incrementAndGet();
+			throw new BufferOverflowException();
+		case DROP_OLDEST:
+			//? Skip ahead to half a ring behind, leaving some room to read.
+			long nextSequence = cursor - (bufferSize / 2) + 1;
+			droppedCount.addAndGet(nextSequence - waitSequence);
+			return nextSequence;
+		case EVICT:
+			release(sourceId);
+			evictionCount.incrementAndGet();
+			throw new InvalidSessionException();
+		default:
+			throw new IllegalStateException("Unknown decision " + decision + '!');
+		}
+	}
+
+	/**
+	 * Collects the subscribed events from <code>sequence</code> up to and
+	 * including <code>availableSequence</code>, until the batch is full. 
+	 * Conflatable events which have been superseded already are skipped.
+	 * 
+	 * @return the next sequence to wait for
+	 */
+	public long drain(Session session, long sequence, long availableSequence, EventBatch batch) {
+		while(sequence <= availableSequence && !batch.isFull()) {
+			Referer<RemoteGwtEvent<?>> referer = ringBuffer.get(sequence);
+			if(session.isSubscribed(referer.getTypeId())) {
+				if(isSuperseded(referer.getConflationKey(), sequence)) {
+					conflatedCount.incrementAndGet();
+				} else {
+					batch.add(referer);
+				}
+			}
+			sequence++;
+		}
+		return sequence;
+	}
+
+	/**
+	 * Last-value cache, one entry per key. Concurrent producers may get here
+	 * out of order, so the entry only ever moves forward.
+	 */
+	private void setLatestSequence(Conflation.Key conflationKey, long sequence) {
+		Long latestSequence = latestSequenceMap.putIfAbsent(conflationKey, sequence);
+		while(latestSequence != null && latestSequence < sequence) {
+			if(latestSequenceMap.replace(conflationKey, latestSequence, sequence))
+				return;
+			latestSequence = latestSequenceMap.putIfAbsent(conflationKey, sequence);
+		}
+	}
+
+	/**
+	 * Drops the keys whose latest event has been overwritten, since nothing
+	 * they supersede can be read anymore. Runs once per lap of the ring.
+	 */
+	private void pruneLatestSequences(long sequence) {
+		int bufferSize = ringBuffer.getBufferSize();
+		long previous = prunedSequence.get();
+		if(sequence - previous < bufferSize || !prunedSequence.compareAndSet(previous, sequence))
+			return;
+		long lastOverwritten = ringBuffer.getCursor() - bufferSize;
+		for(Map.Entry<Conflation.Key, Long> entry: latestSequenceMap.entrySet()) {
+			if(entry.getValue() <= lastOverwritten) {
+				latestSequenceMap.remove(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	private boolean isSuperseded(Conflation.Key conflationKey, long sequence) {
+		if(conflationKey == null)
+			return false;
+		Long latestSequence = latestSequenceMap.get(conflationKey);
+		return latestSequence != null && latestSequence > sequence;
+	}
+
+	@Override
+	public void onSessionNew(SessionEvent event) {}
+
+	@Override
+	public void onSessionInvalidate(SessionEvent event) {
+		release(event.getSourceId());
+		evictedSet.remove(event.getSourceId());
+	}
+
+	@Override
+	public void onSessionExpire(SessionEvent event) {
+		release(event.getSourceId());
+		evictedSet.remove(event.getSourceId());
+	}
+
+	@Override
+	public String toString() {
+		return "EventRing:{name=" + name + ", cursor=" + ringBuffer.getCursor() + ", bufferSize=" + ringBuffer.getBufferSize() + ", policy=" + slowConsumerPolicy + ", overflows=" + overflowCount.get() + ", dropped=" + droppedCount.get() + ", evictions=" + evictionCount.get() + ", conflated=" + conflatedCount.get() + '}';
+	}
+
+}
@@ -0,0 +1,129 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import gwtx.event.remote.shared.SocketProtocol;
+import gwtx.event.remote.shared.SourceId;
+
+import com.google.gwt.user.server.rpc.SerializationPolicy;
+
+
+/**
+ * A connection which events are pushed to, instead of being polled for. The
+ * remote event service sends at most one frame at a time, and parks a new 
+ * poll for the connection once that frame has been sent. A connection with
+ * a bounded lifetime is closed once that has passed, after which the client
+ * is expected to reconnect.
+ * 
+ * @author Dann Martens
+ */
+abstract class EventSocket {
+
+	private volatile SourceId sourceId;
+
+	private volatile SerializationPolicy serializationPolicy;
+
+	private volatile int flags;
+
+	private volatile ParkedPoll poll;
+
+	private volatile boolean closed = false;
+
+	private final long openTimeInNanos = System.nanoTime();
+
+	private final long lifetimeInNanos;
+
+	protected EventSocket() {
+		this(Long.MAX_VALUE);
+	}
+
+	protected EventSocket(long lifetimeInNanos) {
+		this.lifetimeInNanos = lifetimeInNanos;
+	}
+
+	public SourceId getSourceId() {
+		return sourceId;
+	}
+
+	public SerializationPolicy getSerializationPolicy() {
+		return serializationPolicy;
+	}
+
+	public int getFlags() {
+		return flags;
+	}
+
+	public boolean isAccepted() {
+		return sourceId != null;
+	}
+
+	void accept(SourceId sourceId, SerializationPolicy serializationPolicy, int flags) {
+		this.serializationPolicy = serializationPolicy;
+		this.flags = flags;
+		this.sourceId = sourceId;
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	public boolean isExpired() {
+		return System.nanoTime() - openTimeInNanos > lifetimeInNanos;
+	}
+
+	void setPoll(ParkedPoll poll) {
+		this.poll = poll;
+		if(closed) { //? Closed while being parked.
+			poll.cancel();
+		}
+	}
+
+	/**
+	 * Stops delivery to this connection, which has been closed by either 
+	 * side.
+	 */
+	void onClose() {
+		closed = true;
+		ParkedPoll current = poll;
+		if(current != null) {
+			current.cancel();
+		}
+	}
+
+	/**
+	 * Sends a failure to the client, and closes the connection afterwards.
+	 */
+	void fail(String reason) {
+		closed = true;
+		send(SocketProtocol.encodeFailure(reason), new Runnable() {
+			@Override
+			public void run() {
+				close();
+			}
+		});
+	}
+
+	/**
+	 * Sends a frame without blocking. Once sent, the given command is run,
+	 * unless sending failed, in which case the connection is closed.
+	 */
+	protected abstract void send(String frame, Runnable onSent);
+
+	protected abstract void close();
+
+}
@@ -0,0 +1,98 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletResponse;
+
+
+/**
+ * A Server-Sent Events response which is held open to push frames through, 
+ * for clients which cannot use a web socket. Every frame becomes a single 
+ * <code>data</code> line, serialized forms never hold line breaks. Browsers
+ * reconnect by themselves once the stream has been closed.
+ * 
+ * @author Dann Martens
+ */
+class EventStream extends EventSocket {
+
+	public static final String CONTENT_TYPE = "text/event-stream";
+
+	private static final long RECONNECT_DELAY_IN_MILLIS = 100L;
+
+	private final AsyncContext asyncContext;
+
+	private final AtomicBoolean completed = new AtomicBoolean(false);
+
+	public EventStream(AsyncContext asyncContext, long lifetimeInMillis) {
+		super(TimeUnit.MILLISECONDS.toNanos(lifetimeInMillis));
+		this.asyncContext = asyncContext;
+	}
+
+	/**
+	 * Writes the headers, and how soon to reconnect once this stream ends.
+	 */
+	public void open() throws IOException {
+		HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+		response.setContentType(CONTENT_TYPE);
+		response.setCharacterEncoding("UTF-8");
+		response.setHeader("Cache-Control", "no-cache");
+		PrintWriter writer = response.getWriter();
+		writer.write("retry: " + RECONNECT_DELAY_IN_MILLIS + "\n\n");
+		writer.flush();
+		response.flushBuffer();
+	}
+
+	@Override
+	protected void send(String frame, Runnable onSent) {
+		try {
+			HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+			PrintWriter writer = response.getWriter();
+			writer.write("data: ");
+			writer.write(frame);
+			writer.write("\n\n");
+			writer.flush();
+			if(writer.checkError())
+				throw new IOException("The client went away.");
+			response.flushBuffer();
+		} catch (Exception e) {
+			//? Includes the container having recycled the response already.
+			close();
+			return;
+		}
+		onSent.run();
+	}
+
+	@Override
+	protected void close() {
+		onClose();
+		if(completed.compareAndSet(false, true)) {
+			try {
+				asyncContext.complete();
+			} catch (IllegalStateException ignore) {
+				//? Completed by the container in the meantime.
+			}
+		}
+	}
+
+}
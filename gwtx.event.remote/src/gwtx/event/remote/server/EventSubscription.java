@@ -0,0 +1,138 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import gwtx.event.remote.shared.RemoteGwtEvent;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.lmax.disruptor.BatchEventProcessor;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.ExceptionHandler;
+import com.lmax.disruptor.RingBuffer;
+
+
+/**
+ * A server-side subscriber running as a batch event processor on a ring. 
+ * Events of other types are skipped, and only batches which held an event of
+ * the subscribed type are reported to the subscriber. A failing subscriber 
+ * gets the failure logged, and carries on with the next event.
+ * 
+ * @author Dann Martens
+ */
+class EventSubscription<H> implements RemoteEventSubscription, EventHandler<Referer<RemoteGwtEvent<?>>>, ExceptionHandler {
+
+	private static final Log log = Log.getLog(EventSubscription.class);
+
+	private final EventRing ring;
+
+	private final String typeId;
+
+	private final RemoteEventSubscriber<H> subscriber;
+
+	private final boolean gating;
+
+	private final RingBuffer<Referer<RemoteGwtEvent<?>>> ringBuffer;
+
+	private final BatchEventProcessor<Referer<RemoteGwtEvent<?>>> eventProcessor;
+
+	private final AtomicLong lappedCount = new AtomicLong();
+
+	private boolean pendingEndOfBatch = false;
+
+	public EventSubscription(EventRing ring, RingBuffer<Referer<RemoteGwtEvent<?>>> ringBuffer, String typeId, RemoteEventSubscriber<H> subscriber, boolean gating) {
+		this.ring = ring;
+		this.ringBuffer = ringBuffer;
+		this.typeId = typeId;
+		this.subscriber = subscriber;
+		this.gating = gating;
+		eventProcessor = new BatchEventProcessor<Referer<RemoteGwtEvent<?>>>(ringBuffer, ringBuffer.newBarrier(), this);
+		eventProcessor.setExceptionHandler(this);
+		//? Start with the next event to be published.
+		eventProcessor.getSequence().set(ringBuffer.getCursor());
+	}
+
+	BatchEventProcessor<Referer<RemoteGwtEvent<?>>> getEventProcessor() {
+		return eventProcessor;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void onEvent(Referer<RemoteGwtEvent<?>> referer, long sequence, boolean endOfBatch) throws Exception {
+		if(typeId.equals(referer.getTypeId())) {
+			RemoteGwtEvent<?> event = referer.getReferenced();
+			//? The producers may have moved on already, unless held back by us.
+			if(!gating && ringBuffer.getCursor() - sequence >= ringBuffer.getBufferSize()) {
+				lappedCount.incrementAndGet();
+			} else {
+				pendingEndOfBatch = true;
+				subscriber.onEvent((RemoteGwtEvent<H>) event, sequence);
+			}
+		}
+		if(endOfBatch && pendingEndOfBatch) {
+			pendingEndOfBatch = false;
+			subscriber.onEndOfBatch();
+		}
+	}
+
+	@Override
+	public void handleEventException(Throwable throwable, long sequence, Object event) {
+		log.warn("Subscriber of " + typeId + " failed on event " + sequence + ", skipped it.", throwable);
+	}
+
+	@Override
+	public void handleOnStartException(Throwable throwable) {
+		log.warn("Subscriber of " + typeId + " failed to start.", throwable);
+	}
+
+	@Override
+	public void handleOnShutdownException(Throwable throwable) {
+		log.warn("Subscriber of " + typeId + " failed to shut down.", throwable);
+	}
+
+	@Override
+	public String getTypeId() {
+		return typeId;
+	}
+
+	@Override
+	public boolean isGating() {
+		return gating;
+	}
+
+	@Override
+	public long getSequence() {
+		return eventProcessor.getSequence().get();
+	}
+
+	@Override
+	public long getLappedCount() {
+		return lappedCount.get();
+	}
+
+	@Override
+	public void unsubscribe() {
+		ring.removeSubscription(this);
+	}
+
+	@Override
+	public String toString() {
+		return "EventSubscription:{typeId=" + typeId + ", gating=" + gating + ", sequence=" + getSequence() + ", lapped=" + lappedCount.get() + '}';
+	}
+
+}
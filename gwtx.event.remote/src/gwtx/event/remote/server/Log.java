@@ -0,0 +1,106 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Leveled logging on top of <code>java.util.logging</code>. Messages take
+ * <code>{}</code> placeholders, which are only filled in once the level is
+ * known to be enabled, so a disabled statement costs a level check. Callers
+ * on the poll path pass primitives, which would be boxed regardless, only
+ * after checking the level themselves.
+ * 
+ * @author Dann Martens
+ */
+final class Log {
+
+	private final Logger logger;
+
+	private Log(Logger logger) {
+		this.logger = logger;
+	}
+
+	public static Log getLog(Class<?> type) {
+		return new Log(Logger.getLogger(type.getName()));
+	}
+
+	public boolean isTraceEnabled() {
+		return logger.isLoggable(Level.FINEST);
+	}
+
+	public boolean isDebugEnabled() {
+		return logger.isLoggable(Level.FINE);
+	}
+
+	public void trace(String message, Object argument) {
+		if(logger.isLoggable(Level.FINEST)) {
+			logger.log(Level.FINEST, format(message, argument));
+		}
+	}
+
+	public void trace(String message, Object argument1, Object argument2) {
+		if(logger.isLoggable(Level.FINEST)) {
+			logger.log(Level.FINEST, format(message, argument1, argument2));
+		}
+	}
+
+	public void trace(String message, Object argument1, Object argument2, Object argument3) {
+		if(logger.isLoggable(Level.FINEST)) {
+			logger.log(Level.FINEST, format(message, argument1, argument2, argument3));
+		}
+	}
+
+	public void debug(String message, Object argument) {
+		if(logger.isLoggable(Level.FINE)) {
+			logger.log(Level.FINE, format(message, argument));
+		}
+	}
+
+	public void debug(String message, Object argument1, Object argument2) {
+		if(logger.isLoggable(Level.FINE)) {
+			logger.log(Level.FINE, format(message, argument1, argument2));
+		}
+	}
+
+	public void warn(String message, Object argument) {
+		if(logger.isLoggable(Level.WARNING)) {
+			logger.log(Level.WARNING, format(message, argument));
+		}
+	}
+
+	public void warn(String message, Throwable throwable) {
+		logger.log(Level.WARNING, message, throwable);
+	}
+
+	static String format(String message, Object... arguments) {
+		StringBuilder builder = new StringBuilder(message.length() + 16 * arguments.length);
+		int from = 0;
+		for(Object argument: arguments) {
+			int index = message.indexOf("{}", from);
+			if(index < 0)
+				break;
+			builder.append(message, from, index).append(argument);
+			from = index + 2;
+		}
+		return builder.append(message, from, message.length()).toString();
+	}
+
+}
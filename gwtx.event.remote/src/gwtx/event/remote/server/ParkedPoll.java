@@ -0,0 +1,161 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import gwtx.event.remote.shared.SourceId;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * A poll which does not hold on to a thread while it waits for events.
+ * Parked polls are kept by a {@link PollRegistry}, which completes them as
+ * soon as they are ready or when their deadline has passed.
+ *
+ * @author Dann Martens
+ */
+abstract class ParkedPoll {
+
+	private final AtomicBoolean busy = new AtomicBoolean(false);
+
+	private volatile boolean signalledWhileBusy = false;
+
+	private volatile boolean done = false;
+
+	private final long lingerDeadlineInNanos;
+
+	private final long deadlineInNanos;
+
+	private final List<TimingWheel.Timeout> timeoutList = new CopyOnWriteArrayList<TimingWheel.Timeout>();
+
+	/**
+	 * The source of the session and the types it is indexed by, guarded by 
+	 * the registry.
+	 */
+	SourceId sourceId;
+
+	Set<String> typeIdSet = Collections.emptySet();
+
+	protected ParkedPoll(long startTimeInNanos, long lingerTimeInMillis, long waitingTimeInMillis) {
+		this.lingerDeadlineInNanos = startTimeInNanos + lingerTimeInMillis * 1000000L;
+		this.deadlineInNanos = startTimeInNanos + waitingTimeInMillis * 1000000L;
+	}
+
+	public long getLingerDeadline() {
+		return lingerDeadlineInNanos;
+	}
+
+	public long getDeadline() {
+		return deadlineInNanos;
+	}
+
+	public boolean isDone() {
+		return done;
+	}
+
+	/**
+	 * Cancels this poll without answering it, e.g. because the container
+	 * gave up on the underlying request.
+	 */
+	public void cancel() {
+		done = true;
+	}
+
+	void addTimeout(TimingWheel.Timeout timeout) {
+		timeoutList.add(timeout);
+		if(done) { //? Answered while being scheduled.
+			timeout.cancel();
+		}
+	}
+
+	/**
+	 * Cancels the pending deadlines of an answered poll, so they do not 
+	 * linger in the timing wheel.
+	 */
+	void cancelTimeouts() {
+		for(TimingWheel.Timeout timeout: timeoutList) {
+			timeout.cancel();
+		}
+		timeoutList.clear();
+	}
+
+	boolean acquire() {
+		return !done && busy.compareAndSet(false, true);
+	}
+
+	/**
+	 * Acquires this poll on behalf of a signal. A signal which finds the poll
+	 * busy is not lost, but handed to the holder when it releases the poll.
+	 */
+	boolean acquireSignalled() {
+		if(acquire())
+			return true;
+		signalledWhileBusy = true;
+		//? The holder may have released in between, without noticing the signal.
+		return acquire();
+	}
+
+	/**
+	 * Releases this poll, and acquires it again when a signal arrived while
+	 * it was busy, which has made it ready.
+	 *
+	 * @return whether the poll has been acquired again
+	 */
+	boolean release() {
+		busy.set(false);
+		if(!signalledWhileBusy)
+			return false;
+		signalledWhileBusy = false;
+		return isReady() && acquire();
+	}
+
+	/**
+	 * Attempts to answer this poll, the caller must have acquired it first.
+	 *
+	 * @param expired whether the poll has run out of time and must be
+	 *        answered regardless of the outcome
+	 * @return whether the poll has been answered
+	 */
+	boolean complete(boolean expired) {
+		if(done)
+			return true;
+		if(tryComplete(expired) || expired) {
+			done = true;
+		}
+		return done;
+	}
+
+	/**
+	 * Inexpensive check which tells whether an attempt to complete this poll
+	 * is worthwhile.
+	 */
+	protected abstract boolean isReady();
+
+	/**
+	 * Collects events and answers the poll when there are any, or when the
+	 * poll has expired.
+	 *
+	 * @return whether the poll has been answered
+	 */
+	protected abstract boolean tryComplete(boolean expired);
+
+}
@@ -0,0 +1,134 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.lmax.disruptor.AlertException;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.SequenceBarrier;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.util.Util;
+
+
+/**
+ * Wait strategy which spins first, then yields, and eventually blocks until
+ * it gets signalled. Short waits are answered with low latency, while long 
+ * waits do not burn any CPU.
+ * 
+ * @author Dann Martens
+ */
+class PhasedBackoffWaitStrategy implements WaitStrategy {
+
+	private static final int SPIN_TRIES = 1000;
+
+	private static final long DEFAULT_SPIN_TIMEOUT_IN_NANOS = 10000L;
+
+	private static final long DEFAULT_YIELD_TIMEOUT_IN_NANOS = 1000000L;
+
+	private final long spinTimeoutInNanos;
+
+	private final long yieldTimeoutInNanos;
+
+	private final Lock lock = new ReentrantLock();
+
+	private final Condition processorNotifyCondition = lock.newCondition();
+
+	private volatile int numWaiters = 0;
+
+	public PhasedBackoffWaitStrategy() {
+		this(DEFAULT_SPIN_TIMEOUT_IN_NANOS, DEFAULT_YIELD_TIMEOUT_IN_NANOS);
+	}
+
+	/**
+	 * @param spinTimeoutInNanos how long to spin before yielding
+	 * @param yieldTimeoutInNanos how long to yield before blocking
+	 */
+	public PhasedBackoffWaitStrategy(long spinTimeoutInNanos, long yieldTimeoutInNanos) {
+		this.spinTimeoutInNanos = spinTimeoutInNanos;
+		this.yieldTimeoutInNanos = yieldTimeoutInNanos;
+	}
+
+	@Override
+	public long waitFor(long sequence, Sequence cursor, Sequence[] dependents, SequenceBarrier barrier) throws AlertException, InterruptedException {
+		return waitFor(sequence, cursor, dependents, barrier, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+
+	//? Deprecated in the Disruptor, but the timed barrier waits of polls still end up here.
+	@Override
+	@SuppressWarnings("deprecation")
+	public long waitFor(long sequence, Sequence cursor, Sequence[] dependents, SequenceBarrier barrier, long timeout, TimeUnit sourceUnit) throws AlertException, InterruptedException {
+		long timeoutInNanos = sourceUnit.toNanos(timeout);
+		long startTime = System.nanoTime();
+		int counter = SPIN_TRIES;
+		long availableSequence;
+		while((availableSequence = getAvailableSequence(cursor, dependents)) < sequence) {
+			barrier.checkAlert();
+			if(--counter == 0) {
+				long elapsedNanos = System.nanoTime() - startTime;
+				if(elapsedNanos >= timeoutInNanos)
+					break;
+				if(elapsedNanos > spinTimeoutInNanos + yieldTimeoutInNanos)
+					return block(sequence, cursor, dependents, barrier, timeoutInNanos - elapsedNanos);
+				if(elapsedNanos > spinTimeoutInNanos)
+					Thread.yield();
+				counter = SPIN_TRIES;
+			}
+		}
+		return availableSequence;
+	}
+
+	private long block(long sequence, Sequence cursor, Sequence[] dependents, SequenceBarrier barrier, long timeoutInNanos) throws AlertException, InterruptedException {
+		long availableSequence;
+		lock.lock();
+		try {
+			++numWaiters;
+			while((availableSequence = getAvailableSequence(cursor, dependents)) < sequence) {
+				barrier.checkAlert();
+				if(timeoutInNanos <= 0)
+					break;
+				timeoutInNanos = processorNotifyCondition.awaitNanos(timeoutInNanos);
+			}
+		} finally {
+			--numWaiters;
+			lock.unlock();
+		}
+		return availableSequence;
+	}
+
+	private static long getAvailableSequence(Sequence cursor, Sequence[] dependents) {
+		return (dependents.length == 0)? cursor.get() : Util.getMinimumSequence(dependents);
+	}
+
+	@Override
+	public void signalAllWhenBlocking() {
+		//? Only pay for the lock when somebody is actually blocked.
+		if(numWaiters != 0) {
+			lock.lock();
+			try {
+				processorNotifyCondition.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+}
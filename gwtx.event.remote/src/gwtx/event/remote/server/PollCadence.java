@@ -0,0 +1,117 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import gwtx.event.remote.shared.SourceId;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Adapts the minimum waiting time of every session to the rate at which it
+ * receives events. A busy session lingers up to the configured minimum 
+ * waiting time, to collect more events per response, while a quiet one is
+ * answered as soon as anything arrives. The rate is a moving average over
+ * the answered polls of the session.
+ * 
+ * @author Dann Martens
+ */
+class PollCadence implements SessionListener {
+
+	private static final double SMOOTHING = 0.25;
+
+	private static class Rate {
+
+		private long lastPollTimeInNanos = System.nanoTime();
+
+		private double eventsPerSecond = 0.0;
+
+	}
+
+	private final ConcurrentHashMap<SourceId, Rate> rateMap = new ConcurrentHashMap<SourceId, Rate>();
+
+	private final long minimumWaitingTime;
+
+	private final double busyEventRate;
+
+	/**
+	 * @param minimumWaitingTime the linger time of a busy session
+	 * @param busyEventRate the number of events per second from which a 
+	 *        session counts as busy
+	 */
+	public PollCadence(long minimumWaitingTime, double busyEventRate) {
+		this.minimumWaitingTime = minimumWaitingTime;
+		this.busyEventRate = busyEventRate;
+	}
+
+	/**
+	 * Returns how long the next poll of the given session lingers to collect
+	 * more events, once the first one has arrived.
+	 */
+	public long getLingerTime(SourceId sourceId) {
+		Rate rate = rateMap.get(sourceId);
+		if(rate == null)
+			return 0L;
+		double load;
+		synchronized (rate) {
+			load = rate.eventsPerSecond / busyEventRate;
+		}
+		return (load >= 1.0)? minimumWaitingTime : Math.round(minimumWaitingTime * load);
+	}
+
+	/**
+	 * Accounts for a poll which has been answered with the given number of
+	 * events.
+	 */
+	public void onPoll(SourceId sourceId, int eventCount) {
+		Rate rate = rateMap.get(sourceId);
+		if(rate == null) {
+			//? Unknown session, only start the clock.
+			rateMap.putIfAbsent(sourceId, new Rate());
+			return;
+		}
+		long now = System.nanoTime();
+		synchronized (rate) {
+			//? At least a millisecond, polls answered back to back are not infinitely fast.
+			double seconds = Math.max(now - rate.lastPollTimeInNanos, 1000000L) / 1e9;
+			rate.eventsPerSecond += SMOOTHING * (eventCount / seconds - rate.eventsPerSecond);
+			rate.lastPollTimeInNanos = now;
+		}
+	}
+
+	@Override
+	public void onSessionNew(SessionEvent event) {
+		rateMap.putIfAbsent(event.getSourceId(), new Rate());
+	}
+
+	@Override
+	public void onSessionInvalidate(SessionEvent event) {
+		rateMap.remove(event.getSourceId());
+	}
+
+	@Override
+	public void onSessionExpire(SessionEvent event) {
+		rateMap.remove(event.getSourceId());
+	}
+
+	@Override
+	public String toString() {
+		return "PollCadence:{sessions=" + rateMap.size() + ", busyEventRate=" + busyEventRate + '}';
+	}
+
+}
@@ -0,0 +1,144 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import gwtx.event.remote.shared.BufferOverflowException;
+import gwtx.event.remote.shared.GapRemoteEvent;
+import gwtx.event.remote.shared.InvalidSessionException;
+import gwtx.event.remote.shared.SourceId;
+
+import java.util.concurrent.TimeUnit;
+
+import com.lmax.disruptor.AlertException;
+
+
+/**
+ * Position of a single poll across the rings which its session subscribes
+ * to. Events are merged in ring order, the order of the events of a single
+ * type is always preserved, as every type lives in exactly one ring. The
+ * slow consumer policies of the rings are applied before every drain.
+ * 
+ * @author Dann Martens
+ */
+class PollCursor {
+
+	private final EventRing[] rings;
+
+	private final SourceId sourceId;
+
+	private final Session session;
+
+	private final long[] waitSequences;
+
+	private final long[] startSequences;
+
+	private final PublicationSignal publicationSignal;
+
+	private long generation;
+
+	private long droppedCount = 0;
+
+	public PollCursor(EventRing[] rings, SourceId sourceId, Session session, PublicationSignal publicationSignal) throws BufferOverflowException, InvalidSessionException {
+		this.rings = rings;
+		this.sourceId = sourceId;
+		this.session = session;
+		this.publicationSignal = publicationSignal;
+		this.generation = publicationSignal.getGeneration();
+		waitSequences = new long[rings.length];
+		for(int i = 0; i < rings.length; i++) {
+			waitSequences[i] = rings[i].waitSequenceOf(session);
+		}
+		startSequences = waitSequences.clone();
+		admit();
+	}
+
+	/**
+	 * @return the number of events dropped by the slow consumer policies
+	 */
+	private long admit() throws BufferOverflowException, InvalidSessionException {
+		long dropped = 0;
+		for(int i = 0; i < rings.length; i++) {
+			long waitSequence = rings[i].admit(sourceId, waitSequences[i]);
+			dropped += waitSequence - waitSequences[i];
+			waitSequences[i] = waitSequence;
+		}
+		droppedCount += dropped;
+		return dropped;
+	}
+
+	public boolean isAvailable() {
+		for(int i = 0; i < rings.length; i++) {
+			if(rings[i].getCursor() >= waitSequences[i])
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Collects whatever is available right now in all rings. Dropped events
+	 * are reported once, by a gap marker ahead of the events that follow.
+	 */
+	public void drain(EventBatch batch) throws BufferOverflowException, InvalidSessionException {
+		//? Read the generation first, so no publication slips through.
+		generation = publicationSignal.getGeneration();
+		admit();
+		if(droppedCount > 0) {
+			batch.add(new GapRemoteEvent(droppedCount));
+			droppedCount = 0;
+		}
+		for(int i = 0; i < rings.length && !batch.isFull(); i++) {
+			waitSequences[i] = rings[i].drain(session, waitSequences[i], rings[i].getCursor(), batch);
+		}
+	}
+
+	/**
+	 * Waits until something has been published since the last drain, or until
+	 * the timeout has elapsed. A single ring is waited upon using its own 
+	 * barrier and wait strategy.
+	 */
+	public void await(long timeoutInMillis) throws AlertException, InterruptedException {
+		if(rings.length == 1) {
+			rings[0].waitFor(waitSequences[0], timeoutInMillis, TimeUnit.MILLISECONDS);
+		} else
+		if(!isAvailable()) {
+			publicationSignal.await(generation, timeoutInMillis);
+		}
+	}
+
+	/**
+	 * Stores the positions of this poll in the session. Skipped events of
+	 * unsubscribed types count as delivered.
+	 */
+	public void commit(Session session) {
+		for(int i = 0; i < rings.length; i++) {
+			rings[i].updateSequence(sourceId, session, waitSequences[i] - 1);
+		}
+	}
+
+	/**
+	 * Restores the positions which the session had before this poll, so the
+	 * next poll collects the same events once more. Events which have been
+	 * overwritten since are dealt with by the slow consumer policies.
+	 */
+	public void rewind(Session session) {
+		for(int i = 0; i < rings.length; i++) {
+			rings[i].updateSequence(sourceId, session, startSequences[i] - 1);
+		}
+	}
+
+}
@@ -0,0 +1,287 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import gwtx.event.remote.shared.SourceId;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * Registry of parked polls. Publishers signal the registry with the types
+ * they have published, which then completes the polls that subscribe to 
+ * any of them and have become ready on a small dispatcher pool. Polls are
+ * indexed by the types their sessions subscribe to, so a publication costs
+ * in proportion to its subscribers rather than to every parked poll.
+ * Linger and expiry deadlines are handled by the shared timing wheel, which
+ * hands them over to the dispatcher pool, rather than by sleeping threads.
+ *
+ * @author Dann Martens
+ */
+class PollRegistry {
+
+	private static final Log log = Log.getLog(PollRegistry.class);
+
+	private static final long RETRY_DELAY_IN_MILLIS = 1L;
+
+	private final Set<ParkedPoll> parkedSet = Collections.newSetFromMap(new ConcurrentHashMap<ParkedPoll, Boolean>());
+
+	/**
+	 * Parked polls by the types their sessions subscribe to, guarded by this
+	 * registry.
+	 */
+	private final Map<String, Set<ParkedPoll>> parkedByTypeId = new HashMap<String, Set<ParkedPoll>>();
+
+	/**
+	 * Parked polls by the source of their sessions, guarded by this registry.
+	 */
+	private final Map<SourceId, Set<ParkedPoll>> parkedBySourceId = new HashMap<SourceId, Set<ParkedPoll>>();
+
+	private final Set<String> signalledTypeIdSet = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	private final AtomicBoolean signalled = new AtomicBoolean(false);
+
+	private final ExecutorService dispatcher;
+
+	private final TimingWheel timingWheel = TimingWheel.getDefault();
+
+	private final Runnable dispatchCommand = new Runnable() {
+		@Override
+		public void run() {
+			dispatch();
+		}
+	};
+
+	public PollRegistry(String name, int dispatcherThreads) {
+		dispatcher = Executors.newFixedThreadPool(dispatcherThreads, new DaemonThreadFactory(name + "-Dispatcher"));
+	}
+
+	/**
+	 * Parks a poll of the given session, indexed by the types the session 
+	 * subscribes to right now.
+	 */
+	public void park(ParkedPoll poll, SourceId sourceId, Session session) {
+		parkedSet.add(poll);
+		synchronized (this) {
+			poll.sourceId = sourceId;
+			addTo(parkedBySourceId, sourceId, poll);
+			index(poll, session);
+		}
+		scheduleAttempt(poll, false, poll.getLingerDeadline());
+		scheduleAttempt(poll, true, poll.getDeadline());
+	}
+
+	public int size() {
+		return parkedSet.size();
+	}
+
+	/**
+	 * Indexes the parked polls of a session once more, after its 
+	 * subscriptions have changed.
+	 */
+	public void reindex(SourceId sourceId, Session session) {
+		synchronized (this) {
+			Set<ParkedPoll> sourceSet = parkedBySourceId.get(sourceId);
+			if(sourceSet == null)
+				return;
+			for(ParkedPoll poll: sourceSet) {
+				unindex(poll);
+				index(poll, session);
+			}
+		}
+	}
+
+	/**
+	 * Signals that events of the given types have been published. Signals 
+	 * which arrive while a dispatch is still pending are coalesced into that
+	 * dispatch.
+	 */
+	public void signal(Collection<String> typeIds) {
+		if(parkedSet.isEmpty())
+			return;
+		//? Added before the flag is raised, so the dispatch is sure to see them.
+		signalledTypeIdSet.addAll(typeIds);
+		if(signalled.compareAndSet(false, true)) {
+			try {
+				dispatcher.execute(dispatchCommand);
+			} catch (RejectedExecutionException ignore) {
+				//? Shutting down.
+			}
+		}
+	}
+
+	public void shutdown() {
+		dispatcher.shutdownNow();
+		for(ParkedPoll poll: parkedSet) {
+			poll.cancel();
+			poll.cancelTimeouts();
+		}
+		parkedSet.clear();
+		synchronized (this) {
+			parkedByTypeId.clear();
+			parkedBySourceId.clear();
+		}
+	}
+
+	private static <K> void addTo(Map<K, Set<ParkedPoll>> parkedMap, K key, ParkedPoll poll) {
+		Set<ParkedPoll> pollSet = parkedMap.get(key);
+		if(pollSet == null) {
+			pollSet = new HashSet<ParkedPoll>();
+			parkedMap.put(key, pollSet);
+		}
+		pollSet.add(poll);
+	}
+
+	private static <K> void removeFrom(Map<K, Set<ParkedPoll>> parkedMap, K key, ParkedPoll poll) {
+		Set<ParkedPoll> pollSet = parkedMap.get(key);
+		if(pollSet != null && pollSet.remove(poll) && pollSet.isEmpty()) {
+			parkedMap.remove(key);
+		}
+	}
+
+	/**
+	 * Must be called while holding this registry.
+	 */
+	private void index(ParkedPoll poll, Session session) {
+		poll.typeIdSet = new HashSet<String>(session.getSubscribedTypeIds());
+		for(String typeId: poll.typeIdSet) {
+			addTo(parkedByTypeId, typeId, poll);
+		}
+	}
+
+	/**
+	 * Must be called while holding this registry.
+	 */
+	private void unindex(ParkedPoll poll) {
+		for(String typeId: poll.typeIdSet) {
+			removeFrom(parkedByTypeId, typeId, poll);
+		}
+		poll.typeIdSet = Collections.emptySet();
+	}
+
+	private void remove(ParkedPoll poll) {
+		if(!parkedSet.remove(poll))
+			return;
+		synchronized (this) {
+			unindex(poll);
+			removeFrom(parkedBySourceId, poll.sourceId, poll);
+		}
+	}
+
+	private void dispatch() {
+		signalled.set(false);
+		Set<ParkedPoll> matchingSet = new HashSet<ParkedPoll>();
+		synchronized (this) {
+			for(Iterator<String> i = signalledTypeIdSet.iterator(); i.hasNext();) {
+				Set<ParkedPoll> typeSet = parkedByTypeId.get(i.next());
+				i.remove();
+				if(typeSet != null) {
+					matchingSet.addAll(typeSet);
+				}
+			}
+		}
+		for(ParkedPoll poll: matchingSet) {
+			if(poll.isDone()) {
+				remove(poll);
+			} else
+			if(poll.isReady() && poll.acquireSignalled()) {
+				dispatchAttempt(poll);
+			}
+		}
+	}
+
+	private void dispatchAttempt(final ParkedPoll poll) {
+		try {
+			dispatcher.execute(new Runnable() {
+				@Override
+				public void run() {
+					attempt(poll, false);
+				}
+			});
+		} catch (RejectedExecutionException ree) {
+			//? Shutting down.
+			poll.release();
+		}
+	}
+
+	private void scheduleAttempt(final ParkedPoll poll, final boolean expired, long deadlineInNanos) {
+		final Runnable attemptCommand = new Runnable() {
+			@Override
+			public void run() {
+				if(poll.isDone()) {
+					remove(poll);
+				} else
+				if(poll.acquire()) {
+					attempt(poll, expired);
+				} else
+				if(expired) { //? Busy with a dispatch, try again shortly.
+					scheduleAttempt(poll, true, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RETRY_DELAY_IN_MILLIS));
+				}
+			}
+		};
+		TimingWheel.Timeout timeout = timingWheel.scheduleAt(new Runnable() {
+			@Override
+			public void run() {
+				//? Keep the ticker free, completing a poll writes its response.
+				try {
+					dispatcher.execute(attemptCommand);
+				} catch (RejectedExecutionException ignore) {
+					//? Shutting down.
+				}
+			}
+		}, deadlineInNanos);
+		poll.addTimeout(timeout);
+	}
+
+	private void attempt(ParkedPoll poll, boolean expired) {
+		try {
+			if(poll.complete(expired)) {
+				remove(poll);
+				poll.cancelTimeouts();
+			}
+		} catch (Exception e) {
+			log.warn("Unable to complete a parked poll, cancelled it.", e);
+			poll.cancel();
+			poll.cancelTimeouts();
+			remove(poll);
+		} finally {
+			if(poll.release()) {
+				//? Signalled while this attempt held the poll.
+				dispatchAttempt(poll);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "PollRegistry:{parked=" + parkedSet.size() + '}';
+	}
+
+}
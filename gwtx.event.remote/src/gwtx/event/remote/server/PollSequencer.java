@@ -0,0 +1,149 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import gwtx.event.remote.shared.SourceId;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Keeps the numbered polls of every session in order. A client which cuts
+ * its pending poll short, to send its outgoing events along with the next
+ * one right away, never sees the answer to the abandoned poll. Whatever 
+ * that poll collected is therefore delivered once more: it does not commit
+ * when its successor has started already, and it is rewound when it has 
+ * committed already. A stale poll, which arrives after its successor, is
+ * answered without events.
+ * 
+ * @author Dann Martens
+ */
+class PollSequencer implements SessionListener {
+
+	/**
+	 * The number of a poll, as assigned by the client, and whether the client
+	 * abandoned the poll before it.
+	 */
+	public static class Ticket {
+
+		private final int number;
+
+		private final boolean previousAborted;
+
+		public Ticket(int number, boolean previousAborted) {
+			this.number = number;
+			this.previousAborted = previousAborted;
+		}
+
+		public int getNumber() {
+			return number;
+		}
+
+		public boolean isPreviousAborted() {
+			return previousAborted;
+		}
+
+	}
+
+	private static class State {
+
+		private boolean started = false;
+
+		private int latestNumber;
+
+		private int committedNumber;
+
+		private PollCursor committedCursor;
+
+	}
+
+	private final ConcurrentHashMap<SourceId, State> stateMap = new ConcurrentHashMap<SourceId, State>();
+
+	private State stateOf(SourceId sourceId) {
+		State state = stateMap.get(sourceId);
+		if(state == null) {
+			State candidate = new State();
+			state = stateMap.putIfAbsent(sourceId, candidate);
+			if(state == null) {
+				state = candidate;
+			}
+		}
+		return state;
+	}
+
+	/**
+	 * Starts a numbered poll, before its cursor is created.
+	 * 
+	 * @return whether the poll is current, <code>false</code> when it is 
+	 *         stale
+	 */
+	public boolean start(SourceId sourceId, Session session, Ticket ticket) {
+		State state = stateOf(sourceId);
+		synchronized (state) {
+			//? Compared by difference, so the numbers can wrap around.
+			if(state.started && ticket.getNumber() - state.latestNumber <= 0)
+				return false;
+			if(ticket.isPreviousAborted() && state.committedCursor != null && state.committedNumber == ticket.getNumber() - 1) {
+				state.committedCursor.rewind(session);
+				state.committedCursor = null;
+			}
+			state.started = true;
+			state.latestNumber = ticket.getNumber();
+			return true;
+		}
+	}
+
+	/**
+	 * Commits the positions of a numbered poll, unless its successor has 
+	 * started in the meantime.
+	 * 
+	 * @return whether the positions have been committed
+	 */
+	public boolean commit(SourceId sourceId, Session session, PollCursor cursor, Ticket ticket) {
+		State state = stateOf(sourceId);
+		synchronized (state) {
+			if(state.latestNumber != ticket.getNumber())
+				return false;
+			cursor.commit(session);
+			state.committedNumber = ticket.getNumber();
+			state.committedCursor = cursor;
+			return true;
+		}
+	}
+
+	@Override
+	public void onSessionNew(SessionEvent event) {
+		//? Polls start the state.
+	}
+
+	@Override
+	public void onSessionInvalidate(SessionEvent event) {
+		stateMap.remove(event.getSourceId());
+	}
+
+	@Override
+	public void onSessionExpire(SessionEvent event) {
+		stateMap.remove(event.getSourceId());
+	}
+
+	@Override
+	public String toString() {
+		return "PollSequencer:{sessions=" + stateMap.size() + '}';
+	}
+
+}
@@ -0,0 +1,128 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.lmax.disruptor.AlertException;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.SequenceBarrier;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.util.Util;
+
+
+/**
+ * Signal raised after every batch of publications into any of the rings, 
+ * for polls which wait on more than one ring at once and therefore cannot
+ * block on a single sequence barrier. The signal doubles as the wait 
+ * strategy of rings in notification mode: waiting polls then register with
+ * the signal instead of spinning or sleeping on their own, and are woken up
+ * once per publication batch.
+ * 
+ * @author Dann Martens
+ */
+class PublicationSignal implements WaitStrategy {
+
+	private static final long MAXIMUM_WAIT_IN_MILLIS = 1000L;
+
+	private final AtomicLong generation = new AtomicLong();
+
+	private final AtomicInteger waiterCount = new AtomicInteger();
+
+	public long getGeneration() {
+		return generation.get();
+	}
+
+	public void signal() {
+		generation.incrementAndGet();
+		//? Only pay for the monitor when somebody is actually waiting.
+		if(waiterCount.get() > 0) {
+			synchronized (this) {
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Waits until the generation has moved past the given one, or until the
+	 * timeout has elapsed.
+	 * 
+	 * @return the current generation
+	 */
+	public long await(long seenGeneration, long timeoutInMillis) throws InterruptedException {
+		long deadline = System.nanoTime() + timeoutInMillis * 1000000L;
+		waiterCount.incrementAndGet();
+		try {
+			synchronized (this) {
+				long left = timeoutInMillis;
+				while(generation.get() == seenGeneration && left > 0) {
+					wait(left);
+					left = (deadline - System.nanoTime()) / 1000000L;
+				}
+			}
+		} finally {
+			waiterCount.decrementAndGet();
+		}
+		return generation.get();
+	}
+
+	@Override
+	public long waitFor(long sequence, Sequence cursor, Sequence[] dependents, SequenceBarrier barrier) throws AlertException, InterruptedException {
+		long availableSequence;
+		while(true) {
+			//? Read the generation first, so no publication slips through.
+			long seenGeneration = generation.get();
+			if((availableSequence = getAvailableSequence(cursor, dependents)) >= sequence)
+				return availableSequence;
+			barrier.checkAlert();
+			await(seenGeneration, MAXIMUM_WAIT_IN_MILLIS);
+		}
+	}
+
+	//? Deprecated in the Disruptor, but the timed barrier waits of polls still end up here.
+	@Override
+	@SuppressWarnings("deprecation")
+	public long waitFor(long sequence, Sequence cursor, Sequence[] dependents, SequenceBarrier barrier, long timeout, TimeUnit sourceUnit) throws AlertException, InterruptedException {
+		long deadline = System.nanoTime() + sourceUnit.toNanos(timeout);
+		long availableSequence;
+		while(true) {
+			long seenGeneration = generation.get();
+			if((availableSequence = getAvailableSequence(cursor, dependents)) >= sequence)
+				return availableSequence;
+			barrier.checkAlert();
+			long left = (deadline - System.nanoTime()) / 1000000L;
+			if(left <= 0)
+				return availableSequence;
+			await(seenGeneration, left);
+		}
+	}
+
+	private static long getAvailableSequence(Sequence cursor, Sequence[] dependents) {
+		return (dependents.length == 0)? cursor.get() : Util.getMinimumSequence(dependents);
+	}
+
+	/**
+	 * Does nothing, publishers raise the signal themselves once they are done
+	 * with a batch.
+	 */
+	@Override
+	public void signalAllWhenBlocking() {}
+
+}
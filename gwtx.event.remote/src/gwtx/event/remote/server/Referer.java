@@ -0,0 +1,124 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import com.google.gwt.user.client.rpc.SerializationException;
+import com.google.gwt.user.server.rpc.SerializationPolicy;
+import com.google.gwt.user.server.rpc.impl.ServerSerializationStreamWriter;
+
+
+/**
+ * Ring buffer slot which refers to a published event. Besides the event
+ * itself, a slot lazily keeps the GWT RPC serialized form of the event, so
+ * it is computed only once for all sessions that receive it.
+ * 
+ * @author Dann Martens
+ */
+class Referer<T> {
+
+	private static final class SerializedForm {
+
+		private final Object event;
+
+		private final SerializationPolicy serializationPolicy;
+
+		private final int flags;
+
+		private final String encoded;
+
+		public SerializedForm(Object event, SerializationPolicy serializationPolicy, int flags, String encoded) {
+			this.event = event;
+			this.serializationPolicy = serializationPolicy;
+			this.flags = flags;
+			this.encoded = encoded;
+		}
+
+		public boolean isFor(Object event, SerializationPolicy serializationPolicy, int flags) {
+			return this.event == event && this.serializationPolicy == serializationPolicy && this.flags == flags;
+		}
+
+	}
+
+	private T referenced;
+
+	private String typeId;
+
+	private Conflation.Key conflationKey;
+
+	private volatile SerializedForm serializedForm;
+
+	public T getReferenced() {
+		return referenced;
+	}
+
+	public void setReferenced(T referenced) {
+		this.referenced = referenced;
+		this.serializedForm = null;
+	}
+
+	public String getTypeId() {
+		return typeId;
+	}
+
+	public void setTypeId(String typeId) {
+		this.typeId = typeId;
+	}
+
+	/**
+	 * The key of the referenced event, when it is conflatable.
+	 */
+	public Conflation.Key getConflationKey() {
+		return conflationKey;
+	}
+
+	public void setConflationKey(Conflation.Key conflationKey) {
+		this.conflationKey = conflationKey;
+	}
+
+	/**
+	 * Returns the referenced event serialized as a stand-alone GWT RPC
+	 * stream. The result is cached for the referenced event and the most
+	 * recently requested serialization policy.
+	 */
+	public String getSerializedForm(SerializationPolicy serializationPolicy, int flags) throws SerializationException {
+		SerializedForm candidate = serializedForm;
+		//? Read after the cached form, so a slot which has been reused since is noticed.
+		T event = referenced;
+		if(candidate != null && candidate.isFor(event, serializationPolicy, flags)) {
+			return candidate.encoded;
+		}
+		candidate = new SerializedForm(event, serializationPolicy, flags, serialize(event, serializationPolicy, flags));
+		//? Racing threads compute identical forms for the same event, last one wins.
+		if(referenced == event) {
+			serializedForm = candidate;
+		}
+		return candidate.encoded;
+	}
+
+	/**
+	 * Serializes an object as a stand-alone GWT RPC stream, without caching.
+	 */
+	public static String serialize(Object object, SerializationPolicy serializationPolicy, int flags) throws SerializationException {
+		ServerSerializationStreamWriter writer = new ServerSerializationStreamWriter(serializationPolicy);
+		writer.setFlags(flags);
+		writer.prepareToWrite();
+		writer.writeObject(object);
+		return writer.toString();
+	}
+
+}
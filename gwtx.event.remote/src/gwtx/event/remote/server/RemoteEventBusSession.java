@@ -20,6 +20,7 @@ package gwtx.event.remote.server;
 import gwtx.event.remote.shared.RemoteGwtEvent;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -35,22 +36,46 @@ class RemoteEventBusSession implements Session, Serializable {
 	/* Managed UID. */
 	private static final long serialVersionUID = 1L;
 
-	private long lastSequence = -1;
+	private volatile long[] lastSequences = { UNKNOWN_SEQUENCE };
 	
 	private volatile boolean invalidated = false;
 	
 	private Set<String> typeIdSet = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 	
 	public long getLastSequence() {
-		return lastSequence;
+		return getLastSequence(0);
+	}
+
+	public long getLastSequence(int ring) {
+		long[] candidate = lastSequences;
+		return (ring < candidate.length)? candidate[ring] : UNKNOWN_SEQUENCE;
 	}
 
 	public boolean isSubscribed(RemoteGwtEvent.Type<?> type) {
-		return typeIdSet.contains(type.getTypeId());
+		return isSubscribed(type.getTypeId());
+	}
+
+	public boolean isSubscribed(String typeId) {
+		return typeIdSet.contains(typeId);
+	}
+
+	public Set<String> getSubscribedTypeIds() {
+		return Collections.unmodifiableSet(typeIdSet);
 	}
 
 	public void updateSequence(long lastSequence) {
-		this.lastSequence = lastSequence;
+		updateSequence(0, lastSequence);
+	}
+
+	public void updateSequence(int ring, long lastSequence) {
+		long[] candidate = lastSequences;
+		if(ring >= candidate.length) {
+			int length = candidate.length;
+			candidate = Arrays.copyOf(candidate, ring + 1);
+			Arrays.fill(candidate, length, candidate.length, UNKNOWN_SEQUENCE);
+		}
+		candidate[ring] = lastSequence;
+		lastSequences = candidate;
 	}
 	
 	public boolean subscribe(RemoteGwtEvent.Type<?> type) {
@@ -0,0 +1,128 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import java.io.IOException;
+
+import javax.servlet.ServletContext;
+import javax.websocket.CloseReason;
+import javax.websocket.DeploymentException;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.MessageHandler;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import javax.websocket.server.ServerContainer;
+import javax.websocket.server.ServerEndpointConfig;
+
+
+/**
+ * JSR-356 endpoint through which a remote event service pushes events to
+ * its clients, as an alternative to long polling. It is registered by the 
+ * service itself, there is one endpoint instance per connection.
+ * 
+ * @see gwtx.event.remote.shared.SocketProtocol
+ * 
+ * @author Dann Martens
+ */
+public class RemoteEventEndpoint extends Endpoint {
+
+	private static final Log log = Log.getLog(RemoteEventEndpoint.class);
+
+	private final RemoteEventServiceImpl remoteEventService;
+
+	private EventSocket socket;
+
+	RemoteEventEndpoint(RemoteEventServiceImpl remoteEventService) {
+		this.remoteEventService = remoteEventService;
+	}
+
+	/**
+	 * Registers the endpoint of a remote event service with the web socket
+	 * container of the servlet context.
+	 */
+	static void register(ServletContext servletContext, String path, final RemoteEventServiceImpl remoteEventService) throws DeploymentException {
+		ServerContainer serverContainer = (ServerContainer) servletContext.getAttribute(ServerContainer.class.getName());
+		if(serverContainer == null)
+			throw new DeploymentException("No web socket container is available!");
+		ServerEndpointConfig config = ServerEndpointConfig.Builder.create(RemoteEventEndpoint.class, path).configurator(new ServerEndpointConfig.Configurator() {
+			@Override
+			public <T> T getEndpointInstance(Class<T> endpointClass) throws InstantiationException {
+				return endpointClass.cast(new RemoteEventEndpoint(remoteEventService));
+			}
+		}).build();
+		serverContainer.addEndpoint(config);
+	}
+
+	@Override
+	public void onOpen(final Session session, EndpointConfig config) {
+		socket = new EventSocket() {
+			@Override
+			protected void send(String frame, final Runnable onSent) {
+				try {
+					session.getAsyncRemote().sendText(frame, new SendHandler() {
+						@Override
+						public void onResult(SendResult result) {
+							if(result.isOK()) {
+								onSent.run();
+							} else {
+								log.debug("Unable to push to {}, closing.", session.getId());
+								close();
+							}
+						}
+					});
+				} catch (RuntimeException re) {
+					//? The connection went away underneath us.
+					close();
+				}
+			}
+			@Override
+			protected void close() {
+				onClose();
+				try {
+					session.close();
+				} catch (IOException ignore) {}
+			}
+		};
+		session.addMessageHandler(new MessageHandler.Whole<String>() {
+			@Override
+			public void onMessage(String message) {
+				if(!socket.isAccepted()) {
+					remoteEventService.openSocket(socket, message);
+				}
+			}
+		});
+	}
+
+	@Override
+	public void onClose(Session session, CloseReason closeReason) {
+		if(socket != null) {
+			socket.onClose();
+		}
+	}
+
+	@Override
+	public void onError(Session session, Throwable throwable) {
+		log.debug("Web socket {} failed: {}", session.getId(), throwable);
+		if(socket != null) {
+			socket.onClose();
+		}
+	}
+
+}
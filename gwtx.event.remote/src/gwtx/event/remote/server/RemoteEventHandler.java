@@ -18,18 +18,28 @@
 package gwtx.event.remote.server;
 
 import gwtx.event.remote.client.RemoteEventService;
+import gwtx.event.remote.shared.RemoteGwtEvent;
 
+import java.lang.management.ManagementFactory;
 import java.util.concurrent.ConcurrentHashMap;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 
 /**
  * Static entry point for external classes which need to fire an event through
- * the remote event bus from the server-side.
+ * the remote event bus from the server-side, or to consume the events fired
+ * by browsers. Every registered service gets its metrics published as a 
+ * platform MBean.
  * 
  * @author Dann Martens
  */
 public class RemoteEventHandler {
 
+	private static final Log log = Log.getLog(RemoteEventHandler.class);
+
 	private static class Singleton {
 	
 		private static final RemoteEventHandler INSTANCE = new RemoteEventHandler();
@@ -46,6 +56,28 @@ public class RemoteEventHandler {
 		if(serviceMap.putIfAbsent(name, remoteEventService) != null) {
 			throw new IllegalStateException("A remote event service with name '" + name + "' has already been registered!");
 		}
+		try {
+			MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+			mBeanServer.registerMBean(remoteEventService.getMetrics(), objectNameOf(name));
+		} catch (JMException jme) {
+			//? Metrics are not worth failing for.
+			log.warn("Unable to register the metrics of " + name, jme);
+		}
+	}
+
+	public void unregister(String name, RemoteEventServiceImpl remoteEventService) {
+		if(serviceMap.remove(name, remoteEventService)) {
+			try {
+				MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+				mBeanServer.unregisterMBean(objectNameOf(name));
+			} catch (JMException jme) {
+				log.warn("Unable to unregister the metrics of " + name, jme);
+			}
+		}
+	}
+
+	private static ObjectName objectNameOf(String name) throws JMException {
+		return new ObjectName("gwtx.event.remote:type=RemoteEventService,name=" + ObjectName.quote(name));
 	}
 	
 	public RemoteEventService get() {
@@ -53,7 +85,22 @@ public class RemoteEventHandler {
 	}
 
 	public RemoteEventService get(String name) {
-		RemoteEventService result = serviceMap.get(name);
+		return getImpl(name);
+	}
+
+	/**
+	 * @see RemoteEventServiceImpl#subscribe(RemoteGwtEvent.Type, RemoteEventSubscriber, boolean)
+	 */
+	public <H> RemoteEventSubscription subscribe(RemoteGwtEvent.Type<H> type, RemoteEventSubscriber<H> subscriber, boolean gating) {
+		return subscribe(RemoteEventServiceImpl.DEFAULT_NAME, type, subscriber, gating);
+	}
+
+	public <H> RemoteEventSubscription subscribe(String name, RemoteGwtEvent.Type<H> type, RemoteEventSubscriber<H> subscriber, boolean gating) {
+		return getImpl(name).subscribe(type, subscriber, gating);
+	}
+
+	private RemoteEventServiceImpl getImpl(String name) {
+		RemoteEventServiceImpl result = serviceMap.get(name);
 		if(result == null)
 			throw new NullPointerException("No remote event service with name '" + name + "' has been registered!");
 		return result;
@@ -25,27 +25,53 @@ import gwtx.event.remote.shared.RemoteGwtEvent;
 import gwtx.event.remote.shared.RemoteGwtEvent.Type;
 import gwtx.event.remote.shared.RemoteSessionId;
 import gwtx.event.remote.shared.ServerId;
+import gwtx.event.remote.shared.SocketProtocol;
 import gwtx.event.remote.shared.SourceId;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.Deflater;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
+import com.google.gwt.event.shared.GwtEvent;
+import com.google.gwt.user.client.rpc.SerializationException;
+import com.google.gwt.user.server.rpc.RPC;
+import com.google.gwt.user.server.rpc.RPCRequest;
+import com.google.gwt.user.server.rpc.RPCServletUtils;
 import com.google.gwt.user.server.rpc.RemoteServiceServlet;
-import com.lmax.disruptor.EventFactory;
-import com.lmax.disruptor.EventProcessor;
-import com.lmax.disruptor.NoOpEventProcessor;
-import com.lmax.disruptor.RingBuffer;
-import com.lmax.disruptor.SequenceBarrier;
+import com.google.gwt.user.server.rpc.SerializationPolicy;
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.BusySpinWaitStrategy;
+import com.lmax.disruptor.ClaimStrategy;
+import com.lmax.disruptor.MultiThreadedClaimStrategy;
+import com.lmax.disruptor.MultiThreadedLowContentionClaimStrategy;
 import com.lmax.disruptor.SingleThreadedClaimStrategy;
 import com.lmax.disruptor.SleepingWaitStrategy;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.YieldingWaitStrategy;
 
 
 /**
@@ -59,34 +85,75 @@ public class RemoteEventServiceImpl extends RemoteServiceServlet implements Remo
 	/* Managed UID. */
 	private static final long serialVersionUID = 1L;
 
+	private static final Log log = Log.getLog(RemoteEventServiceImpl.class);
+
 	private static final int DEFAULT_BUFFER_SIZE = 1024;
 	
 	private static final long DEFAULT_MINIMUM_WAITING_TIME = 1000L;
 	
 	private static final long DEFAULT_MAXIMUM_WAITING_TIME = 10000L;
-	
-	static final String DEFAULT_NAME = "DEFAULT";
-	
-	private static class Referer<T> {
 
-		private T referenced;
+	private static final double DEFAULT_BUSY_EVENT_RATE = 10.0;
 
-		public T getReferenced() {
-			return referenced;
-		}
+	private static final int DEFAULT_DISPATCHER_THREADS = 2;
 
-		public void setReferenced(T referenced) {
-			this.referenced = referenced;
-		}
-		
-	}
+	private static final int DEFAULT_MAXIMUM_BATCH_SIZE = Integer.MAX_VALUE;
+
+	private static final long DEFAULT_MAXIMUM_RESPONSE_BYTES = Long.MAX_VALUE;
+
+	private static final String PUBLISH_MODE_EXECUTOR = "executor";
+
+	private static final String PUBLISH_MODE_MULTI_THREADED = "multiThreaded";
+
+	private static final String PUBLISH_MODE_LOW_CONTENTION = "lowContention";
+
+	private static final int DEFAULT_PENDING_BUFFER_SIZE = 1024;
+
+	private static final String WAIT_STRATEGY_SLEEPING = "sleeping";
+
+	private static final String WAIT_STRATEGY_YIELDING = "yielding";
+
+	private static final String WAIT_STRATEGY_BLOCKING = "blocking";
+
+	private static final String WAIT_STRATEGY_BUSY_SPIN = "busySpin";
+
+	private static final String WAIT_STRATEGY_PHASED_BACKOFF = "phasedBackoff";
+
+	private static final String WAIT_STRATEGY_NOTIFY = "notify";
+
+	private static final String DEFAULT_RING_NAME = "default";
+
+	private static final int DEFAULT_JOURNAL_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+	private static final int DEFAULT_COMPRESSION_THRESHOLD = 256;
+
+	private static final int DEFAULT_COMPRESSION_CACHE_SIZE = 16;
+
+	private static final String SLOW_CONSUMER_POLICY_OVERFLOW = "overflow";
+
+	private static final String SLOW_CONSUMER_POLICY_DROP_OLDEST = "dropOldest";
+
+	private static final String SLOW_CONSUMER_POLICY_EVICT = "evict";
+
+	private static final String SLOW_CONSUMER_POLICY_GATE = "gate";
+
+	private static final String CLUSTER_TRANSPORT_LOOPBACK = "loopback";
+
+	private static final String CLUSTER_TRANSPORT_SOCKETS = "sockets";
+
+	private static final int DEFAULT_CLUSTER_BATCH_SIZE = 256;
+
+	private static final long DEFAULT_STREAM_LIFETIME = 300000L;
+
+	private static final String PAYLOAD_ATTRIBUTE = RemoteEventServiceImpl.class.getName() + ".payload";
+
+	private static final String POLL_METHOD_MARKER = "|getAvailable";
+
+	private static final String POLL_METHOD_NAME = "getAvailableEvents";
+
+	private static final String SERIALIZED_POLL_METHOD_NAME = "getAvailableSerializedEvents";
 	
-	private final static EventFactory<Referer<RemoteGwtEvent<?>>> EVENT_FACTORY = new EventFactory<Referer<RemoteGwtEvent<?>>>() {
-		@SuppressWarnings({ "rawtypes", "unchecked" })
-		public Referer<RemoteGwtEvent<?>> newInstance() {
-			return (Referer<RemoteGwtEvent<?>>) new Referer();
-		}
-	};
+	static final String DEFAULT_NAME = "DEFAULT";
 	
 	private String name = DEFAULT_NAME;
 	
@@ -95,18 +162,71 @@ public class RemoteEventServiceImpl extends RemoteServiceServlet implements Remo
 	private long minimumWaitingTime = DEFAULT_MINIMUM_WAITING_TIME;
 
 	private long maximumWaitingTime = DEFAULT_MAXIMUM_WAITING_TIME;
+
+	private boolean asyncPolling = false;
+
+	private int dispatcherThreads = DEFAULT_DISPATCHER_THREADS;
+
+	private int maximumBatchSize = DEFAULT_MAXIMUM_BATCH_SIZE;
+
+	private long maximumResponseBytes = DEFAULT_MAXIMUM_RESPONSE_BYTES;
+
+	private String publishMode = PUBLISH_MODE_EXECUTOR;
+
+	private int pendingBufferSize = DEFAULT_PENDING_BUFFER_SIZE;
+
+	private String waitStrategy = WAIT_STRATEGY_SLEEPING;
+
+	private SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicyFactory.newDefaultInstance();
 	
-	private RingBuffer<Referer<RemoteGwtEvent<?>>> ringBuffer;
+	private EventRing[] rings;
+
+	private Map<String, EventRing> ringByTypeId = new HashMap<String, EventRing>();
+
+	private PublicationSignal publicationSignal = new PublicationSignal();
 		
 	private static SecureRandom random = new SecureRandom();
 		
 	private ServerId serverId = new ServerId(random.nextInt());
 
-	private SequenceBarrier barrier;
-	
 	private SessionManager sessionManager = SessionManagerFactory.newDefaultInstance();
+
+	private Conflation conflation = new Conflation();
+
+	private PollSequencer pollSequencer = new PollSequencer();
+
+	private PollCadence pollCadence;
+
+	private RemoteEventServiceMetrics metrics = new RemoteEventServiceMetrics(this);
 	
 	private ExecutorService executor;
+
+	private final Queue<List<PendingEvent>> pendingQueue = new ConcurrentLinkedQueue<List<PendingEvent>>();
+
+	private final AtomicBoolean publishing = new AtomicBoolean(false);
+
+	private final Runnable publishCommand = new Runnable() {
+		@Override
+		public void run() {
+			publishPending();
+		}
+	};
+
+	private PollRegistry pollRegistry;
+
+	private EventJournal journal;
+
+	private ResponseCompressor responseCompressor;
+
+	private ClusterBridge clusterBridge;
+
+	private String webSocketPath;
+
+	private boolean streaming = false;
+
+	private long streamLifetime = DEFAULT_STREAM_LIFETIME;
+
+	private transient ThreadLocal<RPCRequest> perThreadRPCRequest = new ThreadLocal<RPCRequest>();
 	
 	@Override
 	public void init(ServletConfig config) throws ServletException {
@@ -129,52 +249,796 @@ public class RemoteEventServiceImpl extends RemoteServiceServlet implements Remo
 			String value = config.getInitParameter("maximumWaitingTime");
 			maximumWaitingTime = Integer.parseInt(value);
 		} catch (Exception ignore) {}				
+		//? Adapt the minimum waiting time of every session to its event rate, if enabled.
+		if(Boolean.parseBoolean(config.getInitParameter("adaptiveWaiting"))) {
+			double busyEventRate = DEFAULT_BUSY_EVENT_RATE;
+			try {
+				String value = config.getInitParameter("busyEventRate");
+				busyEventRate = Double.parseDouble(value);
+			} catch (Exception ignore) {}
+			pollCadence = new PollCadence(minimumWaitingTime, busyEventRate);
+		}
+		//? Asynchronous polling requires <async-supported>true</async-supported>.
+		asyncPolling = Boolean.parseBoolean(config.getInitParameter("asyncPolling"));
+		try {
+			String value = config.getInitParameter("dispatcherThreads");
+			dispatcherThreads = Integer.parseInt(value);
+		} catch (Exception ignore) {}
+		try {
+			String value = config.getInitParameter("maximumBatchSize");
+			maximumBatchSize = Integer.parseInt(value);
+		} catch (Exception ignore) {}
+		try {
+			String value = config.getInitParameter("maximumResponseBytes");
+			maximumResponseBytes = Long.parseLong(value);
+		} catch (Exception ignore) {}
+		String candidatePublishMode = config.getInitParameter("publishMode");
+		if(candidatePublishMode != null && candidatePublishMode.length() > 0) {
+			publishMode = candidatePublishMode;
+		}
+		try {
+			String value = config.getInitParameter("pendingBufferSize");
+			pendingBufferSize = Integer.parseInt(value);
+		} catch (Exception ignore) {}
+		String candidateWaitStrategy = config.getInitParameter("waitStrategy");
+		if(candidateWaitStrategy != null && candidateWaitStrategy.length() > 0) {
+			waitStrategy = candidateWaitStrategy;
+		}
+		slowConsumerPolicy = newSlowConsumerPolicy(config);
 		//? Local initialization.
-		ringBuffer = new RingBuffer<Referer<RemoteGwtEvent<?>>>(EVENT_FACTORY, new SingleThreadedClaimStrategy(bufferSize), new SleepingWaitStrategy());
-		barrier = ringBuffer.newBarrier();
-		EventProcessor eventProcessor = new NoOpEventProcessor(ringBuffer);
-		ringBuffer.setGatingSequences(eventProcessor.getSequence());
-		//? Set up event firing thread.
-        final SecurityManager securityManager = System.getSecurityManager();
-        final ThreadGroup group = (securityManager != null)? securityManager.getThreadGroup() :  Thread.currentThread().getThreadGroup();
-		executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
-			@Override
-			public Thread newThread(Runnable runnable) {
-	            Thread result = new Thread(group, runnable, RemoteEventServiceImpl.class.getSimpleName(), 0);
-				  if (!result.isDaemon())
-				      result.setDaemon(true);
-				  if (result.getPriority() != Thread.NORM_PRIORITY)
-				      result.setPriority(Thread.NORM_PRIORITY);
-				  return result;
+		try {
+			initRings(config);
+			//? Keep the rings and the metrics in step with the session life-cycle.
+			sessionManager.addSessionListener(metrics);
+			sessionManager.addSessionListener(pollSequencer);
+			if(pollCadence != null) {
+				sessionManager.addSessionListener(pollCadence);
 			}
-		});
-		//? Register this remote event service the server-side handler.
-		RemoteEventHandler.getInstance().register(name, this);
+			for(EventRing ring: rings) {
+				sessionManager.addSessionListener(ring);
+			}
+			initConflation(config);
+			//? Set up the journal, if a directory has been configured.
+			initJournal(config);
+			//? Set up compression of poll responses, if enabled.
+			initCompression(config);
+			//? Join the cluster, if a transport has been configured.
+			initCluster(config);
+			//? Set up event firing thread, unless producers publish directly.
+			if(PUBLISH_MODE_EXECUTOR.equals(publishMode)) {
+				executor = Executors.newSingleThreadExecutor(new DaemonThreadFactory(RemoteEventServiceImpl.class.getSimpleName()));
+			}
+			//? Set up the registry for parked polls, if asynchronous polling, web sockets or streaming are enabled.
+			String candidateWebSocketPath = config.getInitParameter("webSocketPath");
+			if(candidateWebSocketPath != null && candidateWebSocketPath.length() > 0) {
+				webSocketPath = candidateWebSocketPath;
+			}
+			//? Streaming requires <async-supported>true</async-supported>.
+			streaming = Boolean.parseBoolean(config.getInitParameter("streaming"));
+			try {
+				String value = config.getInitParameter("streamLifetime");
+				streamLifetime = Long.parseLong(value);
+			} catch (Exception ignore) {}
+			if(asyncPolling || webSocketPath != null || streaming) {
+				pollRegistry = new PollRegistry(RemoteEventServiceImpl.class.getSimpleName(), dispatcherThreads);
+			}
+			initWebSocket(config);
+			//? Register this remote event service the server-side handler.
+			RemoteEventHandler.getInstance().register(name, this);
+		} catch (ServletException se) {
+			//? Never reaches destroy(), so let go of whatever has been started.
+			release();
+			throw se;
+		} catch (RuntimeException re) {
+			release();
+			throw re;
+		}
+		//? Session expiry and parked polls run on the shared timing wheel, started last as nothing can fail after it.
+		TimingWheel.getDefault().start();
 	}
 
 	@Override
 	public void fireEvent(final RemoteGwtEvent<?> event) {
-		executor.execute(new Runnable() {
+		final String typeId = typeIdOf(event);
+		if(clusterBridge != null) {
+			//? Peers have subscribers of their own.
+			clusterBridge.forward(event, typeId);
+		}
+		fireLocally(event, typeId);
+	}
+
+	/**
+	 * Fires a batch of events, typically all the events a client fired 
+	 * within one tick. Each ring receives its share of the batch as one 
+	 * contiguous claim, and waiting polls are woken up only once. Peers in
+	 * the cluster still receive the events one by one.
+	 */
+	@Override
+	public void fireEvents(List<RemoteGwtEvent<?>> eventList) {
+		List<PendingEvent> pendingList = new ArrayList<PendingEvent>(eventList.size());
+		for(RemoteGwtEvent<?> event: eventList) {
+			String typeId = typeIdOf(event);
+			if(clusterBridge != null) {
+				clusterBridge.forward(event, typeId);
+			}
+			pendingList.add(new PendingEvent(event, typeId));
+		}
+		if(executor == null) {
+			publish(pendingList);
+			signalPublication(pendingList);
+		} else {
+			enqueue(pendingList);
+		}
+	}
+
+	private void fireLocally(RemoteGwtEvent<?> event, String typeId) {
+		if(executor == null) {
+			publish(event, typeId);
+			signalPublication(Collections.singleton(typeId));
+		} else {
+			enqueue(Collections.singletonList(new PendingEvent(event, typeId)));
+		}
+	}
+
+	private static String typeIdOf(RemoteGwtEvent<?> event) {
+		GwtEvent.Type<?> type = event.getAssociatedType();
+		if(type instanceof RemoteGwtEvent.Type) {
+			return ((RemoteGwtEvent.Type<?>) type).getTypeId();
+		}
+		//? Same convention as the type identifier of a RemoteGwtEvent.Type.
+		return event.getClass().getName();
+	}
+
+	/**
+	 * Queues events for the publisher, a batch fired at once stays together.
+	 */
+	private void enqueue(List<PendingEvent> pendingList) {
+		pendingQueue.offer(pendingList);
+		//? Events which arrive while a batch is pending join that batch.
+		if(publishing.compareAndSet(false, true)) {
+			executor.execute(publishCommand);
+		}
+	}
+
+	/**
+	 * Publishes everything fired since the previous batch, and wakes up the
+	 * waiting polls once for the whole batch.
+	 */
+	private void publishPending() {
+		publishing.set(false);
+		List<PendingEvent> pendingList = null;
+		List<PendingEvent> queuedList;
+		while((queuedList = pendingQueue.poll()) != null) {
+			if(pendingList == null) {
+				pendingList = new ArrayList<PendingEvent>(queuedList);
+			} else {
+				pendingList.addAll(queuedList);
+			}
+		}
+		if(pendingList != null) {
+			publish(pendingList);
+			signalPublication(pendingList);
+		}
+	}
+
+	private EventRing ringOf(String typeId) {
+		EventRing ring = ringByTypeId.get(typeId);
+		return (ring == null)? rings[0] : ring;
+	}
+
+	/**
+	 * Subscribes a server-side subscriber to the events of the given type, 
+	 * fired from anywhere, from the next event to be published onwards. The
+	 * subscriber runs as a batch event processor on the ring of the type.
+	 * 
+	 * @param gating whether the subscriber holds back the producers of the 
+	 *        ring, rather than missing the events it gets lapped by
+	 */
+	public <H> RemoteEventSubscription subscribe(RemoteGwtEvent.Type<H> type, RemoteEventSubscriber<H> subscriber, boolean gating) {
+		return ringOf(type.getTypeId()).addSubscription(type.getTypeId(), subscriber, gating);
+	}
+
+	private void publish(RemoteGwtEvent<?> event, String typeId) {
+		EventRing ring = ringOf(typeId);
+		Conflation.Key conflationKey = conflation.keyOf(typeId, event);
+		metrics.onPublish();
+		if(journal == null) {
+			ring.publish(event, typeId, conflationKey);
+		} else {
+			//? Journal and rings must agree on the order of events.
+			synchronized (journal) {
+				try {
+					event = journal.append(event, typeId);
+				} catch (IOException ioe) {
+					//? Still deliver it to the sessions which are online.
+					log.warn("Unable to journal a remote event.", ioe);
+				}
+				ring.publish(event, typeId, conflationKey);
+			}
+		}
+	}
+
+	private void publish(List<PendingEvent> pendingList) {
+		for(PendingEvent pendingEvent: pendingList) {
+			pendingEvent.setConflationKey(conflation.keyOf(pendingEvent.getTypeId(), pendingEvent.getEvent()));
+			metrics.onPublish();
+		}
+		if(journal == null) {
+			publishToRings(pendingList);
+		} else {
+			synchronized (journal) {
+				for(PendingEvent pendingEvent: pendingList) {
+					try {
+						pendingEvent.setEvent(journal.append(pendingEvent.getEvent(), pendingEvent.getTypeId()));
+					} catch (IOException ioe) {
+						log.warn("Unable to journal a remote event.", ioe);
+					}
+				}
+				publishToRings(pendingList);
+			}
+		}
+	}
+
+	/**
+	 * Hands every ring its share of the events, in order.
+	 */
+	private void publishToRings(List<PendingEvent> pendingList) {
+		if(rings.length == 1) {
+			rings[0].publish(pendingList);
+			return;
+		}
+		Map<EventRing, List<PendingEvent>> pendingListByRing = new LinkedHashMap<EventRing, List<PendingEvent>>();
+		for(PendingEvent pendingEvent: pendingList) {
+			EventRing ring = ringOf(pendingEvent.getTypeId());
+			List<PendingEvent> ringList = pendingListByRing.get(ring);
+			if(ringList == null) {
+				ringList = new ArrayList<PendingEvent>();
+				pendingListByRing.put(ring, ringList);
+			}
+			ringList.add(pendingEvent);
+		}
+		for(Map.Entry<EventRing, List<PendingEvent>> entry: pendingListByRing.entrySet()) {
+			entry.getKey().publish(entry.getValue());
+		}
+	}
+
+	private void signalPublication(List<PendingEvent> pendingList) {
+		if(pollRegistry == null) {
+			publicationSignal.signal();
+			return;
+		}
+		Set<String> typeIdSet = new HashSet<String>();
+		for(PendingEvent pendingEvent: pendingList) {
+			typeIdSet.add(pendingEvent.getTypeId());
+		}
+		signalPublication(typeIdSet);
+	}
+
+	/**
+	 * Wakes up the waiting polls, parked polls only when they subscribe to
+	 * any of the published types.
+	 */
+	private void signalPublication(Set<String> typeIds) {
+		publicationSignal.signal();
+		if(pollRegistry != null) {
+			pollRegistry.signal(typeIds);
+		}
+	}
+
+	/**
+	 * Sets up the default ring and the optional shards. Shards are listed by
+	 * name in the <code>shards</code> parameter, each one is configured by
+	 * its <code>shard.&lt;name&gt;.types</code>, 
+	 * <code>shard.&lt;name&gt;.bufferSize</code> and
+	 * <code>shard.&lt;name&gt;.waitStrategy</code> parameters. Shards take
+	 * the wait strategy of the default ring, unless configured otherwise.
+	 */
+	private void initRings(ServletConfig config) throws ServletException {
+		List<EventRing> ringList = new ArrayList<EventRing>();
+		ringList.add(new EventRing(0, DEFAULT_RING_NAME, new HashSet<String>(), newClaimStrategy(bufferSize), newWaitStrategy(waitStrategy), slowConsumerPolicy));
+		String shards = config.getInitParameter("shards");
+		if(shards != null) {
+			for(String shard: shards.split(",")) {
+				shard = shard.trim();
+				if(shard.length() == 0)
+					continue;
+				String prefix = "shard." + shard + '.';
+				int shardBufferSize = bufferSize;
+				try {
+					String value = config.getInitParameter(prefix + "bufferSize");
+					shardBufferSize = Integer.parseInt(value);
+				} catch (Exception ignore) {}
+				Set<String> typeIdSet = new HashSet<String>();
+				String types = config.getInitParameter(prefix + "types");
+				if(types != null) {
+					for(String typeId: types.split(",")) {
+						if(typeId.trim().length() > 0)
+							typeIdSet.add(typeId.trim());
+					}
+				}
+				String shardWaitStrategy = config.getInitParameter(prefix + "waitStrategy");
+				if(shardWaitStrategy == null || shardWaitStrategy.length() == 0) {
+					shardWaitStrategy = waitStrategy;
+				}
+				EventRing ring = new EventRing(ringList.size(), shard, typeIdSet, newClaimStrategy(shardBufferSize), newWaitStrategy(shardWaitStrategy), slowConsumerPolicy);
+				for(String typeId: typeIdSet) {
+					if(ringByTypeId.put(typeId, ring) != null)
+						throw new ServletException("Type '" + typeId + "' has been assigned to more than one shard!");
+				}
+				ringList.add(ring);
+			}
+		}
+		rings = ringList.toArray(new EventRing[ringList.size()]);
+	}
+
+	/**
+	 * Reads the <code>slowConsumerPolicy</code> parameter, either one of the
+	 * predefined policies or the class name of a custom one. The evicting 
+	 * and gating policies take a <code>lagThreshold</code> parameter, which
+	 * defaults to the buffer size. The gating policy takes a
+	 * <code>publishTimeout</code> parameter in milliseconds, and a
+	 * <code>gatingLimit</code> parameter, the number of slowest sessions 
+	 * which hold back the producers.
+	 */
+	private SlowConsumerPolicy newSlowConsumerPolicy(ServletConfig config) throws ServletException {
+		String policy = config.getInitParameter("slowConsumerPolicy");
+		long lagThreshold = bufferSize;
+		try {
+			String value = config.getInitParameter("lagThreshold");
+			lagThreshold = Long.parseLong(value);
+		} catch (Exception ignore) {}
+		if(policy == null || policy.length() == 0 || SLOW_CONSUMER_POLICY_OVERFLOW.equals(policy)) {
+			return SlowConsumerPolicyFactory.newOverflowing();
+		} else
+		if(SLOW_CONSUMER_POLICY_DROP_OLDEST.equals(policy)) {
+			return SlowConsumerPolicyFactory.newDroppingOldest();
+		} else
+		if(SLOW_CONSUMER_POLICY_EVICT.equals(policy)) {
+			return SlowConsumerPolicyFactory.newEvicting(lagThreshold);
+		} else
+		if(SLOW_CONSUMER_POLICY_GATE.equals(policy)) {
+			long publishTimeout = SlowConsumerPolicyFactory.DEFAULT_PUBLISH_TIMEOUT;
+			String value = config.getInitParameter("publishTimeout");
+			if(value != null) {
+				try {
+					publishTimeout = Long.parseLong(value);
+				} catch (NumberFormatException nfe) {
+					throw new ServletException("Invalid publish timeout '" + value + "'!", nfe);
+				}
+			}
+			int gatingLimit = SlowConsumerPolicyFactory.DEFAULT_GATING_LIMIT;
+			value = config.getInitParameter("gatingLimit");
+			if(value != null) {
+				try {
+					gatingLimit = Integer.parseInt(value);
+				} catch (NumberFormatException nfe) {
+					throw new ServletException("Invalid gating limit '" + value + "'!", nfe);
+				}
+			}
+			return SlowConsumerPolicyFactory.newGating(lagThreshold, publishTimeout, gatingLimit);
+		}
+		try {
+			return (SlowConsumerPolicy) Class.forName(policy).getDeclaredConstructor().newInstance();
+		} catch (Exception e) {
+			throw new ServletException("Unknown slow consumer policy '" + policy + "'!", e);
+		}
+	}
+
+	/**
+	 * Reads the conflatable types from the <code>conflation</code> 
+	 * parameter, a list of <code>typeId=extractorClassName</code> pairs.
+	 */
+	private void initConflation(ServletConfig config) throws ServletException {
+		String value = config.getInitParameter("conflation");
+		if(value == null)
+			return;
+		for(String pair: value.split(",")) {
+			int index = pair.indexOf('=');
+			if(pair.trim().length() == 0)
+				continue;
+			if(index < 0)
+				throw new ServletException("Invalid conflation '" + pair + "'!");
+			String typeId = pair.substring(0, index).trim();
+			String className = pair.substring(index + 1).trim();
+			try {
+				conflation.register(typeId, (ConflationKeyExtractor<?>) Class.forName(className).getDeclaredConstructor().newInstance());
+			} catch (Exception e) {
+				throw new ServletException("Unknown conflation key extractor '" + className + "'!", e);
+			}
+		}
+	}
+
+	/**
+	 * Sets up the journal in the <code>journalDirectory</code>, if any. The 
+	 * journal is tuned by the <code>journalSegmentSize</code> parameter in 
+	 * bytes, and by the <code>journalRetentionTime</code> parameter in
+	 * milliseconds and the <code>journalRetentionBytes</code> parameter.
+	 */
+	private void initJournal(ServletConfig config) throws ServletException {
+		String journalDirectory = config.getInitParameter("journalDirectory");
+		if(journalDirectory == null || journalDirectory.length() == 0)
+			return;
+		int segmentSize = DEFAULT_JOURNAL_SEGMENT_SIZE;
+		long retentionTime = 0L;
+		long retentionBytes = 0L;
+		try {
+			String value = config.getInitParameter("journalSegmentSize");
+			segmentSize = Integer.parseInt(value);
+		} catch (Exception ignore) {}
+		try {
+			String value = config.getInitParameter("journalRetentionTime");
+			retentionTime = Long.parseLong(value);
+		} catch (Exception ignore) {}
+		try {
+			String value = config.getInitParameter("journalRetentionBytes");
+			retentionBytes = Long.parseLong(value);
+		} catch (Exception ignore) {}
+		journal = new EventJournal(new File(journalDirectory), segmentSize, retentionTime, retentionBytes);
+		try {
+			journal.open();
+		} catch (IOException ioe) {
+			throw new ServletException("Unable to open the journal in '" + journalDirectory + "'!", ioe);
+		}
+		sessionManager.addSessionListener(journal);
+	}
+
+	/**
+	 * Joins a cluster of remote event services, so events fired on any node
+	 * reach the sessions of all nodes. The <code>clusterTransport</code>
+	 * parameter is either <code>loopback</code>, which connects the services
+	 * of this JVM with the same <code>clusterGroup</code>, 
+	 * <code>sockets</code>, which listens on <code>clusterPort</code> and 
+	 * sends to the comma-separated <code>host:port</code> list of 
+	 * <code>clusterPeers</code>, or the class name of a custom transport.
+	 * Sockets listen on the loopback interface, unless 
+	 * <code>clusterBindAddress</code> names another one, and only accept
+	 * connections from the hosts of <code>clusterPeers</code>.
+	 * Frames hold at most <code>clusterBatchSize</code> events.
+	 */
+	private void initCluster(ServletConfig config) throws ServletException {
+		String transportName = config.getInitParameter("clusterTransport");
+		if(transportName == null || transportName.length() == 0)
+			return;
+		int batchSize = DEFAULT_CLUSTER_BATCH_SIZE;
+		try {
+			String value = config.getInitParameter("clusterBatchSize");
+			batchSize = Integer.parseInt(value);
+		} catch (Exception ignore) {}
+		ClusterTransport transport;
+		if(CLUSTER_TRANSPORT_LOOPBACK.equals(transportName)) {
+			String group = config.getInitParameter("clusterGroup");
+			transport = ClusterTransportFactory.newLoopback((group == null)? name : group);
+		} else
+		if(CLUSTER_TRANSPORT_SOCKETS.equals(transportName)) {
+			List<InetSocketAddress> peerAddressList = new ArrayList<InetSocketAddress>();
+			String peers = config.getInitParameter("clusterPeers");
+			String bindAddress = config.getInitParameter("clusterBindAddress");
+			try {
+				int port = Integer.parseInt(config.getInitParameter("clusterPort"));
+				if(peers != null) {
+					for(String peer: peers.split(",")) {
+						peer = peer.trim();
+						if(peer.length() == 0)
+							continue;
+						int index = peer.lastIndexOf(':');
+						peerAddressList.add(new InetSocketAddress(peer.substring(0, index), Integer.parseInt(peer.substring(index + 1))));
+					}
+				}
+				InetAddress bindInetAddress = (bindAddress == null || bindAddress.length() == 0)? null : InetAddress.getByName(bindAddress);
+				transport = ClusterTransportFactory.newSockets(bindInetAddress, port, peerAddressList);
+			} catch (Exception e) {
+				throw new ServletException("Invalid cluster bind address '" + bindAddress + "', port or peers '" + peers + "'!", e);
+			}
+		} else {
+			try {
+				transport = (ClusterTransport) Class.forName(transportName).getDeclaredConstructor().newInstance();
+			} catch (Exception e) {
+				throw new ServletException("Unknown cluster transport '" + transportName + "'!", e);
+			}
+		}
+		clusterBridge = new ClusterBridge(serverId, transport, batchSize, new ClusterBridge.Listener() {
 			@Override
-			public void run() {
-				long sequence = ringBuffer.next();
-				Referer<RemoteGwtEvent<?>> referer = ringBuffer.get(sequence);
-				referer.setReferenced(event);
-				//? Make the event available to EventProcessors
-				ringBuffer.publish(sequence); 
-			}			
+			public void onEvent(RemoteGwtEvent<?> event, String typeId) {
+				fireLocally(event, typeId);
+			}
 		});
+		try {
+			clusterBridge.start();
+		} catch (IOException ioe) {
+			throw new ServletException("Unable to join the cluster using '" + transportName + "'!", ioe);
+		}
+	}
+
+	/**
+	 * Registers a web socket endpoint at <code>webSocketPath</code>, through
+	 * which events get pushed as soon as they are published. Mapping it to
+	 * the same path as this servlet lets clients find it at their service
+	 * entry point. Without a JSR-356 container, clients keep polling.
+	 */
+	private void initWebSocket(ServletConfig config) {
+		if(webSocketPath == null)
+			return;
+		try {
+			RemoteEventEndpoint.register(config.getServletContext(), webSocketPath, this);
+		} catch (Exception e) {
+			log.warn("Unable to register the web socket endpoint, clients will keep polling.", e);
+		} catch (LinkageError le) {
+			log.warn("No web socket support, clients will keep polling.", le);
+		}
+	}
+
+	/**
+	 * Sets up the compression of poll responses, enabled by the 
+	 * <code>compressResponses</code> parameter. It is tuned by the
+	 * <code>compressionLevel</code>, <code>compressionThreshold</code> and
+	 * <code>compressionCacheSize</code> parameters.
+	 */
+	private void initCompression(ServletConfig config) {
+		if(!Boolean.parseBoolean(config.getInitParameter("compressResponses")))
+			return;
+		int level = Deflater.DEFAULT_COMPRESSION;
+		int threshold = DEFAULT_COMPRESSION_THRESHOLD;
+		int cacheSize = DEFAULT_COMPRESSION_CACHE_SIZE;
+		try {
+			String value = config.getInitParameter("compressionLevel");
+			level = Integer.parseInt(value);
+		} catch (Exception ignore) {}
+		try {
+			String value = config.getInitParameter("compressionThreshold");
+			threshold = Integer.parseInt(value);
+		} catch (Exception ignore) {}
+		try {
+			String value = config.getInitParameter("compressionCacheSize");
+			cacheSize = Integer.parseInt(value);
+		} catch (Exception ignore) {}
+		responseCompressor = new ResponseCompressor(level, threshold, cacheSize);
+	}
+
+	/**
+	 * Creates the wait strategy by name. In notification mode, waiting polls
+	 * register with the publication signal, which is raised once per batch of
+	 * publications, rather than each one spinning or sleeping on its own.
+	 */
+	private WaitStrategy newWaitStrategy(String waitStrategy) throws ServletException {
+		if(waitStrategy == null || waitStrategy.length() == 0 || WAIT_STRATEGY_SLEEPING.equals(waitStrategy)) {
+			return new SleepingWaitStrategy();
+		} else
+		if(WAIT_STRATEGY_YIELDING.equals(waitStrategy)) {
+			return new YieldingWaitStrategy();
+		} else
+		if(WAIT_STRATEGY_BLOCKING.equals(waitStrategy)) {
+			return new BlockingWaitStrategy();
+		} else
+		if(WAIT_STRATEGY_BUSY_SPIN.equals(waitStrategy)) {
+			return new BusySpinWaitStrategy();
+		} else
+		if(WAIT_STRATEGY_PHASED_BACKOFF.equals(waitStrategy)) {
+			return new PhasedBackoffWaitStrategy();
+		} else
+		if(WAIT_STRATEGY_NOTIFY.equals(waitStrategy)) {
+			return publicationSignal;
+		}
+		throw new ServletException("Unknown wait strategy '" + waitStrategy + "'!");
+	}
+
+	private ClaimStrategy newClaimStrategy(int bufferSize) throws ServletException {
+		if(PUBLISH_MODE_EXECUTOR.equals(publishMode)) {
+			//? The executor is the one and only publishing thread.
+			return new SingleThreadedClaimStrategy(bufferSize);
+		} else
+		if(PUBLISH_MODE_MULTI_THREADED.equals(publishMode)) {
+			//? Bounded pending publication buffer, no allocation per event.
+			return new MultiThreadedClaimStrategy(bufferSize, pendingBufferSize);
+		} else
+		if(PUBLISH_MODE_LOW_CONTENTION.equals(publishMode)) {
+			return new MultiThreadedLowContentionClaimStrategy(bufferSize);
+		}
+		throw new ServletException("Unknown publish mode '" + publishMode + "'!");
+	}
+
+	@Override
+	public void destroy() {
+		release();
+		TimingWheel.getDefault().stop();
+		super.destroy();
+	}
+
+	/**
+	 * Stops whatever has been started by a successful or a failed init.
+	 */
+	private void release() {
+		RemoteEventHandler.getInstance().unregister(name, this);
+		if(clusterBridge != null) {
+			clusterBridge.stop();
+		}
+		if(rings != null) {
+			for(EventRing ring: rings) {
+				ring.removeSubscriptions();
+			}
+		}
+		if(pollRegistry != null) {
+			pollRegistry.shutdown();
+		}
+		if(executor != null) {
+			executor.shutdown();
+		}
+		if(journal != null) {
+			journal.close();
+		}
+	}
+
+	@Override
+	protected void service(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		if(streaming && "GET".equals(request.getMethod()) && request.getParameter(SocketProtocol.HELLO_PARAMETER) != null) {
+			openStream(request, response);
+			return;
+		}
+		try {
+			if("POST".equals(request.getMethod())) {
+				if(asyncPolling && request.isAsyncSupported()) {
+					if(parkAvailableEvents(request, response))
+						return;
+				} else 
+				if(responseCompressor != null) {
+					//? Regular GWT RPC processing does not let us write the response.
+					if(serveAvailableEvents(request, response))
+						return;
+				}
+			}
+			super.service(request, response);
+		} finally {
+			//? Parked polls, and polls which failed, never pick it up.
+			perThreadRPCRequest.remove();
+		}
+	}
+
+	@Override
+	protected void onAfterRequestDeserialized(RPCRequest rpcRequest) {
+		//? Remember the serialization policy of a poll, it is needed to size responses.
+		if(isPollMethod(rpcRequest.getMethod().getName())) {
+			perThreadRPCRequest.set(rpcRequest);
+		}
+	}
+
+	private static boolean isPollMethod(String methodName) {
+		return POLL_METHOD_NAME.equals(methodName) || SERIALIZED_POLL_METHOD_NAME.equals(methodName);
+	}
+
+	/**
+	 * Makes sure the thread locals of the regular GWT RPC processing exist,
+	 * which it only creates once it processes its first request.
+	 */
+	private synchronized void validateThreadLocals() {
+		if(perThreadRequest == null) {
+			perThreadRequest = new ThreadLocal<HttpServletRequest>();
+		}
+		if(perThreadResponse == null) {
+			perThreadResponse = new ThreadLocal<HttpServletResponse>();
+		}
+	}
+
+	@Override
+	protected String readContent(HttpServletRequest request) throws ServletException, IOException {
+		//? The payload might have been consumed already while looking for polls.
+		String payload = (String) request.getAttribute(PAYLOAD_ATTRIBUTE);
+		return (payload != null)? payload : super.readContent(request);
 	}
 	
 	public SessionManager getSessionManager() {
 		return sessionManager;
 	}
+
+	public SlowConsumerPolicy getSlowConsumerPolicy() {
+		return slowConsumerPolicy;
+	}
+
+	RemoteEventServiceMetrics getMetrics() {
+		return metrics;
+	}
+
+	EventRing[] getRings() {
+		return rings;
+	}
+
+	int getParkedPollCount() {
+		return (pollRegistry == null)? 0 : pollRegistry.size();
+	}
+
+	/**
+	 * Declares a type as conflatable: of all pending events of that type 
+	 * with equal keys, sessions only receive the latest one.
+	 */
+	public <E extends RemoteGwtEvent<?>> void setConflatable(Type<?> type, ConflationKeyExtractor<E> extractor) {
+		conflation.register(type.getTypeId(), extractor);
+	}
+
+	public void unsetConflatable(Type<?> type) {
+		conflation.unregister(type.getTypeId());
+	}
+
+	/**
+	 * Returns the number of response bytes saved by compression so far.
+	 */
+	public long getCompressionBytesSaved() {
+		return (responseCompressor == null)? 0L : responseCompressor.getBytesSaved();
+	}
+
+	/**
+	 * Returns the CPU time spent on compression so far, in nanoseconds.
+	 */
+	public long getCompressionTime() {
+		return (responseCompressor == null)? 0L : responseCompressor.getTimeInNanos();
+	}
+
+	/**
+	 * Returns the number of responses which were compressed, and the number
+	 * of responses which were served compressed from the cache.
+	 */
+	public long[] getCompressionCounts() {
+		return (responseCompressor == null)? new long[2] : new long[] { responseCompressor.getCompressedCount(), responseCompressor.getCacheHitCount() };
+	}
+
+	/**
+	 * Returns the number of events forwarded to the peers in the cluster, 
+	 * the number received from them and the number of duplicates dropped.
+	 */
+	public long[] getClusterCounts() {
+		return (clusterBridge == null)? new long[3] : new long[] { clusterBridge.getForwardedCount(), clusterBridge.getReceivedCount(), clusterBridge.getDuplicateCount() };
+	}
+
+	/**
+	 * Returns the number of events a session is behind on the ring it lags
+	 * most on, or <code>-1</code> when there is no such session.
+	 */
+	public long getLag(SourceId sourceId) {
+		Session session = sessionManager.getSession(sourceId);
+		if(session == null)
+			return -1L;
+		long lag = 0L;
+		for(EventRing ring: rings) {
+			lag = Math.max(lag, ring.getLag(session));
+		}
+		return lag;
+	}
 	
 	@Override
 	public RemoteSessionId newSession() {
+		return newSession(Collections.<Type<?>>emptyList());
+	}
+
+	@Override
+	public RemoteSessionId newSession(List<Type<?>> types) {
+		SourceId sourceId = sessionManager.newSession(serverId);
+		//? Deliver whatever gets published from now on, even before the first poll.
+		Session session = sessionManager.getSession(sourceId);
+		subscribe(sourceId, session, types);
+		for(EventRing ring: rings) {
+			ring.updateSequence(sourceId, session, ring.getCursor());
+		}
+		log.debug("Created new session for source {}", sourceId.asString());
+		return new RemoteSessionId(serverId, sourceId, (int) minimumWaitingTime, (int) maximumWaitingTime);
+	}
+
+	@Override
+	public RemoteSessionId replaySession(long lastSequence, List<Type<?>> types) {
 		SourceId sourceId = sessionManager.newSession(serverId);
-		System.err.println("Created new session for source " + sourceId.asString());
-		return new RemoteSessionId(serverId, sourceId);
+		Session session = sessionManager.getSession(sourceId);
+		subscribe(sourceId, session, types);
+		if(journal == null) {
+			for(EventRing ring: rings) {
+				ring.updateSequence(sourceId, session, ring.getCursor());
+			}
+		} else {
+			//? The rings take over exactly where the replay ends.
+			synchronized (journal) {
+				for(EventRing ring: rings) {
+					ring.updateSequence(sourceId, session, ring.getCursor());
+				}
+				journal.startReplay(sourceId, lastSequence);
+			}
+		}
+		log.debug("Created new session for source {}, replaying after {}", sourceId.asString(), lastSequence);
+		return new RemoteSessionId(serverId, sourceId, (int) minimumWaitingTime, (int) maximumWaitingTime);
 	}
 
 //	@Override
@@ -196,85 +1060,686 @@ public class RemoteEventServiceImpl extends RemoteServiceServlet implements Remo
 	public <H> boolean addSubscription(Type<H> type) {
 		SourceId sourceId = sessionManager.service(this.getThreadLocalRequest(), this.getThreadLocalResponse());
 		Session session = sessionManager.getSession(sourceId);
-		return session.subscribe(type);
+		return subscribe(sourceId, session, Collections.<Type<?>>singletonList(type));
 	}
 
 	@Override
 	public <H> boolean removeSubscription(Type<H> type) {
 		SourceId sourceId = sessionManager.service(this.getThreadLocalRequest(), this.getThreadLocalResponse());
 		Session session = sessionManager.getSession(sourceId);
-		return session.unsubscribe(type);
+		return unsubscribe(sourceId, session, Collections.<Type<?>>singletonList(type));
+	}
+
+	@Override
+	public boolean addSubscriptions(List<Type<?>> types) {
+		SourceId sourceId = sessionManager.service(this.getThreadLocalRequest(), this.getThreadLocalResponse());
+		Session session = sessionManager.getSession(sourceId);
+		return subscribe(sourceId, session, types);
+	}
+
+	@Override
+	public boolean removeSubscriptions(List<Type<?>> types) {
+		SourceId sourceId = sessionManager.service(this.getThreadLocalRequest(), this.getThreadLocalResponse());
+		Session session = sessionManager.getSession(sourceId);
+		return unsubscribe(sourceId, session, types);
+	}
+
+	/**
+	 * Subscribes a session, and lets the parked polls of its source follow.
+	 * 
+	 * @return whether any of the types was not subscribed to yet
+	 */
+	private boolean subscribe(SourceId sourceId, Session session, List<Type<?>> types) {
+		boolean changed = false;
+		for(Type<?> type: types) {
+			changed |= session.subscribe(type);
+		}
+		if(changed && pollRegistry != null) {
+			pollRegistry.reindex(sourceId, session);
+		}
+		return changed;
+	}
+
+	/**
+	 * Unsubscribes a session, and lets the parked polls of its source follow.
+	 * 
+	 * @return whether any of the types was subscribed to
+	 */
+	private boolean unsubscribe(SourceId sourceId, Session session, List<Type<?>> types) {
+		boolean changed = false;
+		for(Type<?> type: types) {
+			changed |= session.unsubscribe(type);
+		}
+		if(changed && pollRegistry != null) {
+			pollRegistry.reindex(sourceId, session);
+		}
+		return changed;
 	}
 
 	@Override
 	public List<RemoteGwtEvent<?>> getAvailableEvents() throws RemoteEventBusException {
+		return poll(takeEventBatch(false)).getEventList();
+	}
+
+	@Override
+	public List<String> getAvailableSerializedEvents() throws RemoteEventBusException {
+		return poll(takeEventBatch(true)).getSerializedList();
+	}
+
+	@Override
+	public List<RemoteGwtEvent<?>> getAvailableEvents(List<RemoteGwtEvent<?>> events, int pollNumber, boolean previousAborted) throws RemoteEventBusException {
+		return poll(takeEventBatch(false), events, new PollSequencer.Ticket(pollNumber, previousAborted)).getEventList();
+	}
+
+	@Override
+	public List<String> getAvailableSerializedEvents(List<RemoteGwtEvent<?>> events, int pollNumber, boolean previousAborted) throws RemoteEventBusException {
+		return poll(takeEventBatch(true), events, new PollSequencer.Ticket(pollNumber, previousAborted)).getSerializedList();
+	}
+
+	/**
+	 * Creates the batch of a poll from the GWT RPC request which has been set
+	 * aside for it. A poll which is not a GWT RPC request, e.g. a direct 
+	 * call, has no serialization policy, so its batch has no byte cap.
+	 */
+	private EventBatch takeEventBatch(boolean serialized) throws RemoteEventBusException {
+		RPCRequest rpcRequest = perThreadRPCRequest.get();
+		perThreadRPCRequest.remove();
+		if(rpcRequest != null)
+			return newEventBatch(rpcRequest);
+		if(serialized)
+			throw new RemoteEventBusException("Serialized events require the serialization policy of a GWT RPC request!");
+		return new EventBatch(maximumBatchSize, maximumResponseBytes, null, 0, false);
+	}
+
+	/**
+	 * A poll which carries outgoing events is answered after the minimum 
+	 * waiting time, so the client learns soon enough that they went out.
+	 */
+	private long waitingTimeOf(List<RemoteGwtEvent<?>> events) {
+		return events.isEmpty()? maximumWaitingTime : minimumWaitingTime;
+	}
+
+	private EventBatch poll(EventBatch batch) throws RemoteEventBusException {
+		return poll(batch, null, null);
+	}
+
+	/**
+	 * Fires the outgoing events of a valid session, before polling.
+	 * 
+	 * @param events the outgoing events, <code>null</code> for a poll which 
+	 *        does not carry any
+	 * @param ticket the number of the poll, <code>null</code> for a poll
+	 *        which is not numbered
+	 */
+	private EventBatch poll(EventBatch batch, List<RemoteGwtEvent<?>> events, PollSequencer.Ticket ticket) throws RemoteEventBusException {
 		//! System.err.println("Get events");
 		long startTime = System.nanoTime();
-		List<RemoteGwtEvent<?>> result = new ArrayList<RemoteGwtEvent<?>>();
 		SourceId sourceId = sessionManager.service(this.getThreadLocalRequest(), this.getThreadLocalResponse());
 		//! System.err.println("SourceId from Header (get) " + sourceId);
-		if(sourceId == null)
-			throw new InvalidSessionException();
-		Session session = sessionManager.getSession(sourceId);
+		Session session = (sourceId == null)? null : sessionManager.getSession(sourceId);
 		if(session == null) {
+			metrics.onInvalidSession();
 			throw new InvalidSessionException();
 		}
-		long lastSequence = session.getLastSequence();
-		long cursor = ringBuffer.getCursor();
-		if(lastSequence == -1) {
-			lastSequence = ringBuffer.getCursor() == -1 ? -1 : cursor;
+		long waitingTime = maximumWaitingTime;
+		if(events != null) {
+			fireEvents(events);
+			waitingTime = waitingTimeOf(events);
+		}
+		if(ticket != null && !pollSequencer.start(sourceId, session, ticket))
+			return batch; //? Stale, its successor has started already.
+		if(journal != null && journal.isReplaying(sourceId)) {
+			//? Catch up without waiting, the rings follow once the replay has ended.
+			journal.replay(sourceId, session, conflation, batch);
+			if(!batch.isEmpty()) {
+				onPoll(sourceId, startTime, batch);
+				return batch;
+			}
+		}
+		PollCursor cursor = newPollCursor(sourceId, session);
+		getAsManyAsPossibleDuringMinimumWaitingTime(sourceId, cursor, startTime, lingerTimeOf(sourceId), batch);
+		if(batch.isEmpty()) {
+			getAtLeastOneDuringMaximumWaitingTime(sourceId, cursor, startTime, waitingTime, batch);
+		}
+		commit(sourceId, session, cursor, ticket);
+		onPoll(sourceId, startTime, batch);
+		if(log.isTraceEnabled()) {
+			log.trace("Returning {} events after {} ms", batch.size(), (System.nanoTime() - startTime) / 1000000L);
+		}
+		return batch;
+	}
+
+	/**
+	 * Returns how long a poll of the given session lingers to collect more
+	 * events, which is the minimum waiting time unless waiting is adaptive.
+	 */
+	private long lingerTimeOf(SourceId sourceId) {
+		return (pollCadence == null)? minimumWaitingTime : pollCadence.getLingerTime(sourceId);
+	}
+
+	private void onPoll(SourceId sourceId, long startTimeInNanos, EventBatch batch) {
+		metrics.onPoll(startTimeInNanos, batch.size(), batch.getBytes());
+		if(pollCadence != null) {
+			pollCadence.onPoll(sourceId, batch.size());
+		}
+	}
+
+	/**
+	 * @return whether the positions have been committed, which a numbered
+	 *         poll does not when its successor has started already
+	 */
+	private boolean commit(SourceId sourceId, Session session, PollCursor cursor, PollSequencer.Ticket ticket) {
+		if(ticket == null) {
+			cursor.commit(session);
+			return true;
+		}
+		return pollSequencer.commit(sourceId, session, cursor, ticket);
+	}
+
+	private EventBatch newEventBatch(RPCRequest rpcRequest) {
+		boolean serialized = SERIALIZED_POLL_METHOD_NAME.equals(rpcRequest.getMethod().getName());
+		return new EventBatch(maximumBatchSize, maximumResponseBytes, rpcRequest.getSerializationPolicy(), rpcRequest.getFlags(), serialized);
+	}
+
+	/**
+	 * Creates a cursor over the rings which matter to the given session: the
+	 * default ring and the shards of its subscribed types. The position in 
+	 * other shards is forgotten, so resubscribing never overflows.
+	 */
+	private PollCursor newPollCursor(SourceId sourceId, Session session) throws BufferOverflowException, InvalidSessionException {
+		if(rings.length == 1) {
+			return admit(rings, sourceId, session);
+		}
+		List<EventRing> ringList = new ArrayList<EventRing>(rings.length);
+		ringList.add(rings[0]);
+		for(int i = 1; i < rings.length; i++) {
+			if(isSubscribedToAny(session, rings[i].getTypeIdSet())) {
+				ringList.add(rings[i]);
+			} else {
+				session.updateSequence(i, Session.UNKNOWN_SEQUENCE);
+				rings[i].release(sourceId);
+			}
+		}
+		return admit(ringList.toArray(new EventRing[ringList.size()]), sourceId, session);
+	}
+
+	private PollCursor admit(EventRing[] rings, SourceId sourceId, Session session) throws BufferOverflowException, InvalidSessionException {
+		try {
+			return new PollCursor(rings, sourceId, session, publicationSignal);
+		} catch (InvalidSessionException ise) {
+			//? Evicted by the slow consumer policy.
+			metrics.onInvalidSession();
+			sessionManager.invalidate(sourceId);
+			throw ise;
 		}
-		System.err.println("Cursor is at: " + cursor + ", lastSequence is at: " + lastSequence + " ,bufferSize is: " + ringBuffer.getBufferSize());
-		long waitSequence = lastSequence + 1;		
-		if((cursor - lastSequence) > ringBuffer.getBufferSize()) {
-			throw new BufferOverflowException();
+	}
+
+	private void drain(SourceId sourceId, PollCursor cursor, EventBatch batch) throws BufferOverflowException, InvalidSessionException {
+		try {
+			cursor.drain(batch);
+		} catch (InvalidSessionException ise) {
+			metrics.onInvalidSession();
+			sessionManager.invalidate(sourceId);
+			throw ise;
 		}
-		if(!getAsManyAsPossibleDuringMinimumWaitingTime(waitSequence, startTime, result)) {
-			getAtLeastOneDuringMaximumWaitingTime(waitSequence, startTime, result);
+	}
+
+	private boolean isSubscribedToAny(Session session, Set<String> typeIdSet) {
+		for(String typeId: typeIdSet) {
+			if(session.isSubscribed(typeId))
+				return true;
 		}
-		session.updateSequence(lastSequence + result.size());
-		System.err.println(">>> Returning after elapsed: " + ((double) (System.nanoTime() - startTime) / 1000000.0));
-		return result;
+		return false;
 	}
 
-	private boolean getAsManyAsPossibleDuringMinimumWaitingTime(long sequence, long startTimeInNanos, List<RemoteGwtEvent<?>> eventList) {
+	private void getAsManyAsPossibleDuringMinimumWaitingTime(SourceId sourceId, PollCursor cursor, long startTimeInNanos, long lingerTime, EventBatch batch) throws BufferOverflowException, InvalidSessionException {
 		long elapsedNanos = System.nanoTime() - startTimeInNanos;
-	    boolean result = false;
-	    long whatsLeftOfMinimumWaitingTime = minimumWaitingTime - (elapsedNanos / 1000000L);
-	    while(whatsLeftOfMinimumWaitingTime > 0) { 
+	    long whatsLeftOfMinimumWaitingTime = lingerTime - (elapsedNanos / 1000000L);
+	    while(whatsLeftOfMinimumWaitingTime > 0 && !batch.isFull()) { 
 			try {
-				System.err.print("Waiting for " + sequence + " (MIN)... ");
-				long currentSequence = barrier.waitFor(sequence, whatsLeftOfMinimumWaitingTime, TimeUnit.MILLISECONDS);
-				if(currentSequence >= sequence) { //? Something happened.
-					Referer<RemoteGwtEvent<?>> referer = ringBuffer.get(sequence++);
-					RemoteGwtEvent<?> event = referer.getReferenced();
-					eventList.add(event);
-					result = true;
-				}
+				cursor.await(whatsLeftOfMinimumWaitingTime);
 			} catch (Exception e) {
-				e.printStackTrace();
+				log.warn("Interrupted while waiting for events.", e);
 			}
-			whatsLeftOfMinimumWaitingTime = minimumWaitingTime - ((System.nanoTime() - startTimeInNanos) / 1000000L);
-			System.err.println("what's left " + whatsLeftOfMinimumWaitingTime);
+			//? Take everything that has become available in one go.
+			drain(sourceId, cursor, batch);
+			whatsLeftOfMinimumWaitingTime = lingerTime - ((System.nanoTime() - startTimeInNanos) / 1000000L);
 	    }
-		return result;
 	}
 	
-	private void getAtLeastOneDuringMaximumWaitingTime(long sequence, long startTimeInNanos, List<RemoteGwtEvent<?>> eventList) {
+	private void getAtLeastOneDuringMaximumWaitingTime(SourceId sourceId, PollCursor cursor, long startTimeInNanos, long waitingTime, EventBatch batch) throws BufferOverflowException, InvalidSessionException {
 		long elapsedNanos = System.nanoTime() - startTimeInNanos;
 		//! System.err.println("Elapsed " + (elapsedNanos / 1000000L));
-		long whatsLeftOfMaximumWaitingTime = maximumWaitingTime - (elapsedNanos / 1000000L);
+		long whatsLeftOfMaximumWaitingTime = waitingTime - (elapsedNanos / 1000000L);
+		//? Keep waiting as long as only events of unsubscribed types show up.
+		while(batch.isEmpty() && whatsLeftOfMaximumWaitingTime > 0) {
+			try {
+				//! System.err.println("Waiting (MAX)... " + whatsLeftOfMaximumWaitingTime);
+				cursor.await(whatsLeftOfMaximumWaitingTime);
+			} catch (Exception e) {
+				log.warn("Interrupted while waiting for events.", e);
+				break;
+			}
+			drain(sourceId, cursor, batch);
+			whatsLeftOfMaximumWaitingTime = waitingTime - ((System.nanoTime() - startTimeInNanos) / 1000000L);
+		}
+	}
+
+	/**
+	 * Answers a <code>getAvailableEvents</code> or 
+	 * <code>getAvailableSerializedEvents</code> call asynchronously, without
+	 * holding on to the container thread while waiting for events. Other calls
+	 * are left to the regular GWT RPC processing.
+	 * 
+	 * @return whether the request has been taken care of
+	 */
+	private boolean parkAvailableEvents(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		long startTime = System.nanoTime();
+		final RPCRequest rpcRequest = decodePollRequest(request);
+		if(rpcRequest == null)
+			return false;
 		try {
-			//! System.err.println("Waiting for " + sequence + " (MAX)... " + whatsLeftOfMaximumWaitingTime);
-			long currentSequence = barrier.waitFor(sequence, whatsLeftOfMaximumWaitingTime, TimeUnit.MILLISECONDS);
-			if(currentSequence >= sequence) { //? Something happened.
-				Referer<RemoteGwtEvent<?>> referer = ringBuffer.get(sequence++);
-				RemoteGwtEvent<?> event = referer.getReferenced();
-				eventList.add(event);
+			final SourceId sourceId = sessionManager.service(request, response);
+			final Session session = (sourceId == null)? null : sessionManager.getSession(sourceId);
+			if(session == null) {
+				metrics.onInvalidSession();
+				writeFailure(request, response, rpcRequest, new InvalidSessionException());
+				return true;
+			}
+			if(journal != null && journal.isReplaying(sourceId))
+				return false; //? Replays never wait.
+			PollSequencer.Ticket ticket = null;
+			long waitingTime = maximumWaitingTime;
+			Object[] parameters = rpcRequest.getParameters();
+			if(parameters.length == 3) {
+				@SuppressWarnings("unchecked")
+				List<RemoteGwtEvent<?>> events = (List<RemoteGwtEvent<?>>) parameters[0];
+				fireEvents(events);
+				waitingTime = waitingTimeOf(events);
+				ticket = new PollSequencer.Ticket((Integer) parameters[1], (Boolean) parameters[2]);
+				if(!pollSequencer.start(sourceId, session, ticket)) {
+					//? Stale, its successor has started already.
+					writeSuccess(request, response, rpcRequest, newEventBatch(rpcRequest).getResult());
+					return true;
+				}
 			}
+			PollCursor cursor;
+			try {
+				cursor = newPollCursor(sourceId, session);
+			} catch (RemoteEventBusException rebe) {
+				writeFailure(request, response, rpcRequest, rebe);
+				return true;
+			}
+			final AsyncContext asyncContext = request.startAsync(request, response);
+			//? The scheduler answers in time, the container's timeout is a safety net. 
+			asyncContext.setTimeout(2 * maximumWaitingTime);
+			final ParkedPoll poll = new AsyncPoll(asyncContext, rpcRequest, sourceId, session, cursor, ticket, startTime, Math.min(lingerTimeOf(sourceId), waitingTime), waitingTime);
+			asyncContext.addListener(new AsyncListener() {
+				@Override
+				public void onTimeout(AsyncEvent event) throws IOException {
+					poll.cancel();
+					event.getAsyncContext().complete();
+				}
+				@Override
+				public void onError(AsyncEvent event) throws IOException {
+					poll.cancel();
+				}
+				@Override
+				public void onComplete(AsyncEvent event) throws IOException {}
+				@Override
+				public void onStartAsync(AsyncEvent event) throws IOException {}
+			});
+			pollRegistry.park(poll, sourceId, session);
+		} catch (SerializationException se) {
+			throw new ServletException(se);
+		}
+		return true;
+	}
+
+	/**
+	 * Answers a <code>getAvailableEvents</code> or 
+	 * <code>getAvailableSerializedEvents</code> call synchronously, like the
+	 * regular GWT RPC processing would, but writes the response itself.
+	 * 
+	 * @return whether the request has been taken care of
+	 */
+	private boolean serveAvailableEvents(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		RPCRequest rpcRequest = decodePollRequest(request);
+		if(rpcRequest == null)
+			return false;
+		//? This request bypasses the regular processing, which would create them.
+		validateThreadLocals();
+		perThreadRequest.set(request);
+		perThreadResponse.set(response);
+		try {
+			String encoded = RPC.invokeAndEncodeResponse(this, rpcRequest.getMethod(), rpcRequest.getParameters(), rpcRequest.getSerializationPolicy(), rpcRequest.getFlags());
+			writeResponse(request, response, encoded);
+		} catch (SerializationException se) {
+			throw new ServletException(se);
+		} catch (RuntimeException re) {
+			doUnexpectedFailure(re);
+		} finally {
+			perThreadRequest.remove();
+			perThreadResponse.remove();
+		}
+		return true;
+	}
+
+	/**
+	 * Decodes a request, as long as it is a poll.
+	 * 
+	 * @return the poll request, or <code>null</code> when it is left to the
+	 *         regular GWT RPC processing
+	 */
+	private RPCRequest decodePollRequest(HttpServletRequest request) throws ServletException, IOException {
+		String payload = readContent(request);
+		request.setAttribute(PAYLOAD_ATTRIBUTE, payload);
+		if(payload == null || payload.indexOf(POLL_METHOD_MARKER) < 0)
+			return null;
+		RPCRequest rpcRequest;
+		try {
+			onBeforeRequestDeserialized(payload);
+			rpcRequest = RPC.decodeRequest(payload, getClass(), this);
+			onAfterRequestDeserialized(rpcRequest);
 		} catch (Exception e) {
-			e.printStackTrace();
+			return null; //? Let the regular processing report the problem.
 		}
+		if(!isPollMethod(rpcRequest.getMethod().getName()))
+			return null;
+		return rpcRequest;
 	}
-	
+
+	private void writeSuccess(HttpServletRequest request, HttpServletResponse response, RPCRequest rpcRequest, Object result) throws SerializationException, IOException {
+		String encoded = RPC.encodeResponseForSuccess(rpcRequest.getMethod(), result, rpcRequest.getSerializationPolicy(), rpcRequest.getFlags());
+		writeResponse(request, response, encoded);
+	}
+
+	private void writeFailure(HttpServletRequest request, HttpServletResponse response, RPCRequest rpcRequest, Throwable caught) throws SerializationException, IOException {
+		String encoded = RPC.encodeResponseForFailure(rpcRequest.getMethod(), caught, rpcRequest.getSerializationPolicy(), rpcRequest.getFlags());
+		writeResponse(request, response, encoded);
+	}
+
+	private void writeResponse(HttpServletRequest request, HttpServletResponse response, String encoded) throws IOException {
+		onAfterResponseSerialized(encoded);
+		if(responseCompressor != null) {
+			String encoding = responseCompressor.encodingFor(request, encoded);
+			if(encoding != null) {
+				responseCompressor.write(response, encoded, encoding);
+				return;
+			}
+			RPCServletUtils.writeResponse(getServletContext(), response, encoded, false);
+			return;
+		}
+		boolean gzipEncode = shouldCompressResponse(request, response, encoded);
+		RPCServletUtils.writeResponse(getServletContext(), response, encoded, gzipEncode);
+	}
+
+	/**
+	 * Answers a Server-Sent Events request by holding the response open, and
+	 * pushing events through it like through a web socket. The stream is 
+	 * closed after <code>streamLifetime</code> milliseconds, which bounds 
+	 * what intermediaries buffer, and the browser reconnects by itself. 
+	 * Heartbeats are pushed whenever nothing was published for the maximum 
+	 * waiting time.
+	 */
+	private void openStream(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		if(!request.isAsyncSupported()) {
+			//? The client falls back to polling.
+			response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+			return;
+		}
+		AsyncContext asyncContext = request.startAsync(request, response);
+		//? The stream closes itself in time, the container's timeout is a safety net.
+		asyncContext.setTimeout(streamLifetime + 2 * maximumWaitingTime);
+		final EventStream stream = new EventStream(asyncContext, streamLifetime);
+		asyncContext.addListener(new AsyncListener() {
+			@Override
+			public void onTimeout(AsyncEvent event) throws IOException {
+				stream.close();
+			}
+			@Override
+			public void onError(AsyncEvent event) throws IOException {
+				stream.close();
+			}
+			@Override
+			public void onComplete(AsyncEvent event) throws IOException {
+				stream.onClose();
+			}
+			@Override
+			public void onStartAsync(AsyncEvent event) throws IOException {}
+		});
+		stream.open();
+		String hello = request.getParameter(SocketProtocol.HELLO_PARAMETER);
+		//? Unlike for a web socket, there is a request to load the policy for.
+		validateThreadLocals();
+		perThreadRequest.set(request);
+		try {
+			openSocket(stream, hello);
+		} finally {
+			perThreadRequest.remove();
+		}
+	}
+
+	/**
+	 * Takes over delivery to a session from its polls, once the client has 
+	 * said hello over a web socket or event stream. For a web socket, the 
+	 * serialization policy is looked up in the cache of policies which GWT
+	 * RPC calls have loaded, since there is no request to load it for. The
+	 * socket is rejected when the policy is not known, and the client falls 
+	 * back to polling.
+	 */
+	void openSocket(EventSocket socket, String hello) {
+		String[] fields = SocketProtocol.decodeHello(hello);
+		SourceId sourceId;
+		int flags;
+		SerializationPolicy serializationPolicy;
+		try {
+			sourceId = new SourceId(Integer.parseInt(fields[0]));
+			flags = Integer.parseInt(fields[1]);
+			serializationPolicy = getSerializationPolicy(fields[3], fields[2]);
+		} catch (Exception e) {
+			serializationPolicy = null;
+			sourceId = null;
+			flags = 0;
+		}
+		if(serializationPolicy == null) {
+			socket.fail(SocketProtocol.REJECTED);
+			return;
+		}
+		if(sessionManager.getSession(sourceId) == null) {
+			metrics.onInvalidSession();
+			socket.fail(SocketProtocol.INVALID_SESSION);
+			return;
+		}
+		socket.accept(sourceId, serializationPolicy, flags);
+		final EventSocket acceptedSocket = socket;
+		socket.send(String.valueOf(SocketProtocol.ACCEPTED), new Runnable() {
+			@Override
+			public void run() {
+				parkSocket(acceptedSocket);
+			}
+		});
+	}
+
+	private void parkSocket(EventSocket socket) {
+		if(socket.isClosed())
+			return;
+		if(socket.isExpired()) {
+			socket.close();
+			return;
+		}
+		SourceId sourceId = socket.getSourceId();
+		//? Also keeps the session alive, now that it no longer polls.
+		Session session = sessionManager.getSession(sourceId);
+		if(session == null) {
+			metrics.onInvalidSession();
+			socket.fail(SocketProtocol.INVALID_SESSION);
+			return;
+		}
+		PollCursor cursor;
+		try {
+			cursor = newPollCursor(sourceId, session);
+		} catch (BufferOverflowException boe) {
+			socket.fail(SocketProtocol.BUFFER_OVERFLOW);
+			return;
+		} catch (InvalidSessionException ise) {
+			socket.fail(SocketProtocol.INVALID_SESSION);
+			return;
+		}
+		ParkedPoll poll = new SocketPoll(socket, session, cursor, System.nanoTime());
+		socket.setPoll(poll);
+		pollRegistry.park(poll, sourceId, session);
+	}
+
+	/**
+	 * A parked <code>getAvailableEvents</code> call, answered on a dispatcher
+	 * thread in exactly the same wire format as a synchronous one.
+	 */
+	private class AsyncPoll extends ParkedPoll {
+
+		private final AsyncContext asyncContext;
+
+		private final RPCRequest rpcRequest;
+
+		private final SourceId sourceId;
+
+		private final Session session;
+
+		private final PollCursor cursor;
+
+		private final PollSequencer.Ticket ticket;
+
+		private final long startTimeInNanos;
+
+		public AsyncPoll(AsyncContext asyncContext, RPCRequest rpcRequest, SourceId sourceId, Session session, PollCursor cursor, PollSequencer.Ticket ticket, long startTimeInNanos, long lingerTime, long waitingTime) {
+			super(startTimeInNanos, lingerTime, waitingTime);
+			this.startTimeInNanos = startTimeInNanos;
+			this.asyncContext = asyncContext;
+			this.rpcRequest = rpcRequest;
+			this.sourceId = sourceId;
+			this.session = session;
+			this.cursor = cursor;
+			this.ticket = ticket;
+		}
+
+		@Override
+		protected boolean isReady() {
+			return cursor.isAvailable() && System.nanoTime() >= getLingerDeadline();
+		}
+
+		@Override
+		protected boolean tryComplete(boolean expired) {
+			HttpServletRequest request = (HttpServletRequest) asyncContext.getRequest();
+			HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+			try {
+				EventBatch batch = newEventBatch(rpcRequest);
+				try {
+					drain(sourceId, cursor, batch);
+				} catch (RemoteEventBusException rebe) {
+					writeFailure(request, response, rpcRequest, rebe);
+					asyncContext.complete();
+					return true;
+				}
+				if(!commit(sourceId, session, cursor, ticket)) {
+					//? Superseded, the client has given up on this one.
+					writeSuccess(request, response, rpcRequest, newEventBatch(rpcRequest).getResult());
+					asyncContext.complete();
+					return true;
+				}
+				if(batch.isEmpty() && !expired)
+					return false; //? Only events of unsubscribed types.
+				writeSuccess(request, response, rpcRequest, batch.getResult());
+				onPoll(sourceId, startTimeInNanos, batch);
+			} catch (Exception e) {
+				RPCServletUtils.writeResponseForUnexpectedFailure(getServletContext(), response, e);
+			}
+			asyncContext.complete();
+			return true;
+		}
+
+	}
+
+	/**
+	 * A poll on behalf of a web socket or event stream, which pushes events
+	 * without lingering and parks the next poll once they have been sent. 
+	 * When nothing was published during the maximum waiting time, a heartbeat
+	 * is pushed.
+	 */
+	private class SocketPoll extends ParkedPoll {
+
+		private final EventSocket socket;
+
+		private final SourceId sourceId;
+
+		private final Session session;
+
+		private final PollCursor cursor;
+
+		private final long startTimeInNanos;
+
+		private final Runnable parkCommand = new Runnable() {
+			@Override
+			public void run() {
+				parkSocket(socket);
+			}
+		};
+
+		public SocketPoll(EventSocket socket, Session session, PollCursor cursor, long startTimeInNanos) {
+			super(startTimeInNanos, 0L, maximumWaitingTime);
+			this.startTimeInNanos = startTimeInNanos;
+			this.socket = socket;
+			this.sourceId = socket.getSourceId();
+			this.session = session;
+			this.cursor = cursor;
+		}
+
+		@Override
+		protected boolean isReady() {
+			return cursor.isAvailable() || (journal != null && journal.isReplaying(sourceId));
+		}
+
+		@Override
+		protected boolean tryComplete(boolean expired) {
+			if(socket.isClosed())
+				return true;
+			try {
+				return push(expired);
+			} catch (RuntimeException re) {
+				//? The client falls back to polling.
+				log.warn("Unable to push to a web socket, closed it.", re);
+				socket.close();
+				return true;
+			}
+		}
+
+		private boolean push(boolean expired) {
+			EventBatch batch = new EventBatch(maximumBatchSize, maximumResponseBytes, socket.getSerializationPolicy(), socket.getFlags(), true);
+			if(journal != null && journal.isReplaying(sourceId)) {
+				journal.replay(sourceId, session, conflation, batch);
+			}
+			if(batch.isEmpty()) {
+				try {
+					drain(sourceId, cursor, batch);
+				} catch (BufferOverflowException boe) {
+					socket.fail(SocketProtocol.BUFFER_OVERFLOW);
+					return true;
+				} catch (InvalidSessionException ise) {
+					socket.fail(SocketProtocol.INVALID_SESSION);
+					return true;
+				}
+				cursor.commit(session);
+			}
+			if(batch.isEmpty()) {
+				if(!expired)
+					return false; //? Only events of unsubscribed types.
+				socket.send(String.valueOf(SocketProtocol.HEARTBEAT), parkCommand);
+				return true;
+			}
+			socket.send(SocketProtocol.encodeEvents(batch.getSerializedList()), parkCommand);
+			metrics.onPoll(startTimeInNanos, batch.size(), batch.getBytes());
+			return true;
+		}
+
+	}
+
 }
@@ -0,0 +1,78 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import java.util.Map;
+
+
+/**
+ * Management interface of a named remote event service, registered under
+ * <code>gwtx.event.remote:type=RemoteEventService,name=&lt;name&gt;</code>.
+ * Latencies are in microseconds, rates in events or sessions per second
+ * since the previous time the rate was read.
+ * 
+ * @author Dann Martens
+ */
+public interface RemoteEventServiceMXBean {
+
+	long getPublishCount();
+
+	double getPublishRate();
+
+	String[] getRingNames();
+
+	long[] getRingCursors();
+
+	long[] getRemainingCapacities();
+
+	long getOverflowCount();
+
+	long getDroppedCount();
+
+	long getEvictionCount();
+
+	long getInvalidSessionCount();
+
+	int getParkedPollCount();
+
+	int getSessionCount();
+
+	long getSessionsCreated();
+
+	long getSessionsExpired();
+
+	long getSessionsInvalidated();
+
+	double getSessionCreateRate();
+
+	double getSessionExpireRate();
+
+	/**
+	 * Returns the lag of every session, by source identifier.
+	 */
+	Map<String, Long> getSessionLags();
+
+	long getMaximumLag();
+
+	Map<String, Long> getPollLatency();
+
+	Map<String, Long> getEventsPerPoll();
+
+	Map<String, Long> getBytesPerPoll();
+
+}
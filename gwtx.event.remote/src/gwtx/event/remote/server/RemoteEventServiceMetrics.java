@@ -0,0 +1,259 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import gwtx.event.remote.shared.SourceId;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Metrics of a remote event service. Recording is allocation-free, using
+ * striped counters and fixed-bucket histograms. Everything else is derived
+ * when read through the management interface.
+ * 
+ * @author Dann Martens
+ */
+class RemoteEventServiceMetrics implements RemoteEventServiceMXBean, SessionListener {
+
+	private static final class Rate {
+
+		private long lastCount = 0;
+
+		private long lastTimeInNanos = System.nanoTime();
+
+		public synchronized double sample(long count) {
+			long now = System.nanoTime();
+			double result = (now == lastTimeInNanos)? 0.0 : (count - lastCount) * 1000000000.0 / (now - lastTimeInNanos);
+			lastCount = count;
+			lastTimeInNanos = now;
+			return result;
+		}
+
+	}
+
+	private final RemoteEventServiceImpl remoteEventService;
+
+	private final StripedCounter publishCount = new StripedCounter();
+
+	private final StripedCounter invalidSessionCount = new StripedCounter();
+
+	private final StripedCounter sessionsCreated = new StripedCounter();
+
+	private final StripedCounter sessionsExpired = new StripedCounter();
+
+	private final StripedCounter sessionsInvalidated = new StripedCounter();
+
+	private final Histogram pollLatency = new Histogram();
+
+	private final Histogram eventsPerPoll = new Histogram();
+
+	private final Histogram bytesPerPoll = new Histogram();
+
+	private final Rate publishRate = new Rate();
+
+	private final Rate sessionCreateRate = new Rate();
+
+	private final Rate sessionExpireRate = new Rate();
+
+	private final Set<SourceId> sourceIdSet = Collections.newSetFromMap(new ConcurrentHashMap<SourceId, Boolean>());
+
+	public RemoteEventServiceMetrics(RemoteEventServiceImpl remoteEventService) {
+		this.remoteEventService = remoteEventService;
+	}
+
+	public void onPublish() {
+		publishCount.increment();
+	}
+
+	public void onInvalidSession() {
+		invalidSessionCount.increment();
+	}
+
+	public void onPoll(long startTimeInNanos, int events, long bytes) {
+		pollLatency.record((System.nanoTime() - startTimeInNanos) / 1000L);
+		eventsPerPoll.record(events);
+		bytesPerPoll.record(bytes);
+	}
+
+	@Override
+	public void onSessionNew(SessionEvent event) {
+		sourceIdSet.add(event.getSourceId());
+		sessionsCreated.increment();
+	}
+
+	@Override
+	public void onSessionInvalidate(SessionEvent event) {
+		sourceIdSet.remove(event.getSourceId());
+		sessionsInvalidated.increment();
+	}
+
+	@Override
+	public void onSessionExpire(SessionEvent event) {
+		sourceIdSet.remove(event.getSourceId());
+		sessionsExpired.increment();
+	}
+
+	@Override
+	public long getPublishCount() {
+		return publishCount.get();
+	}
+
+	@Override
+	public double getPublishRate() {
+		return publishRate.sample(publishCount.get());
+	}
+
+	@Override
+	public String[] getRingNames() {
+		EventRing[] rings = remoteEventService.getRings();
+		String[] result = new String[rings.length];
+		for(int i = 0; i < rings.length; i++) {
+			result[i] = rings[i].getName();
+		}
+		return result;
+	}
+
+	@Override
+	public long[] getRingCursors() {
+		EventRing[] rings = remoteEventService.getRings();
+		long[] result = new long[rings.length];
+		for(int i = 0; i < rings.length; i++) {
+			result[i] = rings[i].getCursor();
+		}
+		return result;
+	}
+
+	@Override
+	public long[] getRemainingCapacities() {
+		EventRing[] rings = remoteEventService.getRings();
+		long[] result = new long[rings.length];
+		for(int i = 0; i < rings.length; i++) {
+			result[i] = rings[i].getRemainingCapacity();
+		}
+		return result;
+	}
+
+	@Override
+	public long getOverflowCount() {
+		long result = 0;
+		for(EventRing ring: remoteEventService.getRings()) {
+			result += ring.getOverflowCount();
+		}
+		return result;
+	}
+
+	@Override
+	public long getDroppedCount() {
+		long result = 0;
+		for(EventRing ring: remoteEventService.getRings()) {
+			result += ring.getDroppedCount();
+		}
+		return result;
+	}
+
+	@Override
+	public long getEvictionCount() {
+		long result = 0;
+		for(EventRing ring: remoteEventService.getRings()) {
+			result += ring.getEvictionCount();
+		}
+		return result;
+	}
+
+	@Override
+	public long getInvalidSessionCount() {
+		return invalidSessionCount.get();
+	}
+
+	@Override
+	public int getParkedPollCount() {
+		return remoteEventService.getParkedPollCount();
+	}
+
+	@Override
+	public int getSessionCount() {
+		return sourceIdSet.size();
+	}
+
+	@Override
+	public long getSessionsCreated() {
+		return sessionsCreated.get();
+	}
+
+	@Override
+	public long getSessionsExpired() {
+		return sessionsExpired.get();
+	}
+
+	@Override
+	public long getSessionsInvalidated() {
+		return sessionsInvalidated.get();
+	}
+
+	@Override
+	public double getSessionCreateRate() {
+		return sessionCreateRate.sample(sessionsCreated.get());
+	}
+
+	@Override
+	public double getSessionExpireRate() {
+		return sessionExpireRate.sample(sessionsExpired.get());
+	}
+
+	@Override
+	public Map<String, Long> getSessionLags() {
+		Map<String, Long> result = new TreeMap<String, Long>();
+		for(SourceId sourceId: sourceIdSet) {
+			long lag = remoteEventService.getLag(sourceId);
+			if(lag >= 0) {
+				result.put(sourceId.asString(), lag);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public long getMaximumLag() {
+		long result = 0;
+		for(SourceId sourceId: sourceIdSet) {
+			result = Math.max(result, remoteEventService.getLag(sourceId));
+		}
+		return result;
+	}
+
+	@Override
+	public Map<String, Long> getPollLatency() {
+		return pollLatency.getSummary();
+	}
+
+	@Override
+	public Map<String, Long> getEventsPerPoll() {
+		return eventsPerPoll.getSummary();
+	}
+
+	@Override
+	public Map<String, Long> getBytesPerPoll() {
+		return bytesPerPoll.getSummary();
+	}
+
+}
@@ -0,0 +1,46 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import gwtx.event.remote.shared.RemoteGwtEvent;
+
+
+/**
+ * Server-side consumer of the remote events of a single type, regardless of
+ * whether they were fired by browsers or by server code. Every subscriber 
+ * runs on a thread of its own, as a batch event processor with its own 
+ * sequence on the ring which holds the type. Events are handed over in the
+ * order of the ring, the end of every batch is reported separately, which is
+ * the moment to flush whatever was buffered for the batch.
+ * 
+ * @author Dann Martens
+ */
+public interface RemoteEventSubscriber<H> {
+
+	/**
+	 * @param sequence the sequence of the event in its ring
+	 */
+	void onEvent(RemoteGwtEvent<H> event, long sequence) throws Exception;
+
+	/**
+	 * Called after the last event of a batch which held at least one event 
+	 * of the subscribed type.
+	 */
+	void onEndOfBatch() throws Exception;
+
+}
@@ -0,0 +1,52 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+
+/**
+ * Handle of a server-side subscriber, as returned when it was subscribed.
+ * 
+ * @author Dann Martens
+ */
+public interface RemoteEventSubscription {
+
+	String getTypeId();
+
+	/**
+	 * Returns whether the subscriber holds back the producers of its ring, 
+	 * rather than missing the events it has been lapped by.
+	 */
+	boolean isGating();
+
+	/**
+	 * Returns the sequence of the last event processed by the subscriber.
+	 */
+	long getSequence();
+
+	/**
+	 * Returns the number of events a non-gating subscriber missed, because
+	 * it was lapped by the producers.
+	 */
+	long getLappedCount();
+
+	/**
+	 * Stops the subscriber, after the event it is processing, if any. 
+	 */
+	void unsubscribe();
+
+}
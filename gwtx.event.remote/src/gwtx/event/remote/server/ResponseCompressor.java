@@ -0,0 +1,225 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+
+/**
+ * Compresses GWT RPC responses beyond a size threshold, using gzip or
+ * deflate, whichever the client accepts. The most recently compressed 
+ * responses are cached, so a batch which goes out to many sessions is 
+ * compressed only once.
+ * 
+ * @author Dann Martens
+ */
+class ResponseCompressor {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final String GZIP = "gzip";
+
+	private static final String DEFLATE = "deflate";
+
+	private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+	private static final class CacheKey {
+
+		private final String encoding;
+
+		private final String payload;
+
+		public CacheKey(String encoding, String payload) {
+			this.encoding = encoding;
+			this.payload = payload;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * encoding.hashCode() + payload.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj)
+				return true;
+			if(!(obj instanceof CacheKey))
+				return false;
+			CacheKey other = (CacheKey) obj;
+			return encoding.equals(other.encoding) && payload.equals(other.payload);
+		}
+
+	}
+
+	private final int level;
+
+	private final int threshold;
+
+	private final Map<CacheKey, byte[]> cache;
+
+	private final AtomicLong compressedCount = new AtomicLong();
+
+	private final AtomicLong cacheHitCount = new AtomicLong();
+
+	private final AtomicLong bytesSaved = new AtomicLong();
+
+	private final AtomicLong timeInNanos = new AtomicLong();
+
+	/**
+	 * @param level the compression level, from 0 up to 9 or -1 for the 
+	 *        default level
+	 * @param threshold the number of characters a response must have, before
+	 *        it gets compressed
+	 * @param cacheSize the number of compressed responses to keep
+	 */
+	public ResponseCompressor(int level, int threshold, final int cacheSize) {
+		this.level = level;
+		this.threshold = threshold;
+		this.cache = new LinkedHashMap<CacheKey, byte[]>(cacheSize, 0.75f, true) {
+			/* Managed UID. */
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<CacheKey, byte[]> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	/**
+	 * Returns the encoding to use for the given response, or 
+	 * <code>null</code> when it goes out uncompressed.
+	 */
+	public String encodingFor(HttpServletRequest request, String payload) {
+		if(payload.length() < threshold)
+			return null;
+		String acceptEncoding = request.getHeader("Accept-Encoding");
+		if(acceptEncoding == null)
+			return null;
+		acceptEncoding = acceptEncoding.toLowerCase();
+		if(acceptEncoding.contains(GZIP))
+			return GZIP;
+		if(acceptEncoding.contains(DEFLATE))
+			return DEFLATE;
+		return null;
+	}
+
+	/**
+	 * Writes a response which has been found worthy of compression.
+	 */
+	public void write(HttpServletResponse response, String payload, String encoding) throws IOException {
+		byte[] compressed = compress(payload, encoding);
+		response.setContentType("application/json; charset=utf-8");
+		response.setStatus(HttpServletResponse.SC_OK);
+		response.setHeader("Content-Disposition", "attachment");
+		response.setHeader("Content-Encoding", encoding);
+		response.setContentLength(compressed.length);
+		response.getOutputStream().write(compressed);
+	}
+
+	private byte[] compress(String payload, String encoding) throws IOException {
+		CacheKey key = new CacheKey(encoding, payload);
+		byte[] result;
+		synchronized (cache) {
+			result = cache.get(key);
+		}
+		if(result != null) {
+			cacheHitCount.incrementAndGet();
+			return result;
+		}
+		long startTime = currentTimeInNanos();
+		byte[] uncompressed = payload.getBytes(UTF_8);
+		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(uncompressed.length / 4 + 64);
+		Deflater deflater = new Deflater(level, GZIP.equals(encoding));
+		try {
+			OutputStream outputStream = GZIP.equals(encoding)? 
+					newGZIPOutputStream(byteArrayOutputStream, deflater) : 
+					new DeflaterOutputStream(byteArrayOutputStream, deflater);
+			outputStream.write(uncompressed);
+			outputStream.close();
+		} finally {
+			deflater.end();
+		}
+		result = byteArrayOutputStream.toByteArray();
+		timeInNanos.addAndGet(currentTimeInNanos() - startTime);
+		compressedCount.incrementAndGet();
+		bytesSaved.addAndGet(uncompressed.length - result.length);
+		synchronized (cache) {
+			cache.put(key, result);
+		}
+		return result;
+	}
+
+	private static OutputStream newGZIPOutputStream(OutputStream outputStream, final Deflater deflater) throws IOException {
+		return new GZIPOutputStream(outputStream) {
+			{
+				//? Swap in the deflater with the configured level, the default one is never used.
+				def.end();
+				def = deflater;
+			}
+		};
+	}
+
+	/**
+	 * CPU time of the current thread when the JVM supports it, elapsed time
+	 * otherwise.
+	 */
+	private static long currentTimeInNanos() {
+		if(THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported()) {
+			long cpuTime = THREAD_MX_BEAN.getCurrentThreadCpuTime();
+			if(cpuTime >= 0)
+				return cpuTime;
+		}
+		return System.nanoTime();
+	}
+
+	public long getCompressedCount() {
+		return compressedCount.get();
+	}
+
+	public long getCacheHitCount() {
+		return cacheHitCount.get();
+	}
+
+	public long getBytesSaved() {
+		return bytesSaved.get();
+	}
+
+	public long getTimeInNanos() {
+		return timeInNanos.get();
+	}
+
+	@Override
+	public String toString() {
+		return "ResponseCompressor:{level=" + level + ", threshold=" + threshold + ", compressed=" + compressedCount.get() + ", cacheHits=" + cacheHitCount.get() + ", bytesSaved=" + bytesSaved.get() + '}';
+	}
+
+}
@@ -19,6 +19,8 @@ package gwtx.event.remote.server;
 
 import gwtx.event.remote.shared.RemoteGwtEvent;
 
+import java.util.Set;
+
 
 /**
  * Interface which is implemented by server-side session instances.
@@ -27,7 +29,19 @@ import gwtx.event.remote.shared.RemoteGwtEvent;
  */
 public interface Session {
 
+	/**
+	 * Last sequence of a ring which the session has not polled yet.
+	 */
+	public static final long UNKNOWN_SEQUENCE = Long.MIN_VALUE;
+
 	public boolean isSubscribed(RemoteGwtEvent.Type<?> type);
+
+	public boolean isSubscribed(String typeId);
+
+	/**
+	 * Returns a read-only view of the identifiers of the subscribed types.
+	 */
+	public Set<String> getSubscribedTypeIds();
 	
 	public boolean subscribe(RemoteGwtEvent.Type<?> type);
 	
@@ -36,6 +50,10 @@ public interface Session {
 	public long getLastSequence();
 
 	public void updateSequence(long sequence);
+
+	public long getLastSequence(int ring);
+
+	public void updateSequence(int ring, long sequence);
 	
 	public void invalidate();
 	
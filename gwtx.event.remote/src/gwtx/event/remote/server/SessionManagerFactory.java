@@ -22,6 +22,7 @@ import gwtx.event.remote.shared.SourceId;
 
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -34,20 +35,26 @@ import com.google.common.cache.RemovalNotification;
 
 /**
  * A factory for remote event bus sessions. This factory is able to create 
- * only one type: a standalone session manager. The
- * standalone manager caches and expires sessons using a separate thread. 
+ * two types: a striped session manager, which is the default, and a 
+ * standalone session manager. The striped manager keeps sessions in a 
+ * {@link SessionTable} and expires them using the shared timing wheel. The
+ * standalone manager caches and expires sessons using a Guava cache. 
  * 
  * @author Dann Martens
  */
 public class SessionManagerFactory {
+
+	private static final Log log = Log.getLog(SessionManagerFactory.class);
 	
 	private static final long DEFAULT_EXPIRATION_DURATION = 30;
 	
 	private static final TimeUnit DEFAULT_EXPIRATION_TIME_UNIT = TimeUnit.SECONDS;
+
+	private static final int DEFAULT_STRIPES = 64;
 		
 	private static class Standalone implements SessionManager {
 		
-		private int sourceIdCounter = 1;
+		private final AtomicInteger sourceIdCounter = new AtomicInteger(1);
 		
 		private Cache<SourceId, Session> cache;
 		
@@ -94,7 +101,7 @@ public class SessionManagerFactory {
 
 		@Override
 		public SourceId newSession(ServerId serverId) {
-			SourceId result = new SourceId(++sourceIdCounter);
+			SourceId result = new SourceId(sourceIdCounter.incrementAndGet());
 			Session session = new RemoteEventBusSession();
 			cache.put(result, session);
 			for(SessionListener sessionListener: sessionListenerList) {
@@ -130,8 +137,143 @@ public class SessionManagerFactory {
 		
 	}
 
+	private static class Striped implements SessionManager {
+
+		private final AtomicInteger sourceIdCounter = new AtomicInteger(1);
+
+		private final SessionTable table;
+
+		private final long expirationInNanos;
+
+		/**
+		 * Provides the coarse clock for access times, so lookups do not have
+		 * to read the system clock, and expires idle sessions.
+		 */
+		private final TimingWheel timingWheel = TimingWheel.getDefault();
+
+		private CopyOnWriteArrayList<SessionListener> sessionListenerList = new CopyOnWriteArrayList<SessionListener>();
+
+		private Striped(int stripes, long expirationDuration, TimeUnit expirationTimeUnit) {
+			table = new SessionTable(stripes);
+			expirationInNanos = expirationTimeUnit.toNanos(expirationDuration);
+		}
+
+		/**
+		 * Runs when a session may have expired. Sessions which have been 
+		 * accessed in the meantime are checked again later on, rather than 
+		 * rescheduled on every access.
+		 */
+		private void expire(final SessionTable.Entry entry) {
+			long deadline = entry.lastAccessTime + expirationInNanos;
+			if(deadline - timingWheel.getCurrentTime() > 0) {
+				scheduleExpiry(entry, deadline);
+				return;
+			}
+			if(table.remove(entry.sourceId.getId()) == null)
+				return; //? Invalidated in the meantime.
+			if(!entry.session.isInvalidated()) {
+				for(SessionListener sessionListener: sessionListenerList) {
+					try {
+						sessionListener.onSessionExpire(new SessionEvent(entry.sourceId));
+					} catch (RuntimeException re) {
+						log.warn("Session listener failed on expiry.", re);
+					}
+				}
+			}
+		}
+
+		private void scheduleExpiry(final SessionTable.Entry entry, long deadline) {
+			entry.expiry = timingWheel.scheduleAt(new Runnable() {
+				@Override
+				public void run() {
+					expire(entry);
+				}
+			}, deadline);
+		}
+
+		@Override
+		public SourceId service(HttpServletRequest request, HttpServletResponse response) {
+			String header = request.getHeader("X-GWT-RemoteEventSource");
+			int value;
+			try {
+				value = Integer.parseInt(header);
+			} catch (Exception ignore) {
+				return null;
+			}
+			//? Hand out the identifier of the session, rather than a fresh one.
+			SessionTable.Entry entry = table.get(value);
+			return (entry == null)? new SourceId(value) : entry.sourceId;
+		}
+
+		@Override
+		public Session getSession(SourceId sourceId) {
+			if(sourceId == null)
+				throw new NullPointerException();
+			SessionTable.Entry entry = table.get(sourceId.getId());
+			if(entry == null)
+				return null;
+			long now = timingWheel.getCurrentTime();
+			if(entry.lastAccessTime != now) {
+				entry.lastAccessTime = now;
+			}
+			return entry.session;
+		}
+
+		@Override
+		public SourceId newSession(ServerId serverId) {
+			SourceId result = new SourceId(sourceIdCounter.incrementAndGet());
+			long now = timingWheel.getCurrentTime();
+			SessionTable.Entry entry = new SessionTable.Entry(result, new RemoteEventBusSession(), now);
+			table.put(entry);
+			scheduleExpiry(entry, now + expirationInNanos);
+			for(SessionListener sessionListener: sessionListenerList) {
+				sessionListener.onSessionNew(new SessionEvent(result));
+			}
+			return result;
+		}
+
+		@Override
+		public void invalidate(SourceId sourceId) {
+			SessionTable.Entry entry = table.remove(sourceId.getId());
+			if(entry == null)
+				return; //? Expired or invalidated already.
+			entry.session.invalidate();
+			TimingWheel.Timeout expiry = entry.expiry;
+			if(expiry != null) {
+				expiry.cancel();
+			}
+			for(SessionListener sessionListener: sessionListenerList) {
+				sessionListener.onSessionInvalidate(new SessionEvent(entry.sourceId));
+			}
+		}
+
+		@Override
+		public void addSessionListener(SessionListener listener) {
+			sessionListenerList.add(listener);
+		}
+
+		@Override
+		public void removeSessionListener(SessionListener listener) {
+			sessionListenerList.remove(listener);
+		}
+
+		@Override
+		public String toString() {
+			return "Striped*SessionManager:{size=" + table.size() + '}';
+		}
+
+	}
+
 	public static SessionManager newDefaultInstance() {
-		return newSystemManaged();
+		return newStriped();
+	}
+
+	public static SessionManager newStriped() {
+		return newStriped(DEFAULT_STRIPES, DEFAULT_EXPIRATION_DURATION, DEFAULT_EXPIRATION_TIME_UNIT);
+	}
+
+	public static SessionManager newStriped(int stripes, long expirationDuration, TimeUnit expirationTimeUnit) {
+		return new Striped(stripes, expirationDuration, expirationTimeUnit);
 	}
 	
 	public static SessionManager newSystemManaged() {
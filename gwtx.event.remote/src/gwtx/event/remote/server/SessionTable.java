@@ -0,0 +1,213 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import gwtx.event.remote.shared.SourceId;
+
+
+/**
+ * Sessions by the primitive identifier of their source. The table is split
+ * into stripes, each an open-addressing hash table with linear probing and 
+ * its own lock, kept at most half full so a lookup takes about one probe.
+ * 
+ * @author Dann Martens
+ */
+class SessionTable {
+
+	private static final int MINIMUM_CAPACITY = 16;
+
+	/**
+	 * A session together with its canonical source identifier, the time it 
+	 * was last accessed and its pending expiry.
+	 */
+	static final class Entry {
+
+		final SourceId sourceId;
+
+		final Session session;
+
+		volatile long lastAccessTime;
+
+		volatile TimingWheel.Timeout expiry;
+
+		Entry(SourceId sourceId, Session session, long lastAccessTime) {
+			this.sourceId = sourceId;
+			this.session = session;
+			this.lastAccessTime = lastAccessTime;
+		}
+
+	}
+
+	private static final class Stripe {
+
+		private int[] keys;
+
+		private Entry[] entries;
+
+		private int size = 0;
+
+		Stripe(int capacity) {
+			keys = new int[capacity];
+			entries = new Entry[capacity];
+		}
+
+	}
+
+	private final Stripe[] stripes;
+
+	private final int stripeBits;
+
+	/**
+	 * @param stripeCount rounded up to a power of two
+	 */
+	public SessionTable(int stripeCount) {
+		int bits = 0;
+		while((1 << bits) < stripeCount) {
+			bits++;
+		}
+		stripeBits = bits;
+		stripes = new Stripe[1 << bits];
+		for(int i = 0; i < stripes.length; i++) {
+			stripes[i] = new Stripe(MINIMUM_CAPACITY);
+		}
+	}
+
+	private static int hash(int id) {
+		//? Source identifiers are sequential, so spread them over all bits.
+		int h = id;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	private Stripe stripeOf(int hash) {
+		return stripes[hash & (stripes.length - 1)];
+	}
+
+	private int slotOf(int hash, int mask) {
+		return (hash >>> stripeBits) & mask;
+	}
+
+	public Entry get(int id) {
+		int hash = hash(id);
+		Stripe stripe = stripeOf(hash);
+		synchronized (stripe) {
+			int mask = stripe.keys.length - 1;
+			for(int i = slotOf(hash, mask); stripe.entries[i] != null; i = (i + 1) & mask) {
+				if(stripe.keys[i] == id)
+					return stripe.entries[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Adds an entry, replacing the one with the same identifier, if any.
+	 */
+	public void put(Entry entry) {
+		int id = entry.sourceId.getId();
+		int hash = hash(id);
+		Stripe stripe = stripeOf(hash);
+		synchronized (stripe) {
+			if(2 * (stripe.size + 1) > stripe.keys.length) {
+				resize(stripe, 2 * stripe.keys.length);
+			}
+			int mask = stripe.keys.length - 1;
+			int i = slotOf(hash, mask);
+			while(stripe.entries[i] != null) {
+				if(stripe.keys[i] == id) {
+					stripe.entries[i] = entry;
+					return;
+				}
+				i = (i + 1) & mask;
+			}
+			stripe.keys[i] = id;
+			stripe.entries[i] = entry;
+			stripe.size++;
+		}
+	}
+
+	public Entry remove(int id) {
+		int hash = hash(id);
+		Stripe stripe = stripeOf(hash);
+		synchronized (stripe) {
+			int mask = stripe.keys.length - 1;
+			for(int i = slotOf(hash, mask); stripe.entries[i] != null; i = (i + 1) & mask) {
+				if(stripe.keys[i] == id) {
+					Entry result = stripe.entries[i];
+					removeAt(stripe, i);
+					return result;
+				}
+			}
+		}
+		return null;
+	}
+
+	public int size() {
+		int result = 0;
+		for(Stripe stripe: stripes) {
+			synchronized (stripe) {
+				result += stripe.size;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Empties a slot by shifting back the entries of the same probe run, so
+	 * no tombstones are needed.
+	 */
+	private void removeAt(Stripe stripe, int slot) {
+		int mask = stripe.keys.length - 1;
+		int hole = slot;
+		stripe.entries[hole] = null;
+		stripe.size--;
+		for(int i = (hole + 1) & mask; stripe.entries[i] != null; i = (i + 1) & mask) {
+			int home = slotOf(hash(stripe.keys[i]), mask);
+			//? Move it only when its home slot does not lie between the hole and itself.
+			if(((i - home) & mask) >= ((i - hole) & mask)) {
+				stripe.keys[hole] = stripe.keys[i];
+				stripe.entries[hole] = stripe.entries[i];
+				stripe.entries[i] = null;
+				hole = i;
+			}
+		}
+	}
+
+	private void resize(Stripe stripe, int capacity) {
+		int[] oldKeys = stripe.keys;
+		Entry[] oldEntries = stripe.entries;
+		stripe.keys = new int[capacity];
+		stripe.entries = new Entry[capacity];
+		int mask = capacity - 1;
+		for(int j = 0; j < oldEntries.length; j++) {
+			if(oldEntries[j] != null) {
+				int i = slotOf(hash(oldKeys[j]), mask);
+				while(stripe.entries[i] != null) {
+					i = (i + 1) & mask;
+				}
+				stripe.keys[i] = oldKeys[j];
+				stripe.entries[i] = oldEntries[j];
+			}
+		}
+	}
+
+}
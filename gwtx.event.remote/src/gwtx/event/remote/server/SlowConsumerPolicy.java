@@ -0,0 +1,74 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import gwtx.event.remote.shared.SourceId;
+
+
+/**
+ * Interface which is implemented by policies deciding what happens to 
+ * sessions that fall behind the producers of a ring.
+ * 
+ * @see SlowConsumerPolicyFactory
+ * 
+ * @author Dann Martens
+ */
+public interface SlowConsumerPolicy {
+
+	public static enum Decision {
+		
+		/** Deliver the pending events as usual. */
+		DELIVER, 
+		
+		/** Fail the poll with a <code>BufferOverflowException</code>. */
+		OVERFLOW, 
+		
+		/** Skip the oldest pending events and deliver a gap marker instead. */
+		DROP_OLDEST, 
+		
+		/** Invalidate the session. */
+		EVICT
+		
+	}
+
+	/**
+	 * @param lag the number of events published since the last poll
+	 * @param bufferSize the size of the ring
+	 */
+	Decision decide(SourceId sourceId, long lag, int bufferSize);
+
+	/**
+	 * Whether polling sessions hold back producers, rather than being 
+	 * lapped by them.
+	 */
+	boolean isGating();
+
+	/**
+	 * The time in milliseconds a producer is held back by gating sessions,
+	 * before the slowest one gets evicted.
+	 */
+	long getPublishTimeout();
+
+	/**
+	 * The maximum number of sessions which hold back the producers of a 
+	 * ring, when gating. The slowest sessions take part, faster ones are 
+	 * left to the lag threshold.
+	 */
+	int getGatingLimit();
+
+}
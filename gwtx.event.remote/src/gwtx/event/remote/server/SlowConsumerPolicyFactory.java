@@ -0,0 +1,166 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import gwtx.event.remote.shared.SourceId;
+
+
+/**
+ * A factory for slow consumer policies. The overflowing policy is the 
+ * default one: sessions which got lapped by the producers fail their next
+ * poll with a buffer overflow.
+ * 
+ * @author Dann Martens
+ */
+public class SlowConsumerPolicyFactory {
+
+	public static final long DEFAULT_PUBLISH_TIMEOUT = 100L;
+
+	public static final int DEFAULT_GATING_LIMIT = 16;
+
+	private static class Overflowing implements SlowConsumerPolicy {
+
+		@Override
+		public Decision decide(SourceId sourceId, long lag, int bufferSize) {
+			return (lag > bufferSize)? Decision.OVERFLOW : Decision.DELIVER;
+		}
+
+		@Override
+		public boolean isGating() {
+			return false;
+		}
+
+		@Override
+		public long getPublishTimeout() {
+			return 0;
+		}
+
+		@Override
+		public int getGatingLimit() {
+			return 0;
+		}
+
+		@Override
+		public String toString() {
+			return "Overflowing*SlowConsumerPolicy";
+		}
+
+	}
+
+	private static class DroppingOldest extends Overflowing {
+
+		@Override
+		public Decision decide(SourceId sourceId, long lag, int bufferSize) {
+			return (lag > bufferSize)? Decision.DROP_OLDEST : Decision.DELIVER;
+		}
+
+		@Override
+		public String toString() {
+			return "DroppingOldest*SlowConsumerPolicy";
+		}
+
+	}
+
+	private static class Evicting extends Overflowing {
+
+		private final long lagThreshold;
+
+		private Evicting(long lagThreshold) {
+			this.lagThreshold = lagThreshold;
+		}
+
+		@Override
+		public Decision decide(SourceId sourceId, long lag, int bufferSize) {
+			return (lag > Math.min(lagThreshold, bufferSize))? Decision.EVICT : Decision.DELIVER;
+		}
+
+		@Override
+		public String toString() {
+			return "Evicting*SlowConsumerPolicy:{lagThreshold=" + lagThreshold + '}';
+		}
+
+	}
+
+	/**
+	 * Holds back the producers on the slowest sessions, at most the gating 
+	 * limit of them. Sessions which are not among them get lapped, and are
+	 * evicted once they lag beyond the threshold.
+	 */
+	private static class Gating extends Evicting {
+
+		private final long publishTimeout;
+
+		private final int gatingLimit;
+
+		private Gating(long lagThreshold, long publishTimeout, int gatingLimit) {
+			super(lagThreshold);
+			this.publishTimeout = publishTimeout;
+			this.gatingLimit = gatingLimit;
+		}
+
+		@Override
+		public boolean isGating() {
+			return true;
+		}
+
+		@Override
+		public long getPublishTimeout() {
+			return publishTimeout;
+		}
+
+		@Override
+		public int getGatingLimit() {
+			return gatingLimit;
+		}
+
+		@Override
+		public String toString() {
+			return "Gating*SlowConsumerPolicy:{publishTimeout=" + publishTimeout + ", gatingLimit=" + gatingLimit + '}';
+		}
+
+	}
+
+	public static SlowConsumerPolicy newDefaultInstance() {
+		return newOverflowing();
+	}
+
+	public static SlowConsumerPolicy newOverflowing() {
+		return new Overflowing();
+	}
+
+	public static SlowConsumerPolicy newDroppingOldest() {
+		return new DroppingOldest();
+	}
+
+	public static SlowConsumerPolicy newEvicting(long lagThreshold) {
+		return new Evicting(lagThreshold);
+	}
+
+	public static SlowConsumerPolicy newGating(long lagThreshold) {
+		return newGating(lagThreshold, DEFAULT_PUBLISH_TIMEOUT);
+	}
+
+	public static SlowConsumerPolicy newGating(long lagThreshold, long publishTimeout) {
+		return newGating(lagThreshold, publishTimeout, DEFAULT_GATING_LIMIT);
+	}
+
+	public static SlowConsumerPolicy newGating(long lagThreshold, long publishTimeout, int gatingLimit) {
+		return new Gating(lagThreshold, publishTimeout, gatingLimit);
+	}
+
+}
@@ -0,0 +1,71 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * Counter which spreads its updates over cache-line padded stripes, chosen
+ * by the identifier of the updating thread. Updates never allocate, reading
+ * sums up all stripes.
+ * 
+ * @author Dann Martens
+ */
+class StripedCounter {
+
+	//? Eight longs to a cache line.
+	private static final int PADDING = 8;
+
+	private final AtomicLongArray cells;
+
+	private final int mask;
+
+	public StripedCounter() {
+		int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1) << 1);
+		mask = stripes - 1;
+		cells = new AtomicLongArray(stripes * PADDING);
+	}
+
+	public void increment() {
+		add(1L);
+	}
+
+	public void add(long delta) {
+		cells.getAndAdd(indexOf(Thread.currentThread().getId()), delta);
+	}
+
+	private int indexOf(long threadId) {
+		int hash = (int) (threadId * 0x9E3779B97F4A7C15L >>> 32);
+		return (hash & mask) * PADDING;
+	}
+
+	public long get() {
+		long sum = 0;
+		for(int i = 0; i < cells.length(); i += PADDING) {
+			sum += cells.get(i);
+		}
+		return sum;
+	}
+
+	@Override
+	public String toString() {
+		return Long.toString(get());
+	}
+
+}
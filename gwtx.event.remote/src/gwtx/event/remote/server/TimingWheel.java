@@ -0,0 +1,309 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * Hierarchical timing wheel, which runs timeouts on a single ticker thread.
+ * Scheduling and cancelling a timeout take constant time. Each level has
+ * 64 buckets of 64 times the span of the level below, so four levels with
+ * the default tick of 10 ms reach out for well over a day; timeouts even
+ * further away are parked in the top level until they come within reach.
+ * Timeouts fire on the first tick at or after their deadline, and should 
+ * be quick, handing off anything substantial to another thread.
+ * <p>
+ * The ticker thread runs between the first {@link #start()} and the 
+ * matching last {@link #stop()}, so a wheel can be shared by whoever needs
+ * it for as long as they do. Timeouts which come due while the wheel is 
+ * stopped fire once it is started again.
+ * 
+ * @author Dann Martens
+ */
+class TimingWheel {
+
+	private static final Log log = Log.getLog(TimingWheel.class);
+
+	private static final long DEFAULT_TICK_IN_MILLIS = 10L;
+
+	private static final int LEVEL_BITS = 6;
+
+	private static final int BUCKETS = 1 << LEVEL_BITS;
+
+	private static final int LEVELS = 4;
+
+	private static class Singleton {
+
+		private static final TimingWheel INSTANCE = new TimingWheel("TimingWheel", DEFAULT_TICK_IN_MILLIS, TimeUnit.MILLISECONDS);
+
+	}
+
+	/**
+	 * A scheduled task, linked into the bucket of its deadline.
+	 */
+	static final class Timeout {
+
+		private final TimingWheel wheel;
+
+		private final Runnable task;
+
+		private final long deadlineTick;
+
+		private Timeout previous;
+
+		private Timeout next;
+
+		private Bucket bucket;
+
+		private Timeout(TimingWheel wheel, Runnable task, long deadlineTick) {
+			this.wheel = wheel;
+			this.task = task;
+			this.deadlineTick = deadlineTick;
+		}
+
+		/**
+		 * @return whether the task has been prevented from running
+		 */
+		public boolean cancel() {
+			synchronized (wheel) {
+				if(bucket == null)
+					return false; //? Fired or cancelled already.
+				bucket.remove(this);
+				return true;
+			}
+		}
+
+	}
+
+	private static final class Bucket {
+
+		private Timeout head;
+
+		void add(Timeout timeout) {
+			timeout.bucket = this;
+			timeout.previous = null;
+			timeout.next = head;
+			if(head != null) {
+				head.previous = timeout;
+			}
+			head = timeout;
+		}
+
+		void remove(Timeout timeout) {
+			if(timeout.previous == null) {
+				head = timeout.next;
+			} else {
+				timeout.previous.next = timeout.next;
+			}
+			if(timeout.next != null) {
+				timeout.next.previous = timeout.previous;
+			}
+			timeout.bucket = null;
+			timeout.previous = null;
+			timeout.next = null;
+		}
+
+		/**
+		 * Unlinks all timeouts and returns the first one, still chained.
+		 */
+		Timeout clear() {
+			Timeout result = head;
+			head = null;
+			return result;
+		}
+
+	}
+
+	private final String name;
+
+	private final long tickInNanos;
+
+	private final long startTimeInNanos;
+
+	private final Bucket[][] buckets = new Bucket[LEVELS][BUCKETS];
+
+	/**
+	 * The last tick which has been processed, guarded by this wheel.
+	 */
+	private long currentTick = 0;
+
+	/**
+	 * Time of the last processed tick, for those who can do with a coarse
+	 * clock.
+	 */
+	private volatile long currentTimeInNanos;
+
+	/**
+	 * Number of unmatched starts, guarded by this wheel.
+	 */
+	private int startCount = 0;
+
+	private volatile Thread ticker;
+
+	public static TimingWheel getDefault() {
+		return Singleton.INSTANCE;
+	}
+
+	public TimingWheel(String name, long tick, TimeUnit unit) {
+		this.name = name;
+		this.tickInNanos = unit.toNanos(tick);
+		this.startTimeInNanos = System.nanoTime();
+		this.currentTimeInNanos = startTimeInNanos;
+		for(int level = 0; level < LEVELS; level++) {
+			for(int i = 0; i < BUCKETS; i++) {
+				buckets[level][i] = new Bucket();
+			}
+		}
+	}
+
+	/**
+	 * Starts the ticker thread, unless it is running already. Every start
+	 * must be matched by a stop.
+	 */
+	public synchronized void start() {
+		if(startCount++ > 0)
+			return;
+		ticker = new DaemonThreadFactory(name + "-Ticker").newThread(new Runnable() {
+			@Override
+			public void run() {
+				tick();
+			}
+		});
+		ticker.start();
+	}
+
+	/**
+	 * Stops the ticker thread, once every start has been matched.
+	 */
+	public synchronized void stop() {
+		if(startCount == 0 || --startCount > 0)
+			return;
+		Thread candidate = ticker;
+		ticker = null;
+		LockSupport.unpark(candidate);
+	}
+
+	/**
+	 * Returns the <code>System.nanoTime()</code> of the last tick, which 
+	 * lags behind by at most one tick.
+	 */
+	public long getCurrentTime() {
+		return currentTimeInNanos;
+	}
+
+	public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+		return scheduleAt(task, System.nanoTime() + unit.toNanos(delay));
+	}
+
+	/**
+	 * @param deadlineInNanos in terms of <code>System.nanoTime()</code>
+	 */
+	public Timeout scheduleAt(Runnable task, long deadlineInNanos) {
+		long elapsed = deadlineInNanos - startTimeInNanos;
+		//? Round up, never fire early.
+		long deadlineTick = (elapsed <= 0)? 0 : (elapsed + tickInNanos - 1) / tickInNanos;
+		Timeout timeout = new Timeout(this, task, deadlineTick);
+		synchronized (this) {
+			insert(timeout, currentTick + 1);
+		}
+		return timeout;
+	}
+
+	/**
+	 * Links a timeout into the bucket for its deadline, or into the bucket of 
+	 * the earliest tick to come when it is due already.
+	 */
+	private void insert(Timeout timeout, long earliestTick) {
+		long deadlineTick = Math.max(timeout.deadlineTick, earliestTick);
+		long delta = deadlineTick - currentTick;
+		int level = 0;
+		while(level < LEVELS - 1 && delta >= (1L << (LEVEL_BITS * (level + 1)))) {
+			level++;
+		}
+		if(delta >= (1L << (LEVEL_BITS * LEVELS))) {
+			//? Beyond reach, park it in the last bucket to be cascaded.
+			deadlineTick = currentTick + (1L << (LEVEL_BITS * LEVELS)) - 1;
+		}
+		buckets[level][(int) (deadlineTick >>> (LEVEL_BITS * level)) & (BUCKETS - 1)].add(timeout);
+	}
+
+	private void tick() {
+		Thread current = Thread.currentThread();
+		List<Timeout> expiredList = new ArrayList<Timeout>();
+		//? A restarted wheel has a ticker of its own.
+		while(ticker == current) {
+			long nextTickTime = startTimeInNanos + (currentTick + 1) * tickInNanos;
+			long waitTime = nextTickTime - System.nanoTime();
+			if(waitTime > 0) {
+				LockSupport.parkNanos(this, waitTime);
+				continue;
+			}
+			synchronized (this) {
+				//? Catch up on the ticks which have passed in the meantime.
+				long lastTick = (System.nanoTime() - startTimeInNanos) / tickInNanos;
+				while(currentTick < lastTick) {
+					advance(expiredList);
+				}
+				currentTimeInNanos = startTimeInNanos + currentTick * tickInNanos;
+			}
+			for(Timeout timeout: expiredList) {
+				try {
+					timeout.task.run();
+				} catch (RuntimeException re) {
+					log.warn("Timeout failed.", re);
+				}
+			}
+			expiredList.clear();
+		}
+	}
+
+	private void advance(List<Timeout> expiredList) {
+		currentTick++;
+		//? Cascade from the top, so timeouts can drop down more than one level.
+		for(int level = LEVELS - 1; level > 0; level--) {
+			if((currentTick & ((1L << (LEVEL_BITS * level)) - 1)) == 0) {
+				Bucket bucket = buckets[level][(int) (currentTick >>> (LEVEL_BITS * level)) & (BUCKETS - 1)];
+				Timeout timeout = bucket.clear();
+				while(timeout != null) {
+					Timeout next = timeout.next;
+					insert(timeout, currentTick);
+					timeout = next;
+				}
+			}
+		}
+		Timeout timeout = buckets[0][(int) currentTick & (BUCKETS - 1)].clear();
+		while(timeout != null) {
+			Timeout next = timeout.next;
+			timeout.bucket = null;
+			timeout.previous = null;
+			timeout.next = null;
+			expiredList.add(timeout);
+			timeout = next;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "TimingWheel:{tick=" + tickInNanos + "ns, currentTick=" + currentTick + '}';
+	}
+
+}
@@ -31,5 +31,19 @@ public abstract class AbstractRemoteGwtEvent<H extends EventHandler> extends Gwt
 
 	/* Managed UID. */
 	private static final long serialVersionUID = 1L;
+
+	private long sequence = -1L;
+
+	/**
+	 * The sequence of this event in the server-side journal, or 
+	 * <code>-1</code> when it has not been journaled.
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	public void setSequence(long sequence) {
+		this.sequence = sequence;
+	}
 	
 }
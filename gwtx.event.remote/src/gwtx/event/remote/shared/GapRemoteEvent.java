@@ -0,0 +1,69 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.shared;
+
+import com.google.gwt.event.shared.EventHandler;
+
+
+/**
+ * Marker delivered in place of events which were dropped, because the 
+ * session fell too far behind. It is delivered regardless of subscriptions.
+ * 
+ * @author Dann Martens
+ */
+public class GapRemoteEvent extends AbstractRemoteGwtEvent<GapRemoteEvent.Handler> {
+
+	/* Managed UID. */
+	private static final long serialVersionUID = 1L;
+
+	public static final RemoteGwtEvent.Type<Handler> TYPE = new RemoteGwtEvent.Type<Handler>(GapRemoteEvent.class);
+
+	public abstract interface Handler extends EventHandler {
+
+		public abstract void onGap(GapRemoteEvent remoteEvent);
+
+	}
+
+	private long droppedCount;
+
+	@SuppressWarnings("unused")
+	private GapRemoteEvent() {
+		//? Mandatory RPC constructor.
+	}
+
+	public GapRemoteEvent(long droppedCount) {
+		this.droppedCount = droppedCount;
+	}
+
+	public RemoteGwtEvent.Type<GapRemoteEvent.Handler> getAssociatedType() {
+		return TYPE;
+	}
+
+	protected void dispatch(Handler handler) {
+		handler.onGap(this);
+	}
+
+	/**
+	 * The number of events which were skipped, including events of types the
+	 * session did not subscribe to.
+	 */
+	public long getDroppedCount() {
+		return droppedCount;
+	}
+
+}
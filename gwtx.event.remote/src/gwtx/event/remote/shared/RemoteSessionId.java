@@ -22,7 +22,8 @@ import java.io.Serializable;
 
 /**
  * An object which identifies a remote event bus session for a particular 
- * source.
+ * source. It also carries the waiting times of the server, which advise 
+ * the client on its request timeout. Unknown waiting times are zero.
  * 
  * @author Dann Martens
  */
@@ -34,6 +35,10 @@ public class RemoteSessionId implements Serializable {
 	private ServerId serverId;
 	
 	private SourceId sourceId;
+
+	private int minimumWaitingTime;
+
+	private int maximumWaitingTime;
 	
 	@SuppressWarnings("unused")
 	private RemoteSessionId() {
@@ -45,6 +50,12 @@ public class RemoteSessionId implements Serializable {
 		this.sourceId = sourceId;
 	}
 
+	public RemoteSessionId(ServerId serverId, SourceId sourceId, int minimumWaitingTime, int maximumWaitingTime) {
+		this(serverId, sourceId);
+		this.minimumWaitingTime = minimumWaitingTime;
+		this.maximumWaitingTime = maximumWaitingTime;
+	}
+
 	public ServerId getServerId() {
 		return serverId;
 	}
@@ -53,6 +64,22 @@ public class RemoteSessionId implements Serializable {
 		return sourceId;
 	}
 
+	/**
+	 * The longest time, in milliseconds, which a poll lingers to collect 
+	 * more events.
+	 */
+	public int getMinimumWaitingTime() {
+		return minimumWaitingTime;
+	}
+
+	/**
+	 * The longest time, in milliseconds, which a poll waits for events 
+	 * before it is answered regardless.
+	 */
+	public int getMaximumWaitingTime() {
+		return maximumWaitingTime;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -41,6 +41,10 @@ public class ServerId implements Serializable {
 		this.id = id;
 	}
 
+	public int getId() {
+		return id;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -0,0 +1,105 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.shared;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Text frames exchanged over the web socket or event stream which replaces
+ * polling. The client opens with a hello, naming its session and the 
+ * serialization policy of its service proxy. An event stream carries the 
+ * hello as the <code>hello</code> query parameter of its request instead.
+ * The server accepts or rejects it, and then pushes events in the 
+ * serialized forms a <code>getAvailableSerializedEvents</code> call would 
+ * have returned, each prefixed with its length. A heartbeat is pushed 
+ * whenever no events were published for the maximum waiting time.
+ * 
+ * @author Dann Martens
+ */
+public final class SocketProtocol {
+
+	public static final char ACCEPTED = 'A';
+
+	public static final char EVENTS = 'E';
+
+	public static final char HEARTBEAT = 'H';
+
+	public static final char FAILURE = 'X';
+
+	public static final String BUFFER_OVERFLOW = "bufferOverflow";
+
+	public static final String INVALID_SESSION = "invalidSession";
+
+	public static final String REJECTED = "rejected";
+
+	public static final String HELLO_PARAMETER = "hello";
+
+	private static final String HELLO_SEPARATOR = "\n";
+
+	private static final char LENGTH_SEPARATOR = ':';
+
+	private SocketProtocol() {}
+
+	public static String encodeHello(SourceId sourceId, int flags, 
+			String serializationPolicyName, String moduleBaseURL) {
+		return sourceId.asString() + HELLO_SEPARATOR + flags + HELLO_SEPARATOR 
+				+ serializationPolicyName + HELLO_SEPARATOR + moduleBaseURL;
+	}
+
+	/**
+	 * @return the source identifier, flags, serialization policy name and
+	 *         module base URL, or <code>null</code> when malformed
+	 */
+	public static String[] decodeHello(String frame) {
+		String[] result = frame.split(HELLO_SEPARATOR, 4);
+		return (result.length == 4)? result : null;
+	}
+
+	public static String encodeEvents(List<String> serializedList) {
+		StringBuilder builder = new StringBuilder();
+		builder.append(EVENTS);
+		for(String serializedForm: serializedList) {
+			builder.append(serializedForm.length()).append(LENGTH_SEPARATOR)
+					.append(serializedForm);
+		}
+		return builder.toString();
+	}
+
+	public static List<String> decodeEvents(String frame) {
+		List<String> result = new ArrayList<String>();
+		int index = 1;
+		while(index < frame.length()) {
+			int separatorIndex = frame.indexOf(LENGTH_SEPARATOR, index);
+			int length = Integer.parseInt(frame.substring(index, separatorIndex));
+			index = separatorIndex + 1 + length;
+			result.add(frame.substring(separatorIndex + 1, index));
+		}
+		return result;
+	}
+
+	public static String encodeFailure(String reason) {
+		return FAILURE + reason;
+	}
+
+	public static String decodeFailure(String frame) {
+		return frame.substring(1);
+	}
+
+}
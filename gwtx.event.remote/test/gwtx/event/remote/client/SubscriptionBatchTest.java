@@ -0,0 +1,155 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import gwtx.event.remote.shared.ExampleRemoteEvent;
+import gwtx.event.remote.shared.RemoteEventBusException;
+import gwtx.event.remote.shared.RemoteGwtEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.google.gwt.user.client.rpc.AsyncCallback;
+
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * Tests the coalescing of subscription changes by a 
+ * {@link SubscriptionBatch}.
+ * 
+ * @author Dann Martens
+ */
+public class SubscriptionBatchTest {
+
+	private static final RemoteGwtEvent.Type<?> OTHER_TYPE = new RemoteGwtEvent.Type<Object>(Object.class);
+
+	/**
+	 * Remembers how a change has been completed.
+	 */
+	private static class Outcome implements AsyncCallback<Boolean> {
+
+		private int completionCount = 0;
+
+		private Boolean result;
+
+		private Throwable caught;
+
+		@Override
+		public void onFailure(Throwable caught) {
+			completionCount++;
+			this.caught = caught;
+		}
+
+		@Override
+		public void onSuccess(Boolean result) {
+			completionCount++;
+			this.result = result;
+		}
+
+	}
+
+	private Set<RemoteGwtEvent.Type<?>> subscribedSet;
+
+	private List<SubscriptionBatch.Change> changeList;
+
+	@Before
+	public void setUp() {
+		subscribedSet = new HashSet<RemoteGwtEvent.Type<?>>();
+		changeList = new ArrayList<SubscriptionBatch.Change>();
+	}
+
+	private Outcome change(RemoteGwtEvent.Type<?> type, boolean subscribe) {
+		Outcome outcome = new Outcome();
+		changeList.add(new SubscriptionBatch.Change(type, subscribe, outcome));
+		return outcome;
+	}
+
+	@Test
+	public void changesCoalesceIntoOneTypePerRequest() {
+		change(ExampleRemoteEvent.TYPE, true);
+		change(OTHER_TYPE, true);
+		change(ExampleRemoteEvent.TYPE, true);
+		SubscriptionBatch batch = new SubscriptionBatch(changeList, subscribedSet);
+		assertEquals(Arrays.asList(ExampleRemoteEvent.TYPE, OTHER_TYPE), batch.getAddList());
+		assertEquals(Collections.emptyList(), batch.getRemoveList());
+	}
+
+	@Test
+	public void lastChangeWinsAndEarlierOnesFail() {
+		Outcome subscribed = change(ExampleRemoteEvent.TYPE, true);
+		Outcome unsubscribed = change(ExampleRemoteEvent.TYPE, false);
+		subscribedSet.add(ExampleRemoteEvent.TYPE);
+		SubscriptionBatch batch = new SubscriptionBatch(changeList, subscribedSet);
+		assertEquals(Collections.emptyList(), batch.getAddList());
+		assertEquals(Arrays.asList(ExampleRemoteEvent.TYPE), batch.getRemoveList());
+		batch.failSuperseded();
+		assertEquals(1, subscribed.completionCount);
+		assertTrue(subscribed.caught instanceof RemoteEventBusException);
+		assertEquals(0, unsubscribed.completionCount);
+		batch.getRemoveCallback().onSuccess(true);
+		assertEquals(Boolean.TRUE, unsubscribed.result);
+		assertFalse(subscribedSet.contains(ExampleRemoteEvent.TYPE));
+	}
+
+	@Test
+	public void subscribingCompletesEveryAgreeingChange() {
+		Outcome first = change(ExampleRemoteEvent.TYPE, true);
+		Outcome second = change(ExampleRemoteEvent.TYPE, true);
+		SubscriptionBatch batch = new SubscriptionBatch(changeList, subscribedSet);
+		assertFalse(subscribedSet.contains(ExampleRemoteEvent.TYPE));
+		batch.getAddCallback().onSuccess(true);
+		assertTrue(subscribedSet.contains(ExampleRemoteEvent.TYPE));
+		assertEquals(Boolean.TRUE, first.result);
+		assertEquals(Boolean.TRUE, second.result);
+		assertEquals(1, first.completionCount);
+		assertEquals(1, second.completionCount);
+	}
+
+	@Test
+	public void unsubscribingReportsWhetherTheTypeWasSubscribed() {
+		Outcome outcome = change(OTHER_TYPE, false);
+		SubscriptionBatch batch = new SubscriptionBatch(changeList, subscribedSet);
+		batch.getRemoveCallback().onSuccess(true);
+		assertEquals(Boolean.FALSE, outcome.result);
+	}
+
+	@Test
+	public void failureOfOneRequestLeavesTheOtherPending() {
+		Outcome subscribed = change(ExampleRemoteEvent.TYPE, true);
+		Outcome unsubscribed = change(OTHER_TYPE, false);
+		subscribedSet.add(OTHER_TYPE);
+		SubscriptionBatch batch = new SubscriptionBatch(changeList, subscribedSet);
+		Throwable caught = new RuntimeException();
+		batch.getAddCallback().onFailure(caught);
+		assertSame(caught, subscribed.caught);
+		assertFalse(subscribedSet.contains(ExampleRemoteEvent.TYPE));
+		assertEquals(0, unsubscribed.completionCount);
+		assertTrue(subscribedSet.contains(OTHER_TYPE));
+	}
+
+}
@@ -0,0 +1,141 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import gwtx.event.remote.shared.ExampleRemoteEvent;
+import gwtx.event.remote.shared.RemoteGwtEvent;
+
+import com.google.gwt.user.client.rpc.SerializationException;
+import com.google.gwt.user.server.rpc.SerializationPolicy;
+
+import org.junit.Test;
+
+
+/**
+ * Tests the count and byte caps of an {@link EventBatch}.
+ * 
+ * @author Dann Martens
+ */
+public class EventBatchTest {
+
+	/**
+	 * Serializes the fields of every type up to, but not including, Object,
+	 * so events can be measured without the policy file of a compiled client.
+	 */
+	private static final SerializationPolicy PERMISSIVE_POLICY = new SerializationPolicy() {
+
+		@Override
+		public boolean shouldDeserializeFields(Class<?> clazz) {
+			return clazz != Object.class;
+		}
+
+		@Override
+		public boolean shouldSerializeFields(Class<?> clazz) {
+			return clazz != Object.class;
+		}
+
+		@Override
+		public void validateDeserialize(Class<?> clazz) {
+		}
+
+		@Override
+		public void validateSerialize(Class<?> clazz) {
+		}
+
+	};
+
+	private static Referer<RemoteGwtEvent<?>> refer(RemoteGwtEvent<?> event) {
+		Referer<RemoteGwtEvent<?>> referer = new Referer<RemoteGwtEvent<?>>();
+		referer.setReferenced(event);
+		return referer;
+	}
+
+	private static long measure(RemoteGwtEvent<?> event) throws SerializationException {
+		return Referer.serialize(event, PERMISSIVE_POLICY, 0).length();
+	}
+
+	@Test
+	public void fullAtMaximumSize() {
+		EventBatch batch = new EventBatch(3, Long.MAX_VALUE, null, 0, false);
+		assertTrue(batch.isEmpty());
+		batch.add(new ExampleRemoteEvent("a"));
+		batch.add(new ExampleRemoteEvent("b"));
+		assertFalse(batch.isFull());
+		batch.add(new ExampleRemoteEvent("c"));
+		assertTrue(batch.isFull());
+		assertEquals(3, batch.getEventList().size());
+	}
+
+	@Test
+	public void conflatedEventsDoNotCountTowardsMaximumSize() {
+		EventBatch batch = new EventBatch(2, Long.MAX_VALUE, null, 0, false);
+		Conflation.Key key = new Conflation.Key("type", "key");
+		batch.add(new ExampleRemoteEvent("a"), key);
+		batch.add(new ExampleRemoteEvent("b"), key);
+		assertEquals(1, batch.size());
+		assertFalse(batch.isFull());
+		ExampleRemoteEvent last = new ExampleRemoteEvent("c");
+		batch.add(last, key);
+		assertEquals(1, batch.getEventList().size());
+		assertEquals(last, batch.getEventList().get(0));
+	}
+
+	@Test
+	public void fullAtMaximumBytes() throws SerializationException {
+		long eventBytes = measure(new ExampleRemoteEvent("a"));
+		EventBatch batch = new EventBatch(Integer.MAX_VALUE, 3 * eventBytes, PERMISSIVE_POLICY, 0, false);
+		batch.add(refer(new ExampleRemoteEvent("a")));
+		batch.add(refer(new ExampleRemoteEvent("b")));
+		assertFalse(batch.isFull());
+		assertEquals(2 * eventBytes, batch.getBytes());
+		batch.add(refer(new ExampleRemoteEvent("c")));
+		assertTrue(batch.isFull());
+	}
+
+	@Test
+	public void byteCapIsIgnoredWithoutPolicy() {
+		EventBatch batch = new EventBatch(Integer.MAX_VALUE, 1L, null, 0, false);
+		batch.add(refer(new ExampleRemoteEvent("a")));
+		assertEquals(0L, batch.getBytes());
+		assertFalse(batch.isFull());
+	}
+
+	@Test
+	public void firstEventExceedingMaximumBytesIsAccepted() {
+		EventBatch batch = new EventBatch(Integer.MAX_VALUE, 1L, PERMISSIVE_POLICY, 0, true);
+		batch.add(refer(new ExampleRemoteEvent("too large on its own")));
+		assertTrue(batch.isFull());
+		assertEquals(1, batch.getSerializedList().size());
+	}
+
+	@Test
+	public void conflatedSerializedFormsGiveBackTheirBytes() throws SerializationException {
+		long eventBytes = measure(new ExampleRemoteEvent("a"));
+		EventBatch batch = new EventBatch(Integer.MAX_VALUE, 2 * eventBytes, PERMISSIVE_POLICY, 0, true);
+		Conflation.Key key = new Conflation.Key("type", "key");
+		batch.add(new ExampleRemoteEvent("a"), key);
+		batch.add(new ExampleRemoteEvent("b"), key);
+		assertEquals(eventBytes, batch.getBytes());
+		assertFalse(batch.isFull());
+		assertEquals(1, batch.getSerializedList().size());
+	}
+
+}
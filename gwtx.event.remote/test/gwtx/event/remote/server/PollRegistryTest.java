@@ -0,0 +1,189 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import gwtx.event.remote.shared.ExampleRemoteEvent;
+import gwtx.event.remote.shared.SourceId;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * Tests the dispatch of parked polls by the {@link PollRegistry}.
+ * 
+ * @author Dann Martens
+ */
+public class PollRegistryTest {
+
+	private static final long WAITING_TIME_IN_MILLIS = 30000L;
+
+	private static final SourceId SOURCE_ID = new SourceId(1);
+
+	private static final Set<String> SUBSCRIBED_TYPE_IDS = Collections.singleton(ExampleRemoteEvent.TYPE.getTypeId());
+
+	/**
+	 * A poll whose first attempt holds on to it until told to let go, and
+	 * which becomes ready while it does.
+	 */
+	private static class HeldPoll extends ParkedPoll {
+
+		private final CountDownLatch heldLatch = new CountDownLatch(1);
+
+		private final CountDownLatch letGoLatch = new CountDownLatch(1);
+
+		private final CountDownLatch signalledLatch = new CountDownLatch(1);
+
+		private final CountDownLatch completedLatch = new CountDownLatch(1);
+
+		private volatile boolean ready = false;
+
+		private volatile boolean expired = false;
+
+		private int attemptCount = 0;
+
+		public HeldPoll() {
+			super(System.nanoTime(), 0L, WAITING_TIME_IN_MILLIS);
+		}
+
+		@Override
+		protected boolean isReady() {
+			return ready;
+		}
+
+		@Override
+		boolean acquireSignalled() {
+			boolean result = super.acquireSignalled();
+			signalledLatch.countDown();
+			return result;
+		}
+
+		@Override
+		protected boolean tryComplete(boolean expired) {
+			if(attemptCount++ == 0) {
+				heldLatch.countDown();
+				await(letGoLatch);
+				return false;
+			}
+			if(!ready && !expired)
+				return false;
+			this.expired = expired;
+			completedLatch.countDown();
+			return true;
+		}
+
+		private static void await(CountDownLatch latch) {
+			try {
+				latch.await(WAITING_TIME_IN_MILLIS, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+	}
+
+	private PollRegistry pollRegistry;
+
+	private Session session;
+
+	@Before
+	public void setUp() {
+		session = new RemoteEventBusSession();
+		session.subscribe(ExampleRemoteEvent.TYPE);
+		TimingWheel.getDefault().start();
+		pollRegistry = new PollRegistry(PollRegistryTest.class.getSimpleName(), 2);
+	}
+
+	@After
+	public void tearDown() {
+		pollRegistry.shutdown();
+		TimingWheel.getDefault().stop();
+	}
+
+	@Test
+	public void signalWhileBusyIsNotLost() throws InterruptedException {
+		HeldPoll poll = new HeldPoll();
+		pollRegistry.park(poll, SOURCE_ID, session);
+		//? The linger attempt, due right away, now holds the poll.
+		assertTrue(poll.heldLatch.await(5, TimeUnit.SECONDS));
+		poll.ready = true;
+		pollRegistry.signal(SUBSCRIBED_TYPE_IDS);
+		//? The dispatch has found the poll busy.
+		assertTrue(poll.signalledLatch.await(5, TimeUnit.SECONDS));
+		poll.letGoLatch.countDown();
+		assertTrue(poll.completedLatch.await(5, TimeUnit.SECONDS));
+		assertFalse(poll.expired);
+	}
+
+	@Test
+	public void expiredPollIsAnswered() throws InterruptedException {
+		final CountDownLatch completedLatch = new CountDownLatch(1);
+		ParkedPoll poll = new ParkedPoll(System.nanoTime(), 0L, 50L) {
+			@Override
+			protected boolean isReady() {
+				return false;
+			}
+			@Override
+			protected boolean tryComplete(boolean expired) {
+				if(expired) {
+					completedLatch.countDown();
+				}
+				return expired;
+			}
+		};
+		pollRegistry.park(poll, SOURCE_ID, session);
+		assertTrue(completedLatch.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void onlySubscribedPollsAreSignalled() throws InterruptedException {
+		final CountDownLatch checkedLatch = new CountDownLatch(1);
+		final CountDownLatch completedLatch = new CountDownLatch(1);
+		//? Lingers for as long as it waits, so only a signal completes it early.
+		ParkedPoll poll = new ParkedPoll(System.nanoTime(), WAITING_TIME_IN_MILLIS, WAITING_TIME_IN_MILLIS) {
+			@Override
+			protected boolean isReady() {
+				checkedLatch.countDown();
+				return true;
+			}
+			@Override
+			protected boolean tryComplete(boolean expired) {
+				completedLatch.countDown();
+				return true;
+			}
+		};
+		SourceId otherSourceId = new SourceId(2);
+		Session otherSession = new RemoteEventBusSession();
+		pollRegistry.park(poll, otherSourceId, otherSession);
+		pollRegistry.signal(SUBSCRIBED_TYPE_IDS);
+		assertFalse(checkedLatch.await(100, TimeUnit.MILLISECONDS));
+		otherSession.subscribe(ExampleRemoteEvent.TYPE);
+		pollRegistry.reindex(otherSourceId, otherSession);
+		pollRegistry.signal(SUBSCRIBED_TYPE_IDS);
+		assertTrue(completedLatch.await(5, TimeUnit.SECONDS));
+	}
+
+}
@@ -0,0 +1,146 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import gwtx.event.remote.shared.BufferOverflowException;
+import gwtx.event.remote.shared.InvalidSessionException;
+import gwtx.event.remote.shared.SourceId;
+
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * Tests the supersede, rewind and stale rules of the {@link PollSequencer}.
+ * 
+ * @author Dann Martens
+ */
+public class PollSequencerTest {
+
+	private static final SourceId SOURCE_ID = new SourceId(1);
+
+	/**
+	 * A cursor over no rings, which counts how often it is committed and 
+	 * rewound.
+	 */
+	private static class CountingCursor extends PollCursor {
+
+		private int commitCount = 0;
+
+		private int rewindCount = 0;
+
+		public CountingCursor() throws BufferOverflowException, InvalidSessionException {
+			super(new EventRing[0], SOURCE_ID, null, new PublicationSignal());
+		}
+
+		@Override
+		public void commit(Session session) {
+			commitCount++;
+		}
+
+		@Override
+		public void rewind(Session session) {
+			rewindCount++;
+		}
+
+	}
+
+	private PollSequencer sequencer;
+
+	@Before
+	public void setUp() {
+		sequencer = new PollSequencer();
+	}
+
+	private boolean start(int number, boolean previousAborted) {
+		return sequencer.start(SOURCE_ID, null, new PollSequencer.Ticket(number, previousAborted));
+	}
+
+	private boolean commit(PollCursor cursor, int number) {
+		return sequencer.commit(SOURCE_ID, null, cursor, new PollSequencer.Ticket(number, false));
+	}
+
+	@Test
+	public void pollNotAfterTheLatestIsStale() {
+		assertTrue(start(5, false));
+		assertFalse(start(5, false));
+		assertFalse(start(4, false));
+		assertTrue(start(6, false));
+	}
+
+	@Test
+	public void numbersWrapAround() {
+		assertTrue(start(Integer.MAX_VALUE, false));
+		assertTrue(start(Integer.MIN_VALUE, false));
+		assertFalse(start(Integer.MAX_VALUE, false));
+	}
+
+	@Test
+	public void supersededPollDoesNotCommit() throws Exception {
+		CountingCursor first = new CountingCursor();
+		CountingCursor second = new CountingCursor();
+		assertTrue(start(1, false));
+		assertTrue(start(2, true));
+		assertFalse(commit(first, 1));
+		assertTrue(commit(second, 2));
+		assertEquals(0, first.commitCount);
+		assertEquals(1, second.commitCount);
+		assertEquals(0, first.rewindCount);
+	}
+
+	@Test
+	public void committedPollIsRewoundWhenAborted() throws Exception {
+		CountingCursor first = new CountingCursor();
+		assertTrue(start(1, false));
+		assertTrue(commit(first, 1));
+		assertTrue(start(2, true));
+		assertEquals(1, first.rewindCount);
+		//? Only the poll right before an aborting one is rewound, and only once.
+		assertTrue(start(3, true));
+		assertEquals(1, first.rewindCount);
+	}
+
+	@Test
+	public void committedPollIsNotRewoundWhenAnswered() throws Exception {
+		CountingCursor first = new CountingCursor();
+		assertTrue(start(1, false));
+		assertTrue(commit(first, 1));
+		assertTrue(start(2, false));
+		assertEquals(0, first.rewindCount);
+	}
+
+	@Test
+	public void olderCommittedPollIsNotRewound() throws Exception {
+		CountingCursor first = new CountingCursor();
+		assertTrue(start(1, false));
+		assertTrue(commit(first, 1));
+		assertTrue(start(3, true));
+		assertEquals(0, first.rewindCount);
+	}
+
+	@Test
+	public void invalidatedSessionStartsOver() {
+		assertTrue(start(5, false));
+		sequencer.onSessionInvalidate(new SessionEvent(SOURCE_ID));
+		assertTrue(start(1, false));
+	}
+
+}
@@ -0,0 +1,117 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import gwtx.event.remote.shared.SourceId;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+/**
+ * Tests the {@link SessionTable}, in particular that removing an entry 
+ * leaves the other entries of its probe run reachable.
+ * 
+ * @author Dann Martens
+ */
+public class SessionTableTest {
+
+	private static SessionTable.Entry entryOf(int id) {
+		return new SessionTable.Entry(new SourceId(id), null, 0L);
+	}
+
+	private static void assertContains(SessionTable table, Map<Integer, SessionTable.Entry> expected) {
+		assertEquals(expected.size(), table.size());
+		for(Map.Entry<Integer, SessionTable.Entry> entry: expected.entrySet()) {
+			assertSame("Lost source " + entry.getKey() + '.', entry.getValue(), table.get(entry.getKey()));
+		}
+	}
+
+	@Test
+	public void putReplacesTheEntryWithTheSameIdentifier() {
+		SessionTable table = new SessionTable(1);
+		table.put(entryOf(1));
+		SessionTable.Entry replacement = entryOf(1);
+		table.put(replacement);
+		assertEquals(1, table.size());
+		assertSame(replacement, table.get(1));
+	}
+
+	@Test
+	public void removeOfAnUnknownIdentifierReturnsNull() {
+		SessionTable table = new SessionTable(1);
+		table.put(entryOf(1));
+		assertNull(table.remove(2));
+		assertEquals(1, table.size());
+	}
+
+	/**
+	 * Fills a single stripe to just below its resize threshold, where probe 
+	 * runs are longest, and removes every entry in turn from a full table.
+	 */
+	@Test
+	public void removeKeepsProbeRunsReachable() {
+		int count = 8;
+		for(int removed = 1; removed <= count; removed++) {
+			SessionTable table = new SessionTable(1);
+			Map<Integer, SessionTable.Entry> expected = new HashMap<Integer, SessionTable.Entry>();
+			for(int id = 1; id <= count; id++) {
+				SessionTable.Entry entry = entryOf(id);
+				table.put(entry);
+				expected.put(id, entry);
+			}
+			assertSame(expected.remove(removed), table.remove(removed));
+			assertNull(table.get(removed));
+			assertContains(table, expected);
+		}
+	}
+
+	@Test
+	public void randomPutsAndRemovesMatchAMap() {
+		Random random = new Random(42L);
+		SessionTable table = new SessionTable(2);
+		Map<Integer, SessionTable.Entry> expected = new HashMap<Integer, SessionTable.Entry>();
+		List<Integer> idList = new ArrayList<Integer>();
+		for(int round = 0; round < 10000; round++) {
+			if(idList.isEmpty() || random.nextInt(3) > 0) {
+				int id = random.nextInt(256);
+				SessionTable.Entry entry = entryOf(id);
+				table.put(entry);
+				if(expected.put(id, entry) == null) {
+					idList.add(id);
+				}
+			} else {
+				Integer id = idList.remove(random.nextInt(idList.size()));
+				assertSame(expected.remove(id), table.remove(id));
+			}
+			if(round % 100 == 0) {
+				assertContains(table, expected);
+			}
+		}
+		assertContains(table, expected);
+	}
+
+}
@@ -0,0 +1,143 @@
+/**
+ * Licensed to TOMOTON nv under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  TOMOTON nv licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gwtx.event.remote.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * Tests the {@link TimingWheel}. A tick of 100 ns brings the top level and
+ * the reach of the wheel, about 1.7 s, within the time of a test.
+ * 
+ * @author Dann Martens
+ */
+public class TimingWheelTest {
+
+	private static final long TICK_IN_NANOS = 100L;
+
+	private static final long WAITING_TIME_IN_MILLIS = 30000L;
+
+	/**
+	 * Records the order in which timeouts fire, and whether any fired before
+	 * its deadline.
+	 */
+	private static class Recorder {
+
+		private final List<String> firedList = Collections.synchronizedList(new ArrayList<String>());
+
+		private final List<String> earlyList = Collections.synchronizedList(new ArrayList<String>());
+
+		private final CountDownLatch firedLatch;
+
+		public Recorder(int count) {
+			firedLatch = new CountDownLatch(count);
+		}
+
+		public Runnable taskOf(final String name, final long deadlineInNanos) {
+			return new Runnable() {
+				@Override
+				public void run() {
+					if(System.nanoTime() - deadlineInNanos < 0) {
+						earlyList.add(name);
+					}
+					firedList.add(name);
+					firedLatch.countDown();
+				}
+			};
+		}
+
+		public void await() throws InterruptedException {
+			assertTrue("Timeouts did not fire in time.", firedLatch.await(WAITING_TIME_IN_MILLIS, TimeUnit.MILLISECONDS));
+		}
+
+	}
+
+	private TimingWheel wheel;
+
+	@Before
+	public void setUp() {
+		wheel = new TimingWheel("TimingWheelTest", TICK_IN_NANOS, TimeUnit.NANOSECONDS);
+	}
+
+	@After
+	public void tearDown() {
+		wheel.stop();
+	}
+
+	private void schedule(Recorder recorder, String name, long delayInNanos) {
+		long deadlineInNanos = System.nanoTime() + delayInNanos;
+		wheel.scheduleAt(recorder.taskOf(name, deadlineInNanos), deadlineInNanos);
+	}
+
+	/**
+	 * Each timeout starts out on another level, and the last one beyond the
+	 * reach of the wheel, so all but the first have to cascade down.
+	 */
+	@Test
+	public void cascadedTimeoutsFireInOrderAndNotEarly() throws InterruptedException {
+		Recorder recorder = new Recorder(5);
+		wheel.start();
+		//? Scheduled in reverse, so the order of firing is not the order of scheduling.
+		schedule(recorder, "beyond reach", TimeUnit.MILLISECONDS.toNanos(2000L));
+		schedule(recorder, "level 3", TimeUnit.MILLISECONDS.toNanos(300L));
+		schedule(recorder, "level 2", TimeUnit.MILLISECONDS.toNanos(10L));
+		schedule(recorder, "level 1", TimeUnit.MICROSECONDS.toNanos(200L));
+		schedule(recorder, "level 0", 0L);
+		recorder.await();
+		assertEquals(Arrays.asList("level 0", "level 1", "level 2", "level 3", "beyond reach"), recorder.firedList);
+		assertEquals(Collections.emptyList(), recorder.earlyList);
+	}
+
+	@Test
+	public void cancelledTimeoutDoesNotFire() throws InterruptedException {
+		Recorder recorder = new Recorder(1);
+		wheel.start();
+		long deadlineInNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10L);
+		TimingWheel.Timeout timeout = wheel.scheduleAt(recorder.taskOf("cancelled", deadlineInNanos), deadlineInNanos);
+		assertTrue(timeout.cancel());
+		assertFalse(timeout.cancel());
+		schedule(recorder, "later", TimeUnit.MILLISECONDS.toNanos(50L));
+		recorder.await();
+		assertEquals(Arrays.asList("later"), recorder.firedList);
+	}
+
+	@Test
+	public void timeoutDueWhileStoppedFiresOnStart() throws InterruptedException {
+		Recorder recorder = new Recorder(1);
+		schedule(recorder, "due", TimeUnit.MILLISECONDS.toNanos(1L));
+		Thread.sleep(50L);
+		assertTrue(recorder.firedList.isEmpty());
+		wheel.start();
+		recorder.await();
+		assertTrue(recorder.earlyList.isEmpty());
+	}
+
+}